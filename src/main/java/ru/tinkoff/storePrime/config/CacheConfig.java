@@ -1,20 +1,105 @@
 package ru.tinkoff.storePrime.config;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.CacheManager;
-import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.cache.support.SimpleCacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import ru.tinkoff.storePrime.models.user.CustomerSnapshot;
+import ru.tinkoff.storePrime.models.user.SellerSnapshot;
+import ru.tinkoff.storePrime.repository.CustomerRepository;
+import ru.tinkoff.storePrime.repository.SellerRepository;
+import ru.tinkoff.storePrime.services.utils.AccountCachingUtil;
 
-import java.util.Collections;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 
 @Configuration
 public class CacheConfig {
 
+    @Value("${cache.account.maximum-size}")
+    private long accountMaximumSize;
+
+    @Value("${cache.account.expire-after-write-millis}")
+    private long accountExpireAfterWriteMillis;
+
+    @Value("${cache.account.refresh-after-write-millis}")
+    private long accountRefreshAfterWriteMillis;
+
+    @Bean
+    public TwoLevelCache customerCache(CustomerRepository customerRepository, RedisTemplate<String, String> redisTemplate,
+                                       ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        return accountCache(AccountCachingUtil.CUSTOMER_CACHE, CustomerSnapshot.class,
+                id -> customerRepository.findById(id).map(CustomerSnapshot::from).orElse(null),
+                redisTemplate, objectMapper, meterRegistry);
+    }
+
+    @Bean
+    public TwoLevelCache sellerCache(SellerRepository sellerRepository, RedisTemplate<String, String> redisTemplate,
+                                     ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        return accountCache(AccountCachingUtil.SELLER_CACHE, SellerSnapshot.class,
+                id -> sellerRepository.findById(id).map(SellerSnapshot::from).orElse(null),
+                redisTemplate, objectMapper, meterRegistry);
+    }
+
+    /**
+     * Аккаунты кэшируются в двух уровнях, см. {@link TwoLevelCache}; L2 живёт столько же, сколько L1.
+     */
+    @Bean
+    public CacheManager cacheManager(List<TwoLevelCache> caches) {
+        SimpleCacheManager cacheManager = new SimpleCacheManager();
+        cacheManager.setCaches(caches);
+        return cacheManager;
+    }
+
     @Bean
-    public CacheManager cacheManager() {
-        ConcurrentMapCacheManager map = new ConcurrentMapCacheManager();
-        map.setCacheNames(Collections.singleton("account"));
-        return map;
+    public RedisMessageListenerContainer cacheInvalidationListenerContainer(RedisConnectionFactory connectionFactory,
+                                                                           List<TwoLevelCache> caches) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        caches.forEach(cache -> container.addMessageListener(cache, TwoLevelCache.INVALIDATION_TOPIC));
+        return container;
+    }
+
+    /**
+     * Кэш аккаунтов заполняется явно (get с загрузчиком при промахе, put после изменений),
+     * поэтому загрузчик L1 ничего не загружает.
+     * При фоновом обновлении снимок строится заново из репозитория; удалённый из базы аккаунт пропадает из кэша.
+     */
+    private TwoLevelCache accountCache(String name, Class<?> snapshotType, Function<Long, Object> reloader,
+                                       RedisTemplate<String, String> redisTemplate, ObjectMapper objectMapper,
+                                       MeterRegistry meterRegistry) {
+        LoadingCache<Object, Object> localCache = Caffeine.newBuilder()
+                .maximumSize(accountMaximumSize)
+                .expireAfterWrite(Duration.ofMillis(accountExpireAfterWriteMillis))
+                .refreshAfterWrite(Duration.ofMillis(accountRefreshAfterWriteMillis))
+                .recordStats()
+                .build(new CacheLoader<>() {
+
+                    @Override
+                    public Object load(Object key) {
+                        return null;
+                    }
+
+                    @Override
+                    public Object reload(Object key, Object oldValue) {
+                        return reloader.apply((Long) key);
+                    }
+                });
+        CaffeineCacheMetrics.monitor(meterRegistry, localCache, name);
+        return new TwoLevelCache(name, localCache, redisTemplate, objectMapper, Map.of(name, snapshotType), Long::valueOf,
+                Duration.ofMillis(accountExpireAfterWriteMillis));
     }
 
 }
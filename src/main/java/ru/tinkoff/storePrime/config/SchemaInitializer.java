@@ -0,0 +1,107 @@
+package ru.tinkoff.storePrime.config;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Объекты схемы, которые Hibernate не умеет создавать сам (индексы по выражениям и т.п.).
+ * Все операторы идемпотентны и выполняются после того, как ddl-auto обновил таблицы.
+ */
+@Component
+@RequiredArgsConstructor
+public class SchemaInitializer {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        createProductSearchIndex();
+        alignIdSequenceIncrement();
+        seedOutboxEventSequence();
+        migrateLegacyOrders();
+        backfillCartItemUpdateTime();
+    }
+
+    /**
+     * GIN-индекс для полнотекстового поиска товаров. Выражение должно в точности совпадать
+     * с выражением в запросах {@link ru.tinkoff.storePrime.repository.ProductRepository#searchByContent},
+     * иначе планировщик не сможет использовать индекс.
+     */
+    private void createProductSearchIndex() {
+        jdbcTemplate.execute("""
+                create index if not exists product_search_idx on product
+                using gin (to_tsvector('simple', title || ' ' || description))
+                """);
+    }
+
+    /**
+     * Идентификаторы выделяются блоками по 50 (см. {@link ru.tinkoff.storePrime.models.base.LongIdEntity}),
+     * чтобы вставки можно было отправлять JDBC-батчами. В базах, созданных раньше, последовательность
+     * шагает на 1; до перезапуска Hibernate работает с ней как есть, а новый шаг лишь оставляет пропуски в id.
+     */
+    private void alignIdSequenceIncrement() {
+        jdbcTemplate.execute("alter sequence if exists hibernate_sequence increment by 50");
+    }
+
+    /**
+     * События outbox раньше брали id из {@code hibernate_sequence}, а потребители отбрасывают дубли по id.
+     * Новая последовательность ещё не использовалась, поэтому она начинается после всех выданных id,
+     * чтобы новые события не совпали по id с уже опубликованными.
+     */
+    private void seedOutboxEventSequence() {
+        jdbcTemplate.execute("""
+                do $$
+                begin
+                    if exists (select 1 from outbox_event_seq where not is_called) then
+                        perform setval('outbox_event_seq', (select last_value from hibernate_sequence) + 1, false);
+                    end if;
+                end
+                $$
+                """);
+    }
+
+    /**
+     * Заказы старого формата хранили один товар прямо в строке {@code market_order} и не имели
+     * {@code seller_id}, {@code created_at} и суммы. Для них создаётся позиция из старых колонок и заполняются
+     * новые поля; колонки остаются на месте, повторный запуск ничего не меняет. Время создания старых
+     * заказов неизвестно, им достаётся время миграции.
+     */
+    private void migrateLegacyOrders() {
+        jdbcTemplate.execute("""
+                do $$
+                begin
+                    if exists (select 1 from information_schema.columns
+                               where table_name = 'market_order' and column_name = 'product_id') then
+                        update market_order o set seller_id = p.seller_id
+                        from product p
+                        where o.product_id = p.id and o.seller_id is null;
+
+                        insert into order_line (id, order_id, product_id, quantity, price)
+                        select nextval('hibernate_sequence'), o.id, o.product_id, o.quantity, p.price
+                        from market_order o
+                        join product p on p.id = o.product_id
+                        where not exists (select 1 from order_line l where l.order_id = o.id);
+                    end if;
+                end
+                $$
+                """);
+        jdbcTemplate.execute("""
+                update market_order o set total_price = (
+                    select coalesce(sum(l.price * l.quantity), 0) from order_line l where l.order_id = o.id)
+                where o.total_price is null
+                """);
+        jdbcTemplate.execute("update market_order set created_at = now() where created_at is null");
+    }
+
+    /**
+     * Позиции корзин, созданные до появления {@code updated_at}, считаются изменёнными в момент миграции,
+     * чтобы очистка брошенных корзин не удалила их все разом.
+     */
+    private void backfillCartItemUpdateTime() {
+        jdbcTemplate.execute("update cart_item set updated_at = now() where updated_at is null");
+    }
+
+}
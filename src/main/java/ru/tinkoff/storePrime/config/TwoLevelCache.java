@@ -0,0 +1,366 @@
+package ru.tinkoff.storePrime.config;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.support.AbstractValueAdaptingCache;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * Кэш из двух уровней: L1 — Caffeine в памяти экземпляра, L2 — Redis, общий для всех экземпляров.
+ * Чтение идёт из L1, при промахе из L2 с заполнением L1. L2 заполняется только при промахе и только
+ * если ключа там ещё нет (SET NX): читатель с устаревшим значением не затрёт более свежее.
+ * Запись и удаление убирают ключ из L2, а не перезаписывают его: удаления от порядка не зависят,
+ * поэтому параллельные записи одного ключа не оставят в Redis старшее значение. Вместе с удалением
+ * увеличивается версия ключа; загрузка через {@link #get(Object, Callable)} запоминает версию до чтения базы
+ * и не кладёт значение ни в L2, ни в L1, если версия с тех пор изменилась: значение могло быть прочитано
+ * до фиксации записи. Ключ рассылается через pub/sub,
+ * остальные экземпляры убирают его из своего L1. Свои сообщения экземпляр пропускает.
+ * Сообщение, пропущенное при переподключении подписки, оставляет в L1 старое значение до истечения
+ * или фонового обновления L1, поэтому сроки L1 задают верхнюю границу такого расхождения.
+ * В L2 значения лежат в JSON с именем типа; читаются только типы из {@code valueTypes}.
+ * Ошибки Redis не ломают чтение и запись: кэш работает как L1, а промах уходит в базу.
+ */
+@Slf4j
+public class TwoLevelCache extends AbstractValueAdaptingCache implements MessageListener {
+
+    public static final ChannelTopic INVALIDATION_TOPIC = new ChannelTopic("cache:invalidation");
+
+    private static final String ALL_KEYS = "*";
+
+    private static final int SCAN_BATCH_SIZE = 1000;
+
+    /**
+     * KEYS: значение, версия. ARGV: версия до загрузки ('' — версии не было), значение, TTL в мс.
+     * Возвращает значение, оставшееся в L2, или nil, если версия изменилась.
+     */
+    private static final RedisScript<String> STORE_SCRIPT = new DefaultRedisScript<>("""
+            if (redis.call('get', KEYS[2]) or '') ~= ARGV[1] then
+                return false
+            end
+            if redis.call('set', KEYS[1], ARGV[2], 'NX', 'PX', ARGV[3]) then
+                return ARGV[2]
+            end
+            return redis.call('get', KEYS[1])
+            """, String.class);
+
+    private static final RedisScript<Long> INVALIDATE_SCRIPT = new DefaultRedisScript<>("""
+            redis.call('del', KEYS[1])
+            redis.call('incr', KEYS[2])
+            redis.call('pexpire', KEYS[2], ARGV[1])
+            return 1
+            """, Long.class);
+
+    private final String name;
+
+    private final com.github.benmanes.caffeine.cache.Cache<Object, Object> localCache;
+
+    private final RedisTemplate<String, String> redisTemplate;
+
+    private final ObjectMapper objectMapper;
+
+    private final Map<String, Class<?>> valueTypes;
+
+    private final Function<String, Object> keyParser;
+
+    private final Duration ttl;
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final ConcurrentMap<Object, CompletableFuture<Object>> loading = new ConcurrentHashMap<>();
+
+    public TwoLevelCache(String name, com.github.benmanes.caffeine.cache.Cache<Object, Object> localCache,
+                         RedisTemplate<String, String> redisTemplate, ObjectMapper objectMapper,
+                         Map<String, Class<?>> valueTypes, Function<String, Object> keyParser, Duration ttl) {
+        super(false);
+        this.name = name;
+        this.localCache = localCache;
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        this.valueTypes = valueTypes;
+        this.keyParser = keyParser;
+        this.ttl = ttl;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return localCache;
+    }
+
+    @Override
+    protected Object lookup(Object key) {
+        Object value = localCache.getIfPresent(key);
+        if (value != null) {
+            return value;
+        }
+        value = lookupRemote(key);
+        if (value != null) {
+            localCache.put(key, value);
+        }
+        return value;
+    }
+
+    /**
+     * Параллельные промахи по одному ключу ждут одну загрузку, промахи по другим ключам идут независимо.
+     * Обращения к Redis и базе идут вне блокировок L1.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        Object value = localCache.getIfPresent(key);
+        if (value != null) {
+            return (T) value;
+        }
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> inFlight = loading.putIfAbsent(key, future);
+        if (inFlight != null) {
+            try {
+                return (T) inFlight.join();
+            } catch (CompletionException ex) {
+                if (ex.getCause() instanceof Error) {
+                    throw (Error) ex.getCause();
+                }
+                throw (RuntimeException) ex.getCause();
+            }
+        }
+        try {
+            value = load(key, valueLoader);
+            future.complete(value);
+            return (T) value;
+        } catch (Throwable ex) {
+            future.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            loading.remove(key, future);
+        }
+    }
+
+    /**
+     * Значение, уже лежащее в L2, не перезаписывается, и остальным экземплярам ничего не рассылается.
+     * Версию ключа putIfAbsent не проверяет, поэтому для заполнения при промахе нужен {@link #get(Object, Callable)}.
+     *
+     * @return значение, которое уже было в кэше, или null, если записано {@code value}
+     */
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        Object cached = localCache.getIfPresent(key);
+        if (cached != null) {
+            return toValueWrapper(cached);
+        }
+        Object stored = storeIfAbsent(key, value);
+        Object local = localCache.asMap().putIfAbsent(key, stored);
+        if (local != null) {
+            return toValueWrapper(local);
+        }
+        return stored == value ? null : toValueWrapper(stored);
+    }
+
+    /**
+     * Для записи после изменения в базе: значение остаётся в L1 этого экземпляра, а из L2 и L1 остальных
+     * экземпляров ключ убирается и при следующем промахе читается из базы.
+     */
+    @Override
+    public void put(Object key, Object value) {
+        if (value == null) {
+            evict(key);
+            return;
+        }
+        localCache.put(key, value);
+        invalidateRemote(key);
+    }
+
+    @Override
+    public void evict(Object key) {
+        localCache.invalidate(key);
+        invalidateRemote(key);
+    }
+
+    @Override
+    public void clear() {
+        localCache.invalidateAll();
+        try (Cursor<String> keys = redisTemplate.scan(ScanOptions.scanOptions()
+                .match(keyPrefix() + "*")
+                .count(SCAN_BATCH_SIZE)
+                .build())) {
+            keys.forEachRemaining(redisTemplate::delete);
+            publish(ALL_KEYS);
+        } catch (RuntimeException ex) {
+            log.warn("Не удалось очистить кэш {} в Redis: {}", name, ex.getMessage());
+        }
+    }
+
+    /**
+     * Сообщение: id экземпляра, имя кэша и ключ через {@code |}.
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split("\\|", 3);
+        if (parts.length < 3 || nodeId.equals(parts[0]) || !name.equals(parts[1])) {
+            return;
+        }
+        if (ALL_KEYS.equals(parts[2])) {
+            localCache.invalidateAll();
+        } else {
+            localCache.invalidate(keyParser.apply(parts[2]));
+        }
+    }
+
+    private Object load(Object key, Callable<?> valueLoader) {
+        List<String> stored;
+        try {
+            stored = redisTemplate.opsForValue().multiGet(List.of(redisKey(key), versionKey(key)));
+        } catch (RuntimeException ex) {
+            log.warn("Не удалось прочитать ключ {} кэша {} из Redis: {}", key, name, ex.getMessage());
+            stored = null;
+        }
+        Object value = stored == null ? null : deserialize(stored.get(0));
+        if (value != null) {
+            localCache.put(key, value);
+            return value;
+        }
+        try {
+            value = valueLoader.call();
+        } catch (Exception ex) {
+            throw new ValueRetrievalException(key, valueLoader, ex);
+        }
+        if (value == null) {
+            return null;
+        }
+        if (stored == null) {
+            localCache.put(key, value);
+            return value;
+        }
+        return storeIfCurrent(key, value, stored.get(1));
+    }
+
+    /**
+     * @return значение, которое осталось в L2; если версия изменилась, {@code value} возвращается без кэширования
+     */
+    private Object storeIfCurrent(Object key, Object value, String version) {
+        Object cached = value;
+        try {
+            String stored = redisTemplate.execute(STORE_SCRIPT, List.of(redisKey(key), versionKey(key)),
+                    version == null ? "" : version, serialize(value), String.valueOf(ttl.toMillis()));
+            if (stored == null) {
+                return value;
+            }
+            Object remote = deserialize(stored);
+            if (remote != null) {
+                cached = remote;
+            }
+        } catch (RuntimeException ex) {
+            log.warn("Не удалось записать ключ {} кэша {} в Redis: {}", key, name, ex.getMessage());
+        }
+        localCache.put(key, cached);
+        return cached;
+    }
+
+    private Object lookupRemote(Object key) {
+        try {
+            return deserialize(redisTemplate.opsForValue().get(redisKey(key)));
+        } catch (RuntimeException ex) {
+            log.warn("Не удалось прочитать ключ {} кэша {} из Redis: {}", key, name, ex.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * @return значение, которое осталось в L2: {@code value} или записанное раньше
+     */
+    private Object storeIfAbsent(Object key, Object value) {
+        try {
+            if (Boolean.FALSE.equals(redisTemplate.opsForValue().setIfAbsent(redisKey(key), serialize(value), ttl))) {
+                Object stored = lookupRemote(key);
+                if (stored != null) {
+                    return stored;
+                }
+            }
+        } catch (RuntimeException ex) {
+            log.warn("Не удалось записать ключ {} кэша {} в Redis: {}", key, name, ex.getMessage());
+        }
+        return value;
+    }
+
+    private void invalidateRemote(Object key) {
+        try {
+            redisTemplate.execute(INVALIDATE_SCRIPT, List.of(redisKey(key), versionKey(key)), String.valueOf(ttl.toMillis()));
+            publish(key.toString());
+        } catch (RuntimeException ex) {
+            log.warn("Не удалось удалить ключ {} кэша {} из Redis: {}", key, name, ex.getMessage());
+        }
+    }
+
+    private void publish(String key) {
+        redisTemplate.convertAndSend(INVALIDATION_TOPIC.getTopic(), nodeId + "|" + name + "|" + key);
+    }
+
+    private String serialize(Object value) {
+        String typeName = valueTypes.entrySet().stream()
+                .filter(type -> type.getValue().equals(value.getClass()))
+                .map(Map.Entry::getKey)
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Тип " + value.getClass() + " не поддерживается кэшем " + name));
+        try {
+            return typeName + ":" + objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalArgumentException(ex);
+        }
+    }
+
+    private Object deserialize(String stored) {
+        if (stored == null) {
+            return null;
+        }
+        int separator = stored.indexOf(':');
+        Class<?> type = separator < 0 ? null : valueTypes.get(stored.substring(0, separator));
+        if (type == null) {
+            return null;
+        }
+        try {
+            return objectMapper.readerFor(type)
+                    .without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                    .readValue(stored.substring(separator + 1));
+        } catch (JsonProcessingException ex) {
+            log.warn("Не удалось прочитать значение кэша {}: {}", name, ex.getMessage());
+            return null;
+        }
+    }
+
+    private String redisKey(Object key) {
+        return keyPrefix() + key;
+    }
+
+    private String versionKey(Object key) {
+        return "cache-version:" + name + ":" + key;
+    }
+
+    private String keyPrefix() {
+        return "cache:" + name + ":";
+    }
+
+}
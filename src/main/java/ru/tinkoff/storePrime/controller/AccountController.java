@@ -1,27 +1,31 @@
 package ru.tinkoff.storePrime.controller;
 
+import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.RestController;
 import ru.tinkoff.storePrime.controller.api.AccountApi;
-import ru.tinkoff.storePrime.converters.CustomerConverter;
-import ru.tinkoff.storePrime.converters.SellerConverter;
 import ru.tinkoff.storePrime.dto.user.AccountDto;
 import ru.tinkoff.storePrime.exceptions.ForbiddenException;
 import ru.tinkoff.storePrime.models.user.Account;
-import ru.tinkoff.storePrime.models.user.Customer;
-import ru.tinkoff.storePrime.models.user.Seller;
 import ru.tinkoff.storePrime.security.details.UserDetailsImpl;
+import ru.tinkoff.storePrime.services.CustomerService;
+import ru.tinkoff.storePrime.services.SellerService;
 
+@RequiredArgsConstructor
 @RestController
 public class AccountController implements AccountApi {
 
+    private final CustomerService customerService;
+
+    private final SellerService sellerService;
+
     @Override
     public ResponseEntity<AccountDto> getThisAccount(UserDetailsImpl userDetailsImpl) {
         Account account = userDetailsImpl.getAccount();
         if (Account.Role.CUSTOMER.equals(account.getRole())) {
-            return ResponseEntity.ok(CustomerConverter.getCustomerDtoFromCustomer((Customer) account));
+            return ResponseEntity.ok(customerService.getThisCustomer(account.getId()));
         } else if (Account.Role.SELLER.equals(account.getRole())) {
-            return ResponseEntity.ok(SellerConverter.getSellerDtoFromSeller((Seller) account));
+            return ResponseEntity.ok(sellerService.getSeller(account.getId()));
         } else {
             throw new ForbiddenException("Запрет доступа");
         }
@@ -5,7 +5,9 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.RestController;
 import ru.tinkoff.storePrime.controller.api.CartApi;
+import ru.tinkoff.storePrime.dto.cart.CartItemChangeDto;
 import ru.tinkoff.storePrime.dto.cart.CartItemDto;
+import ru.tinkoff.storePrime.dto.cart.CartSummaryDto;
 import ru.tinkoff.storePrime.security.details.UserDetailsImpl;
 import ru.tinkoff.storePrime.services.CartService;
 
@@ -31,6 +33,18 @@ public class CartController implements CartApi {
         return ResponseEntity.ok(cartService.getCustomerCart(customerId));
     }
 
+    @Override
+    public ResponseEntity<CartSummaryDto> getCartSummary(UserDetailsImpl userDetailsImpl) {
+        Long customerId = userDetailsImpl.getAccount().getId();
+        return ResponseEntity.ok(cartService.getCartSummary(customerId));
+    }
+
+    @Override
+    public ResponseEntity<List<CartItemDto>> changeCartItems(UserDetailsImpl userDetailsImpl, List<CartItemChangeDto> changes) {
+        Long customerId = userDetailsImpl.getAccount().getId();
+        return ResponseEntity.ok(cartService.changeCartItems(customerId, changes));
+    }
+
     @Override
     public ResponseEntity<Void> deleteProductFromCart(UserDetailsImpl userDetailsImpl, Long productId) {
         Long customerId = userDetailsImpl.getAccount().getId();
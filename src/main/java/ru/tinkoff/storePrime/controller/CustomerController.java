@@ -1,5 +1,6 @@
 package ru.tinkoff.storePrime.controller;
 
+import com.fasterxml.jackson.core.type.TypeReference;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -9,13 +10,18 @@ import ru.tinkoff.storePrime.dto.user.CustomerDto;
 import ru.tinkoff.storePrime.dto.user.NewOrUpdateCustomerDto;
 import ru.tinkoff.storePrime.security.details.UserDetailsImpl;
 import ru.tinkoff.storePrime.services.CustomerService;
+import ru.tinkoff.storePrime.services.IdempotencyService;
 
 @RequiredArgsConstructor
 @RestController
 public class CustomerController implements CustomerApi {
 
+    private static final TypeReference<CustomerDto> CUSTOMER_TYPE = new TypeReference<>() {};
+
     private final CustomerService customerService;
 
+    private final IdempotencyService idempotencyService;
+
     @Override
     public ResponseEntity<CustomerDto> addCustomer(NewOrUpdateCustomerDto newCustomer) {
         return ResponseEntity.status(HttpStatus.CREATED).body(customerService.addCustomer(newCustomer));
@@ -39,9 +45,10 @@ public class CustomerController implements CustomerApi {
     }
 
     @Override
-    public ResponseEntity<CustomerDto> updateCustomerCardBalance(UserDetailsImpl userDetailsImpl, Double replenishment) {
+    public ResponseEntity<CustomerDto> updateCustomerCardBalance(UserDetailsImpl userDetailsImpl, Double replenishment, String idempotencyKey) {
         Long customerId = userDetailsImpl.getAccount().getId();
-        return ResponseEntity.ok(customerService.updateCardBalance(customerId, replenishment));
+        return ResponseEntity.ok(idempotencyService.execute("balance:" + customerId, idempotencyKey, replenishment, CUSTOMER_TYPE,
+                () -> customerService.updateCardBalance(customerId, replenishment)));
     }
 
 }
@@ -1,27 +1,38 @@
 package ru.tinkoff.storePrime.controller;
 
+import com.fasterxml.jackson.core.type.TypeReference;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.RestController;
 import ru.tinkoff.storePrime.controller.api.OrderApi;
 import ru.tinkoff.storePrime.dto.order.OrderDto;
+import ru.tinkoff.storePrime.dto.order.OrderStatusChangeResultDto;
+import ru.tinkoff.storePrime.dto.order.OrdersCursorPage;
+import ru.tinkoff.storePrime.models.Order;
 import ru.tinkoff.storePrime.security.details.UserDetailsImpl;
+import ru.tinkoff.storePrime.services.IdempotencyService;
 import ru.tinkoff.storePrime.services.OrderService;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @RestController
 @RequiredArgsConstructor
 public class OrderController implements OrderApi {
 
+    private static final TypeReference<List<OrderDto>> ORDERS_TYPE = new TypeReference<>() {};
+
     private final OrderService orderService;
 
+    private final IdempotencyService idempotencyService;
+
 
     @Override
-    public ResponseEntity<List<OrderDto>> createOrder(UserDetailsImpl userDetailsImpl, List<Long> cartItemIdList) {
+    public ResponseEntity<List<OrderDto>> createOrder(UserDetailsImpl userDetailsImpl, List<Long> cartItemIdList, String idempotencyKey) {
         Long customerId = userDetailsImpl.getAccount().getId();
-        return ResponseEntity.status(HttpStatus.CREATED).body(orderService.createNewOrders(customerId, cartItemIdList));
+        return ResponseEntity.status(HttpStatus.CREATED).body(idempotencyService.execute("orders:" + customerId, idempotencyKey,
+                cartItemIdList, ORDERS_TYPE, () -> orderService.createNewOrders(customerId, cartItemIdList)));
     }
 
     @Override
@@ -36,6 +47,20 @@ public class OrderController implements OrderApi {
         return ResponseEntity.ok(orderService.getAllOrdersOfSeller(sellerId));
     }
 
+    @Override
+    public ResponseEntity<OrdersCursorPage> getOrdersAfter(UserDetailsImpl userDetailsImpl, String after, Order.Status status,
+                                                           LocalDateTime from, LocalDateTime to) {
+        Long customerId = userDetailsImpl.getAccount().getId();
+        return ResponseEntity.ok(orderService.getOrdersOfCustomerAfter(customerId, after, status, from, to));
+    }
+
+    @Override
+    public ResponseEntity<OrdersCursorPage> getSellerOrdersAfter(UserDetailsImpl userDetailsImpl, String after, Order.Status status,
+                                                                 LocalDateTime from, LocalDateTime to) {
+        Long sellerId = userDetailsImpl.getAccount().getId();
+        return ResponseEntity.ok(orderService.getOrdersOfSellerAfter(sellerId, after, status, from, to));
+    }
+
     @Override
     public ResponseEntity<List<OrderDto>> getCancelledProductsForCustomer(UserDetailsImpl userDetailsImpl) {
         Long customerId = userDetailsImpl.getAccount().getId();
@@ -48,6 +73,12 @@ public class OrderController implements OrderApi {
         return ResponseEntity.ok(orderService.changeStatus(sellerId, orderId, status));
     }
 
+    @Override
+    public ResponseEntity<List<OrderStatusChangeResultDto>> changeStatuses(UserDetailsImpl userDetailsImpl, List<Long> orderIds, String status) {
+        Long sellerId = userDetailsImpl.getAccount().getId();
+        return ResponseEntity.ok(orderService.changeStatuses(sellerId, orderIds, status));
+    }
+
     @Override
     public ResponseEntity<OrderDto> cancelOrder(UserDetailsImpl userDetailsImpl, Long orderId) {
         Long customerId = userDetailsImpl.getAccount().getId();
@@ -7,6 +7,8 @@ import org.springframework.web.bind.annotation.RestController;
 import ru.tinkoff.storePrime.controller.api.ProductApi;
 import ru.tinkoff.storePrime.dto.product.NewOrUpdateProductDto;
 import ru.tinkoff.storePrime.dto.product.ProductDto;
+import ru.tinkoff.storePrime.dto.product.ProductSortOrder;
+import ru.tinkoff.storePrime.dto.product.ProductsCursorPage;
 import ru.tinkoff.storePrime.dto.product.ProductsPage;
 import ru.tinkoff.storePrime.security.details.UserDetailsImpl;
 import ru.tinkoff.storePrime.services.ProductService;
@@ -36,11 +38,11 @@ public class ProductController implements ProductApi {
     }
 
     @Override
-    public ResponseEntity<List<ProductDto>> getProductsByContentString(String content, String category) {
+    public ResponseEntity<List<ProductDto>> getProductsByContentString(String content, String category, int page) {
         if (category == null) {
-            return ResponseEntity.ok().body(productService.getAllProductsByContentString(content));
+            return ResponseEntity.ok().body(productService.getAllProductsByContentString(content, page));
         } else {
-            return ResponseEntity.ok().body(productService.getAllProductsByContentStringAndCategory(content, category));
+            return ResponseEntity.ok().body(productService.getAllProductsByContentStringAndCategory(content, category, page));
         }
 
     }
@@ -50,6 +52,12 @@ public class ProductController implements ProductApi {
         return ResponseEntity.ok().body(productService.getProductsPage(page, minPrice, maxPrice, category, sellerId));
     }
 
+    @Override
+    public ResponseEntity<ProductsCursorPage> getProductsAfter(String after, ProductSortOrder sortOrder, Double minPrice, Double maxPrice,
+                                                               String category, Long sellerId, boolean withTotal) {
+        return ResponseEntity.ok().body(productService.getProductsAfter(after, sortOrder, minPrice, maxPrice, category, sellerId, withTotal));
+    }
+
     @Override
     public ResponseEntity<List<ProductDto>> getAllProducts(Double minPrice, Double maxPrice, String category, Long sellerId) {
         return ResponseEntity.ok().body(productService.getAllProducts(minPrice, maxPrice, category, sellerId));
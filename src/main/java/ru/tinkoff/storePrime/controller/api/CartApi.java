@@ -14,7 +14,9 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import ru.tinkoff.storePrime.dto.cart.CartItemChangeDto;
 import ru.tinkoff.storePrime.dto.cart.CartItemDto;
+import ru.tinkoff.storePrime.dto.cart.CartSummaryDto;
 import ru.tinkoff.storePrime.dto.exception.ExceptionDto;
 import ru.tinkoff.storePrime.security.details.UserDetailsImpl;
 
@@ -76,6 +78,59 @@ public interface CartApi {
     ResponseEntity<List<CartItemDto>> getCustomerCart(@Parameter(hidden = true) @AuthenticationPrincipal UserDetailsImpl userDetailsImpl);
 
 
+    @Operation(summary = "Итоги корзины: количество позиций и товаров, суммы по продавцам, нехватка остатков")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Итоги корзины",
+                    content = {
+                            @Content(mediaType = "application/json",
+                                    schema = @Schema(implementation = CartSummaryDto.class))
+                    }
+            ),
+            @ApiResponse(responseCode = "403", description = "Сведения об ошибке: доступ запрещен",
+                    content = {
+                            @Content(mediaType = "application/json",
+                                    schema = @Schema(implementation = ExceptionDto.class))
+                    }
+            )
+    })
+    @GetMapping("/summary")
+    @PreAuthorize("hasAuthority('CUSTOMER')")
+    ResponseEntity<CartSummaryDto> getCartSummary(@Parameter(hidden = true) @AuthenticationPrincipal UserDetailsImpl userDetailsImpl);
+
+
+    @Operation(summary = "Изменение нескольких позиций корзины одним запросом")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Корзина после изменений",
+                    content = {
+                            @Content(mediaType = "application/json",
+                                    array = @ArraySchema(schema = @Schema(implementation = CartItemDto.class)))
+                    }
+            ),
+            @ApiResponse(responseCode = "404", description = "Сведения об ошибке: товар не найден",
+                    content = {
+                            @Content(mediaType = "application/json",
+                                    schema = @Schema(implementation = ExceptionDto.class))
+                    }
+            ),
+            @ApiResponse(responseCode = "403", description = "Сведения об ошибке: доступ запрещен",
+                    content = {
+                            @Content(mediaType = "application/json",
+                                    schema = @Schema(implementation = ExceptionDto.class))
+                    }
+            ),
+            @ApiResponse(responseCode = "400", description = "Сведения об ошибке: неверный запрос",
+                    content = {
+                            @Content(mediaType = "application/json",
+                                    schema = @Schema(implementation = ExceptionDto.class))
+                    }
+            )
+    })
+    @PatchMapping
+    @PreAuthorize("hasAuthority('CUSTOMER')")
+    ResponseEntity<List<CartItemDto>> changeCartItems(@Parameter(hidden = true) @AuthenticationPrincipal UserDetailsImpl userDetailsImpl,
+                                                      @RequestBody List<CartItemChangeDto> changes);
+
+
     @Operation(summary = "Удаление товара из корзины")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "204", description = "Товар удален из корзины",
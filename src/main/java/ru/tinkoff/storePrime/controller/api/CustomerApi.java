@@ -10,6 +10,7 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import io.swagger.v3.oas.annotations.tags.Tags;
 import org.springframework.http.ResponseEntity;
+import org.springframework.lang.Nullable;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
@@ -147,12 +148,19 @@ public interface CustomerApi {
                             @Content(mediaType = "application/json",
                                     schema = @Schema(implementation = ExceptionDto.class))
                     }
+            ),
+            @ApiResponse(responseCode = "409", description = "Запрос с этим ключом идемпотентности ещё выполняется",
+                    content = {
+                            @Content(mediaType = "application/json",
+                                    schema = @Schema(implementation = ExceptionDto.class))
+                    }
             )
     })
     @PatchMapping
     @PreAuthorize("hasAuthority('CUSTOMER')")
     ResponseEntity<CustomerDto> updateCustomerCardBalance(@Parameter(hidden = true) @AuthenticationPrincipal UserDetailsImpl userDetailsImpl,
-                                                          @RequestBody @DecimalMin("0.0") Double replenishment);
+                                                          @RequestBody @DecimalMin("0.0") Double replenishment,
+                                                          @Parameter(description = "Ключ идемпотентности: повтор с тем же ключом вернёт результат первого запроса") @Nullable @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey);
 
 
 
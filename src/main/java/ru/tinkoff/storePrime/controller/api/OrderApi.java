@@ -9,14 +9,20 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import io.swagger.v3.oas.annotations.tags.Tags;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
+import org.springframework.lang.Nullable;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 import ru.tinkoff.storePrime.dto.exception.ExceptionDto;
 import ru.tinkoff.storePrime.dto.order.OrderDto;
+import ru.tinkoff.storePrime.dto.order.OrderStatusChangeResultDto;
+import ru.tinkoff.storePrime.dto.order.OrdersCursorPage;
+import ru.tinkoff.storePrime.models.Order;
 import ru.tinkoff.storePrime.security.details.UserDetailsImpl;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Tags(value = {
@@ -45,11 +51,18 @@ public interface OrderApi {
                                     schema = @Schema(implementation = ExceptionDto.class))
                     }
             ),
+            @ApiResponse(responseCode = "409", description = "Запрос с этим ключом идемпотентности ещё выполняется",
+                    content = {
+                            @Content(mediaType = "application/json",
+                                    schema = @Schema(implementation = ExceptionDto.class))
+                    }
+            ),
     })
     @PostMapping
     @PreAuthorize("hasAuthority('CUSTOMER')")
     ResponseEntity<List<OrderDto>> createOrder(@Parameter(hidden = true) @AuthenticationPrincipal UserDetailsImpl userDetailsImpl,
-                                         @RequestBody List<Long> cartItemIdList);
+                                         @RequestBody List<Long> cartItemIdList,
+                                         @Parameter(description = "Ключ идемпотентности: повтор с тем же ключом вернёт результат первого запроса") @Nullable @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey);
 
     @Operation(summary = "Получение всех заказов пользователя")
     @ApiResponses(value = {
@@ -77,6 +90,52 @@ public interface OrderApi {
     @PreAuthorize("hasAuthority('SELLER')")
     ResponseEntity<List<OrderDto>> getAllOrderForSeller(@Parameter(hidden = true) @AuthenticationPrincipal UserDetailsImpl userDetailsImpl);
 
+    @Operation(summary = "Получение заказов покупателя с курсорной пагинацией")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Порция заказов и курсор следующей порции",
+                    content = {
+                            @Content(mediaType = "application/json", schema = @Schema(implementation = OrdersCursorPage.class))
+                    }),
+            @ApiResponse(responseCode = "400", description = "Сведения об ошибке: неверный запрос",
+                    content = {
+                            @Content(mediaType = "application/json",
+                                    schema = @Schema(implementation = ExceptionDto.class))
+                    }
+            )
+    })
+    @GetMapping("/pages")
+    @PreAuthorize("hasAuthority('CUSTOMER')")
+    ResponseEntity<OrdersCursorPage> getOrdersAfter(
+            @Parameter(hidden = true) @AuthenticationPrincipal UserDetailsImpl userDetailsImpl,
+            @Parameter(description = "Курсор, полученный с предыдущей страницы") @Nullable @RequestParam(value = "after", required = false) String after,
+            @Parameter(description = "Статус заказа", example = "CREATED") @Nullable @RequestParam(value = "status", required = false) Order.Status status,
+            @Parameter(description = "Начало периода оформления, включительно", example = "2023-05-01T00:00:00") @Nullable @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) @RequestParam(value = "from", required = false) LocalDateTime from,
+            @Parameter(description = "Конец периода оформления, не включительно", example = "2023-06-01T00:00:00") @Nullable @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) @RequestParam(value = "to", required = false) LocalDateTime to
+    );
+
+    @Operation(summary = "Получение заказов продавца с курсорной пагинацией")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Порция заказов и курсор следующей порции",
+                    content = {
+                            @Content(mediaType = "application/json", schema = @Schema(implementation = OrdersCursorPage.class))
+                    }),
+            @ApiResponse(responseCode = "400", description = "Сведения об ошибке: неверный запрос",
+                    content = {
+                            @Content(mediaType = "application/json",
+                                    schema = @Schema(implementation = ExceptionDto.class))
+                    }
+            )
+    })
+    @GetMapping("/seller/pages")
+    @PreAuthorize("hasAuthority('SELLER')")
+    ResponseEntity<OrdersCursorPage> getSellerOrdersAfter(
+            @Parameter(hidden = true) @AuthenticationPrincipal UserDetailsImpl userDetailsImpl,
+            @Parameter(description = "Курсор, полученный с предыдущей страницы") @Nullable @RequestParam(value = "after", required = false) String after,
+            @Parameter(description = "Статус заказа", example = "CREATED") @Nullable @RequestParam(value = "status", required = false) Order.Status status,
+            @Parameter(description = "Начало периода оформления, включительно", example = "2023-05-01T00:00:00") @Nullable @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) @RequestParam(value = "from", required = false) LocalDateTime from,
+            @Parameter(description = "Конец периода оформления, не включительно", example = "2023-06-01T00:00:00") @Nullable @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) @RequestParam(value = "to", required = false) LocalDateTime to
+    );
+
     @Operation(summary = "Получение всех отмененных заказов покупателя")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Заказы продавца",
@@ -104,6 +163,26 @@ public interface OrderApi {
     ResponseEntity<OrderDto> changeStatus(@Parameter(hidden = true) @AuthenticationPrincipal UserDetailsImpl userDetailsImpl,
                                           @PathVariable("orderId") Long orderId, @RequestParam("status") String status);
 
+    @Operation(summary = "Изменение статуса нескольких заказов продавца")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Результат по каждому заказу",
+                    content = {
+                            @Content(mediaType = "application/json",
+                                    array = @ArraySchema(schema = @Schema(implementation = OrderStatusChangeResultDto.class)))
+                    }
+            ),
+            @ApiResponse(responseCode = "400", description = "Сведения об ошибке: неверный статус или слишком много заказов",
+                    content = {
+                            @Content(mediaType = "application/json",
+                                    schema = @Schema(implementation = ExceptionDto.class))
+                    }
+            )
+    })
+    @PatchMapping("/status")
+    @PreAuthorize("hasAuthority('SELLER')")
+    ResponseEntity<List<OrderStatusChangeResultDto>> changeStatuses(@Parameter(hidden = true) @AuthenticationPrincipal UserDetailsImpl userDetailsImpl,
+                                                                    @RequestBody List<Long> orderIds, @RequestParam("status") String status);
+
     @Operation(summary = "Изменение статуса заказа")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Измененный заказ",
@@ -18,6 +18,8 @@ import org.springframework.web.bind.annotation.*;
 import ru.tinkoff.storePrime.dto.exception.ExceptionDto;
 import ru.tinkoff.storePrime.dto.product.NewOrUpdateProductDto;
 import ru.tinkoff.storePrime.dto.product.ProductDto;
+import ru.tinkoff.storePrime.dto.product.ProductSortOrder;
+import ru.tinkoff.storePrime.dto.product.ProductsCursorPage;
 import ru.tinkoff.storePrime.dto.product.ProductsPage;
 import ru.tinkoff.storePrime.security.details.UserDetailsImpl;
 
@@ -232,6 +234,30 @@ public interface ProductApi {
             @Parameter(description = "Идентификатор продавца", example = "1") @Nullable @Min(1) @RequestParam(value = "sellerId", required = false) Long sellerId
     );
 
+    @Operation(summary = "Получение списка товаров с курсорной пагинацией")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Порция товаров и курсор следующей порции",
+                    content = {
+                            @Content(mediaType = "application/json", schema = @Schema(implementation = ProductsCursorPage.class))
+                    }),
+            @ApiResponse(responseCode = "400", description = "Сведения об ошибке: неверный запрос",
+                    content = {
+                            @Content(mediaType = "application/json",
+                                    schema = @Schema(implementation = ExceptionDto.class))
+                    }
+            )
+    })
+    @GetMapping("/pages/cursor")
+    ResponseEntity<ProductsCursorPage> getProductsAfter(
+            @Parameter(description = "Курсор, полученный с предыдущей страницы") @Nullable @RequestParam(value = "after", required = false) String after,
+            @Parameter(description = "Порядок сортировки", example = "PRICE_ASC") @RequestParam(value = "sort", defaultValue = "NEWEST") ProductSortOrder sortOrder,
+            @Parameter(description = "Минимальная стоимость товара", example = "1500") @Nullable @DecimalMin("0") @RequestParam(value = "minPrice", required = false) Double minPrice,
+            @Parameter(description = "Максимальная стоимость товара", example = "1500") @Nullable @RequestParam(value = "maxPrice", required = false) Double maxPrice,
+            @Parameter(description = "Категория товара", example = "pets") @Nullable @Pattern(regexp = "[a-zA-Z]+") @RequestParam(value = "category", required = false) String category,
+            @Parameter(description = "Идентификатор продавца", example = "1") @Nullable @Min(1) @RequestParam(value = "sellerId", required = false) Long sellerId,
+            @Parameter(description = "Вернуть общее количество товаров (дополнительный запрос)") @RequestParam(value = "withTotal", defaultValue = "false") boolean withTotal
+    );
+
     @Operation(summary = "Получение списка товаров")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Страница с товарами",
@@ -253,7 +279,7 @@ public interface ProductApi {
             @Parameter(description = "Идентификатор продавца", example = "1") @Nullable @RequestParam(value = "id", required = false) Long sellerId
     );
 
-    @Operation(summary = "Получение товаров по названию")
+    @Operation(summary = "Полнотекстовый поиск товаров по названию и описанию, упорядоченный по релевантности")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "список товаров по названию",
                     content = {
@@ -270,7 +296,8 @@ public interface ProductApi {
     })
     @GetMapping("/search")
     ResponseEntity<List<ProductDto>> getProductsByContentString(@Parameter(description = "Строка для поиска", example = "dress") @RequestParam("content") String content,
-                                                                @Parameter(description = "Категория для поиска", example = "toys") @Nullable @RequestParam("category") String category);
+                                                                @Parameter(description = "Категория для поиска", example = "toys") @Nullable @RequestParam(value = "category", required = false) String category,
+                                                                @Parameter(description = "Номер страницы результатов", example = "0") @Min(0) @RequestParam(value = "page", defaultValue = "0") int page);
 
 
 }
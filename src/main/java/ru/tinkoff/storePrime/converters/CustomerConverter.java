@@ -1,9 +1,12 @@
 package ru.tinkoff.storePrime.converters;
 
+import ru.tinkoff.storePrime.dto.location.AddressDto;
+import ru.tinkoff.storePrime.dto.location.LocationDto;
 import ru.tinkoff.storePrime.dto.user.CustomerDto;
 import ru.tinkoff.storePrime.dto.user.NewOrUpdateCustomerDto;
 import ru.tinkoff.storePrime.models.user.Account;
 import ru.tinkoff.storePrime.models.user.Customer;
+import ru.tinkoff.storePrime.models.user.CustomerSnapshot;
 
 public class CustomerConverter {
 
@@ -38,6 +41,24 @@ public class CustomerConverter {
                 .build();
     }
 
+    public static CustomerDto getCustomerDtoFromCustomerSnapshot(CustomerSnapshot customer) {
+        return CustomerDto.builder()
+                .id(customer.getId())
+                .email(customer.getEmail())
+                .phoneNumber(customer.getPhoneNumber())
+                .name(customer.getName())
+                .surname(customer.getSurname())
+                .gender(customer.getGender())
+                .birthdayDate(customer.getBirthdayDate().toString())
+                .addressDto(AddressDto.builder()
+                        .street(customer.getStreet())
+                        .house(customer.getHouse())
+                        .apartment(customer.getApartment())
+                        .location(new LocationDto(customer.getCountry(), customer.getCity()))
+                        .build())
+                .build();
+    }
+
 
 
 }
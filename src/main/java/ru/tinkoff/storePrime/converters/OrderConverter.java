@@ -1,7 +1,9 @@
 package ru.tinkoff.storePrime.converters;
 
 import ru.tinkoff.storePrime.dto.order.OrderDto;
+import ru.tinkoff.storePrime.dto.order.OrderLineDto;
 import ru.tinkoff.storePrime.models.Order;
+import ru.tinkoff.storePrime.models.OrderLine;
 
 import java.util.List;
 import java.util.stream.Collectors;
@@ -14,9 +16,13 @@ public class OrderConverter {
 
         return OrderDto.builder().id(order.getId())
                 .customerId(order.getCustomer().getId())
+                .sellerId(order.getSeller().getId())
                 .status(order.getStatus().name())
-                .quantity(order.getQuantity())
-                .product(ProductConverter.getProductDtoFromProduct(order.getProduct()))
+                .lines(order.getLines().stream()
+                        .map(OrderConverter::getOrderLineDtoFromOrderLine)
+                        .collect(Collectors.toList()))
+                .totalPrice(order.getTotalPrice())
+                .createdAt(order.getCreatedAt())
                 .build();
     }
 
@@ -25,4 +31,12 @@ public class OrderConverter {
                 .collect(Collectors.toList());
     }
 
+    public static OrderLineDto getOrderLineDtoFromOrderLine(OrderLine line) {
+        return OrderLineDto.builder()
+                .product(ProductConverter.getProductDtoFromProduct(line.getProduct()))
+                .quantity(line.getQuantity())
+                .price(line.getPrice())
+                .build();
+    }
+
 }
@@ -6,6 +6,7 @@ import ru.tinkoff.storePrime.dto.user.SellerDto;
 import ru.tinkoff.storePrime.models.Location;
 import ru.tinkoff.storePrime.models.user.Account;
 import ru.tinkoff.storePrime.models.user.Seller;
+import ru.tinkoff.storePrime.models.user.SellerSnapshot;
 
 public class SellerConverter {
 
@@ -37,5 +38,16 @@ public class SellerConverter {
                 .build();
     }
 
+    public static SellerDto getSellerDtoFromSellerSnapshot(SellerSnapshot seller) {
+        return SellerDto.builder()
+                .id(seller.getId())
+                .email(seller.getEmail())
+                .phoneNumber(seller.getPhoneNumber())
+                .name(seller.getName())
+                .description(seller.getDescription())
+                .locationDto(new LocationDto(seller.getCountry(), seller.getCity()))
+                .build();
+    }
+
 
 }
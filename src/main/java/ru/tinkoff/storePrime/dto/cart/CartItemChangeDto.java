@@ -0,0 +1,22 @@
+package ru.tinkoff.storePrime.dto.cart;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Schema(description = "Изменение одной позиции корзины")
+public class CartItemChangeDto {
+
+    @Schema(description = "Идентификатор товара", example = "123")
+    private Long productId;
+
+    @Schema(description = "Новое количество товара в корзине, 0 — удалить товар из корзины", example = "2")
+    private Integer quantity;
+
+}
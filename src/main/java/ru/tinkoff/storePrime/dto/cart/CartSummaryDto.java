@@ -0,0 +1,54 @@
+package ru.tinkoff.storePrime.dto.cart;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Schema(description = "Итоги корзины без сведений о товарах")
+public class CartSummaryDto {
+
+    @Schema(description = "Количество позиций в корзине", example = "3")
+    private Long lineCount;
+
+    @Schema(description = "Общее количество товаров", example = "5")
+    private Long totalQuantity;
+
+    @Schema(description = "Сумма корзины", example = "1500.0")
+    private Double totalPrice;
+
+    @Schema(description = "Итоги по продавцам")
+    private List<SellerSubtotal> sellers;
+
+    @Schema(description = "Товары, которых на складе меньше, чем в корзине")
+    private List<Long> outOfStockProductIds;
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    @Builder
+    @Schema(description = "Итоги корзины по одному продавцу")
+    public static class SellerSubtotal {
+
+        @Schema(description = "Идентификатор продавца", example = "123")
+        private Long sellerId;
+
+        @Schema(description = "Количество позиций продавца", example = "2")
+        private Long lineCount;
+
+        @Schema(description = "Количество товаров продавца", example = "3")
+        private Long quantity;
+
+        @Schema(description = "Сумма по продавцу", example = "900.0")
+        private Double subtotal;
+
+    }
+
+}
@@ -6,7 +6,9 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.experimental.SuperBuilder;
 import ru.tinkoff.storePrime.dto.base.LongIdDto;
-import ru.tinkoff.storePrime.dto.product.ProductDto;
+
+import java.time.LocalDateTime;
+import java.util.List;
 
 @Data
 @AllArgsConstructor
@@ -18,13 +20,19 @@ public class OrderDto extends LongIdDto {
     @Schema(description = "Статус заказа", example = "TRANSITING")
     private String status;
 
-    private ProductDto product;
-
     @Schema(description = "Идентификатор пользователя", example = "123")
     private Long customerId;
 
-    @Schema(description = "Количество товара в заказе", example = "3")
-    private Integer quantity;
+    @Schema(description = "Идентификатор продавца", example = "45")
+    private Long sellerId;
+
+    @Schema(description = "Позиции заказа")
+    private List<OrderLineDto> lines;
+
+    @Schema(description = "Сумма заказа", example = "599.97")
+    private Double totalPrice;
 
+    @Schema(description = "Время оформления заказа", example = "2023-05-10T12:00:00")
+    private LocalDateTime createdAt;
 
 }
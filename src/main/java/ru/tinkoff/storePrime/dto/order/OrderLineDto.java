@@ -0,0 +1,25 @@
+package ru.tinkoff.storePrime.dto.order;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import ru.tinkoff.storePrime.dto.product.ProductDto;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Schema(description = "Позиция заказа")
+public class OrderLineDto {
+
+    private ProductDto product;
+
+    @Schema(description = "Количество товара", example = "3")
+    private Integer quantity;
+
+    @Schema(description = "Цена единицы товара на момент оформления", example = "199.99")
+    private Double price;
+
+}
@@ -0,0 +1,26 @@
+package ru.tinkoff.storePrime.dto.order;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Schema(description = "Результат изменения статуса одного заказа")
+public class OrderStatusChangeResultDto {
+
+    public enum Result {
+        UPDATED, NOT_FOUND, FORBIDDEN
+    }
+
+    @Schema(description = "Идентификатор заказа", example = "123")
+    private Long orderId;
+
+    @Schema(description = "Результат", example = "UPDATED")
+    private Result result;
+
+}
@@ -0,0 +1,25 @@
+package ru.tinkoff.storePrime.dto.order;
+
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Schema(description = "Порция заказов и курсор для получения следующей порции")
+public class OrdersCursorPage {
+
+    @Schema(description = "Список заказов, от новых к старым")
+    private List<OrderDto> orders;
+
+    @Schema(description = "Курсор следующей страницы, отсутствует на последней странице", example = "MTIzOjIwMjMtMDUtMTBUMTI6MDA6MDA")
+    private String nextCursor;
+
+}
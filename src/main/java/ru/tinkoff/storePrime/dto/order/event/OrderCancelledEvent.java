@@ -0,0 +1,22 @@
+package ru.tinkoff.storePrime.dto.order.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class OrderCancelledEvent {
+
+    private Long orderId;
+
+    private Long customerId;
+
+    private Long sellerId;
+
+    private Double refund;
+
+}
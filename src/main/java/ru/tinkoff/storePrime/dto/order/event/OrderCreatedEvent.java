@@ -0,0 +1,40 @@
+package ru.tinkoff.storePrime.dto.order.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class OrderCreatedEvent {
+
+    @Data
+    @Builder
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class Line {
+
+        private Long productId;
+
+        private Integer quantity;
+
+        private Double price;
+
+    }
+
+    private Long orderId;
+
+    private Long customerId;
+
+    private Long sellerId;
+
+    private List<Line> lines;
+
+    private Double totalPrice;
+
+}
@@ -0,0 +1,20 @@
+package ru.tinkoff.storePrime.dto.order.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class OrderStatusChangedEvent {
+
+    private Long orderId;
+
+    private Long sellerId;
+
+    private String status;
+
+}
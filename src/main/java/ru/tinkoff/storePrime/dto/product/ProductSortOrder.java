@@ -0,0 +1,5 @@
+package ru.tinkoff.storePrime.dto.product;
+
+public enum ProductSortOrder {
+    NEWEST, PRICE_ASC, PRICE_DESC
+}
@@ -0,0 +1,28 @@
+package ru.tinkoff.storePrime.dto.product;
+
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Schema(description = "Порция товаров и курсор для получения следующей порции")
+public class ProductsCursorPage {
+
+    @Schema(description = "Список товаров")
+    private List<ProductDto> products;
+
+    @Schema(description = "Курсор следующей страницы, отсутствует на последней странице", example = "UFJJQ0VfQVNDOjE5OS45OToxMjM")
+    private String nextCursor;
+
+    @Schema(description = "Общее количество товаров, возвращается только по запросу", example = "1520")
+    private Long totalCount;
+
+}
@@ -25,6 +25,8 @@ public final class ExceptionMessages {
 
     public static final String ALREADY_EXIST = "ALREADY_EXIST";
 
+    public static final String REQUEST_IN_PROGRESS = "REQUEST_IN_PROGRESS";
+
     public static final String VALIDATION_REJECTED = "VALIDATION_REJECTED";
 
     public static final String INTERNAL_SERVER_ERROR = "INTERNAL_SERVER_ERROR";
@@ -0,0 +1,11 @@
+package ru.tinkoff.storePrime.exceptions;
+
+import org.springframework.http.HttpStatus;
+
+public class RequestInProgressException extends MarketServiceException {
+
+    public RequestInProgressException(String message) {
+        super(HttpStatus.CONFLICT, message, ExceptionMessages.REQUEST_IN_PROGRESS);
+    }
+
+}
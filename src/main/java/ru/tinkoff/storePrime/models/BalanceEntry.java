@@ -0,0 +1,44 @@
+package ru.tinkoff.storePrime.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.experimental.SuperBuilder;
+import org.hibernate.annotations.CreationTimestamp;
+import ru.tinkoff.storePrime.models.base.LongIdEntity;
+import ru.tinkoff.storePrime.models.user.Account;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Изменение баланса счёта, ещё не перенесённое в {@link Account#getCardBalance()}.
+ * Записи только добавляются; фоновое сжатие переносит их сумму в снимок и удаляет.
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@SuperBuilder
+@Getter
+@Setter
+@Entity
+@Table(name = "balance_entry", indexes = {
+        @Index(name = "balance_entry_account_idx", columnList = "account_id")
+})
+public class BalanceEntry extends LongIdEntity {
+
+    @Enumerated(value = EnumType.STRING)
+    @Column(nullable = false)
+    private Account.Role role;
+
+    @Column(name = "account_id", nullable = false)
+    private Long accountId;
+
+    @Column(nullable = false)
+    private Double amount;
+
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+}
@@ -6,10 +6,12 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 import lombok.experimental.SuperBuilder;
+import org.hibernate.annotations.UpdateTimestamp;
 import ru.tinkoff.storePrime.models.base.LongIdEntity;
 import ru.tinkoff.storePrime.models.user.Customer;
 
 import javax.persistence.*;
+import java.time.LocalDateTime;
 
 @AllArgsConstructor
 @NoArgsConstructor
@@ -17,7 +19,7 @@ import javax.persistence.*;
 @Getter
 @Setter
 @Entity
-@Table(name = "cart_item")
+@Table(name = "cart_item", indexes = @Index(name = "cart_item_updated_at_idx", columnList = "updated_at"))
 public class CartItem extends LongIdEntity {
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -30,4 +32,12 @@ public class CartItem extends LongIdEntity {
 
     private Integer quantity;
 
+    /**
+     * Время последнего изменения позиции; по нему {@link ru.tinkoff.storePrime.services.utils.AbandonedCartSweeper}
+     * находит брошенные корзины.
+     */
+    @UpdateTimestamp
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
 }
@@ -2,17 +2,21 @@ package ru.tinkoff.storePrime.models;
 
 
 import lombok.AllArgsConstructor;
+import lombok.Builder;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 import lombok.experimental.SuperBuilder;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.CreationTimestamp;
 import ru.tinkoff.storePrime.models.base.LongIdEntity;
 import ru.tinkoff.storePrime.models.user.Customer;
+import ru.tinkoff.storePrime.models.user.Seller;
 
-import javax.persistence.Entity;
-import javax.persistence.FetchType;
-import javax.persistence.ManyToOne;
-import javax.persistence.Table;
+import javax.persistence.*;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 
 @AllArgsConstructor
 @NoArgsConstructor
@@ -20,22 +24,51 @@ import javax.persistence.Table;
 @Setter
 @SuperBuilder
 @Entity
-@Table(name = "market_order")
+@BatchSize(size = 50)
+@Table(name = "market_order", indexes = {
+        @Index(name = "market_order_customer_created_idx", columnList = "customer_id, created_at, id"),
+        @Index(name = "market_order_customer_status_created_idx", columnList = "customer_id, status, created_at, id"),
+        @Index(name = "market_order_seller_created_idx", columnList = "seller_id, created_at, id"),
+        @Index(name = "market_order_seller_status_created_idx", columnList = "seller_id, status, created_at, id")
+})
 public class Order extends LongIdEntity {
 
     public enum Status {
         CREATED, TRANSITING, DELIVERED, CANCELLED
     }
 
-    @ManyToOne
-    private Product product;
-
-    private Integer quantity;
-
     private Status status;
 
 
     @ManyToOne(optional = false, fetch = FetchType.LAZY)
     private Customer customer;
 
+    /**
+     * Продавец товара на момент оформления. Дублирует {@code product.seller}, чтобы заказы продавца
+     * выбирались по индексу без соединения с товарами.
+     */
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "seller_id")
+    private Seller seller;
+
+    @CreationTimestamp
+    @Column(name = "created_at", updatable = false)
+    private LocalDateTime createdAt;
+
+    /**
+     * Товары одного продавца из одного оформления. Сумма считается один раз при оформлении.
+     */
+    @OneToMany(mappedBy = "order", cascade = CascadeType.ALL)
+    @BatchSize(size = 50)
+    @Builder.Default
+    private List<OrderLine> lines = new ArrayList<>();
+
+    @Column(name = "total_price")
+    private Double totalPrice;
+
+    public void addLine(OrderLine line) {
+        line.setOrder(this);
+        lines.add(line);
+    }
+
 }
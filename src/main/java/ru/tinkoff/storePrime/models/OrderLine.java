@@ -0,0 +1,40 @@
+package ru.tinkoff.storePrime.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.experimental.SuperBuilder;
+import ru.tinkoff.storePrime.models.base.LongIdEntity;
+
+import javax.persistence.*;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@SuperBuilder
+@Getter
+@Setter
+@Entity
+@Table(name = "order_line", indexes = {
+        @Index(name = "order_line_order_idx", columnList = "order_id")
+})
+public class OrderLine extends LongIdEntity {
+
+    @ManyToOne(optional = false, fetch = FetchType.LAZY)
+    @JoinColumn(name = "order_id")
+    private Order order;
+
+    @ManyToOne(optional = false, fetch = FetchType.LAZY)
+    @JoinColumn(name = "product_id")
+    private Product product;
+
+    @Column(nullable = false)
+    private Integer quantity;
+
+    /**
+     * Цена единицы товара на момент оформления.
+     */
+    @Column(nullable = false)
+    private Double price;
+
+}
@@ -0,0 +1,50 @@
+package ru.tinkoff.storePrime.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.experimental.SuperBuilder;
+import org.hibernate.annotations.CreationTimestamp;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@SuperBuilder
+@Getter
+@Setter
+@Entity
+@Table(name = "outbox_event")
+public class OutboxEvent {
+
+    public enum Type {
+        ORDER_CREATED, ORDER_STATUS_CHANGED, ORDER_CANCELLED
+    }
+
+    /**
+     * Relay публикует события по возрастанию id, поэтому id выдаются по одному, а не блоками
+     * по 50, как у {@link ru.tinkoff.storePrime.models.base.LongIdEntity}: у каждого экземпляра
+     * свой блок, и события одного заказа с разных экземпляров получили бы id не в порядке записи.
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "outbox_event_seq")
+    @SequenceGenerator(name = "outbox_event_seq", sequenceName = "outbox_event_seq", allocationSize = 1)
+    private Long id;
+
+    @Column(name = "aggregate_id", nullable = false)
+    private Long aggregateId;
+
+    @Enumerated(value = EnumType.STRING)
+    @Column(name = "event_type", nullable = false)
+    private Type eventType;
+
+    @Column(nullable = false, columnDefinition = "text")
+    private String payload;
+
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+}
@@ -5,6 +5,7 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 import lombok.experimental.SuperBuilder;
+import org.hibernate.annotations.BatchSize;
 import ru.tinkoff.storePrime.models.base.LongIdEntity;
 import ru.tinkoff.storePrime.models.user.Seller;
 
@@ -19,7 +20,12 @@ import java.util.Objects;
 @Setter
 
 @Entity
-@Table(name = "product")
+@BatchSize(size = 50)
+@Table(name = "product", indexes = {
+        @Index(name = "product_price_id_idx", columnList = "price, id"),
+        @Index(name = "product_seller_price_id_idx", columnList = "seller_id, price, id"),
+        @Index(name = "product_seller_id_idx", columnList = "seller_id, id")
+})
 public class Product extends LongIdEntity {
 
     @Column(nullable = false, name = "title")
@@ -38,14 +44,17 @@ public class Product extends LongIdEntity {
     @ManyToMany(fetch = FetchType.LAZY)
     @JoinTable(name = "product_category",
             joinColumns = @JoinColumn(name = "product_id"),
-            inverseJoinColumns = @JoinColumn(name = "category_id")
+            inverseJoinColumns = @JoinColumn(name = "category_id"),
+            indexes = @Index(name = "product_category_category_idx", columnList = "category_id, product_id")
     )
+    @BatchSize(size = 50)
     private List<Category> categories;
 
     @Column(name = "amount")
     private Integer amount;
 
     @ElementCollection
+    @BatchSize(size = 50)
     private List<String> imagesIds;
 
     @Override
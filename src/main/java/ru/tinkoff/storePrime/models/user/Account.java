@@ -41,6 +41,11 @@ public abstract class Account extends LongIdEntity {
     @Column(nullable = false)
     private String passwordHash;
 
+    /**
+     * Снимок баланса. Меняется только сжатием журнала {@link ru.tinkoff.storePrime.models.BalanceEntry},
+     * поэтому сохранение сущности его не перезаписывает; актуальный баланс считает {@code BalanceService}.
+     */
+    @Column(updatable = false)
     private Double cardBalance;
 
     @Enumerated(value = EnumType.STRING)
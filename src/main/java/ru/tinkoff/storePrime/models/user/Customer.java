@@ -4,11 +4,9 @@ package ru.tinkoff.storePrime.models.user;
 import lombok.*;
 import lombok.experimental.SuperBuilder;
 import ru.tinkoff.storePrime.models.Address;
-import ru.tinkoff.storePrime.models.CartItem;
 
 import javax.persistence.*;
 import java.time.LocalDate;
-import java.util.List;
 
 @EqualsAndHashCode(callSuper = true)
 @ToString(callSuper = true)
@@ -35,9 +33,6 @@ public class Customer extends Account {
 
     private LocalDate birthdayDate;
 
-    @OneToMany(mappedBy = "customer", fetch = FetchType.EAGER)
-    private List<CartItem> cart;
-
     @Embedded
     private Address address;
 
@@ -0,0 +1,70 @@
+package ru.tinkoff.storePrime.models.user;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+import lombok.extern.jackson.Jacksonized;
+import ru.tinkoff.storePrime.models.Address;
+
+import java.time.LocalDate;
+
+/**
+ * Неизменяемый снимок покупателя для кэша аккаунтов: поля профиля без пароля, баланса и связей.
+ * Снимок не меняют: после сохранения покупателя в кэш кладётся новый снимок.
+ */
+@Getter
+@Builder
+@Jacksonized
+@ToString
+public class CustomerSnapshot {
+
+    private final Long id;
+
+    private final String email;
+
+    private final String phoneNumber;
+
+    private final Account.State state;
+
+    private final String name;
+
+    private final String surname;
+
+    private final Customer.Gender gender;
+
+    private final LocalDate birthdayDate;
+
+    private final String country;
+
+    private final String city;
+
+    private final String street;
+
+    private final Integer house;
+
+    private final String apartment;
+
+    public static CustomerSnapshot from(Customer customer) {
+        CustomerSnapshotBuilder builder = CustomerSnapshot.builder()
+                .id(customer.getId())
+                .email(customer.getEmail())
+                .phoneNumber(customer.getPhoneNumber())
+                .state(customer.getState())
+                .name(customer.getName())
+                .surname(customer.getSurname())
+                .gender(customer.getGender())
+                .birthdayDate(customer.getBirthdayDate());
+        Address address = customer.getAddress();
+        if (address != null) {
+            builder.street(address.getStreet())
+                    .house(address.getHouse())
+                    .apartment(address.getApartment());
+            if (address.getLocation() != null) {
+                builder.country(address.getLocation().getCountry())
+                        .city(address.getLocation().getCity());
+            }
+        }
+        return builder.build();
+    }
+
+}
@@ -2,6 +2,7 @@ package ru.tinkoff.storePrime.models.user;
 
 import lombok.*;
 import lombok.experimental.SuperBuilder;
+import org.hibernate.annotations.BatchSize;
 import ru.tinkoff.storePrime.models.Location;
 
 import javax.persistence.Column;
@@ -18,6 +19,7 @@ import javax.persistence.Table;
 @Setter
 
 @Entity
+@BatchSize(size = 50)
 @Table(name = "seller")
 public class Seller extends Account {
 
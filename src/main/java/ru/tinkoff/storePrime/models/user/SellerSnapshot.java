@@ -0,0 +1,48 @@
+package ru.tinkoff.storePrime.models.user;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+import lombok.extern.jackson.Jacksonized;
+
+/**
+ * Неизменяемый снимок продавца для кэша аккаунтов, см. {@link CustomerSnapshot}.
+ */
+@Getter
+@Builder
+@Jacksonized
+@ToString
+public class SellerSnapshot {
+
+    private final Long id;
+
+    private final String email;
+
+    private final String phoneNumber;
+
+    private final Account.State state;
+
+    private final String name;
+
+    private final String description;
+
+    private final String country;
+
+    private final String city;
+
+    public static SellerSnapshot from(Seller seller) {
+        SellerSnapshotBuilder builder = SellerSnapshot.builder()
+                .id(seller.getId())
+                .email(seller.getEmail())
+                .phoneNumber(seller.getPhoneNumber())
+                .state(seller.getState())
+                .name(seller.getName())
+                .description(seller.getDescription());
+        if (seller.getLocation() != null) {
+            builder.country(seller.getLocation().getCountry())
+                    .city(seller.getLocation().getCity());
+        }
+        return builder.build();
+    }
+
+}
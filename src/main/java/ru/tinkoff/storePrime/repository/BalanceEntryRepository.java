@@ -0,0 +1,52 @@
+package ru.tinkoff.storePrime.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import ru.tinkoff.storePrime.models.BalanceEntry;
+
+@Repository
+public interface BalanceEntryRepository extends JpaRepository<BalanceEntry, Long> {
+
+    /**
+     * Переносит порцию записей журнала в снимки балансов покупателей одним оператором:
+     * удаление записей и обновление снимков видны читателям одновременно.
+     *
+     * @return количество обновлённых счетов
+     */
+    @Modifying
+    @Query(nativeQuery = true, value = """
+        with moved as (
+            delete from balance_entry
+            where id in (select id from balance_entry where role = 'CUSTOMER' order by id limit :limit for update skip locked)
+            returning account_id, amount
+        ), totals as (
+            select account_id, sum(amount) as total from moved group by account_id
+        )
+        update customer a set card_balance = coalesce(a.card_balance, 0) + t.total
+        from totals t
+        where a.id = t.account_id
+        """)
+    int compactCustomerEntries(@Param("limit") int limit);
+
+    /**
+     * То же, что {@link #compactCustomerEntries(int)}, для продавцов.
+     */
+    @Modifying
+    @Query(nativeQuery = true, value = """
+        with moved as (
+            delete from balance_entry
+            where id in (select id from balance_entry where role = 'SELLER' order by id limit :limit for update skip locked)
+            returning account_id, amount
+        ), totals as (
+            select account_id, sum(amount) as total from moved group by account_id
+        )
+        update seller a set card_balance = coalesce(a.card_balance, 0) + t.total
+        from totals t
+        where a.id = t.account_id
+        """)
+    int compactSellerEntries(@Param("limit") int limit);
+
+}
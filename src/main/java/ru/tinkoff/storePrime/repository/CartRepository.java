@@ -1,16 +1,94 @@
 package ru.tinkoff.storePrime.repository;
 
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import ru.tinkoff.storePrime.models.CartItem;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface CartRepository extends JpaRepository<CartItem, Long> {
 
+    /**
+     * Позиция корзины без товара и покупателя. Корзина у {@code Customer} не отображается,
+     * поэтому загрузка покупателя (в том числе при аутентификации) не тянет за собой корзину.
+     */
+    interface CartEntry {
+
+        Long getId();
+
+        Long getProductId();
+
+        Integer getQuantity();
+
+    }
+
     Optional<CartItem> findByCustomer_IdAndProduct_Id(Long customer_id, Long product_id);
 
+    @EntityGraph(attributePaths = {"product", "product.seller"})
     List<CartItem> findByCustomer_Id(Long customerId);
+
+    @Query("""
+        select c from CartItem c
+        join fetch c.product p
+        join fetch p.seller
+        where c.id in :ids
+        """)
+    List<CartItem> findAllWithProductsByIdIn(Collection<Long> ids);
+
+    interface SellerCartSummary {
+
+        Long getSellerId();
+
+        Long getLineCount();
+
+        Long getQuantity();
+
+        Double getSubtotal();
+
+        /**
+         * Через запятую, {@code null}, если всех товаров продавца хватает.
+         */
+        String getOutOfStockProductIds();
+
+    }
+
+    @Query(nativeQuery = true, value = """
+        select p.seller_id as "sellerId",
+               count(*) as "lineCount",
+               sum(c.quantity) as "quantity",
+               sum(c.quantity * p.price) as "subtotal",
+               string_agg(case when p.amount < c.quantity then p.id::text end, ',' order by p.id) as "outOfStockProductIds"
+        from cart_item c
+        join product p on p.id = c.product_id
+        where c.customer_id = :customerId
+        group by p.seller_id
+        order by p.seller_id
+        """)
+    List<SellerCartSummary> summarizeByCustomerId(@Param("customerId") Long customerId);
+
+    /**
+     * Удаляет порцию позиций, не менявшихся с {@code cutoff}, в собственной короткой транзакции.
+     * Строки, занятые другими транзакциями (например, оформлением заказа), пропускаются.
+     *
+     * @return количество удалённых позиций
+     */
+    @Modifying
+    @Transactional
+    @Query(nativeQuery = true, value = """
+        delete from cart_item
+        where id in (select id from cart_item where updated_at < :cutoff order by updated_at limit :limit for update skip locked)
+        """)
+    int deleteUpdatedBefore(@Param("cutoff") LocalDateTime cutoff, @Param("limit") int limit);
+
+    @Query("select c.id as id, c.product.id as productId, c.quantity as quantity from CartItem c where c.customer.id = :customerId")
+    List<CartEntry> findEntriesByCustomerId(@Param("customerId") Long customerId);
 }
@@ -0,0 +1,22 @@
+package ru.tinkoff.storePrime.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import ru.tinkoff.storePrime.models.FlashSaleReservation;
+
+import java.util.List;
+
+@Repository
+public interface FlashSaleReservationRepository extends JpaRepository<FlashSaleReservation, Long> {
+
+    @Query(nativeQuery = true, value = """
+        select * from flash_sale_reservation
+        order by id
+        limit :limit
+        for update skip locked
+        """)
+    List<FlashSaleReservation> lockPending(@Param("limit") int limit);
+
+}
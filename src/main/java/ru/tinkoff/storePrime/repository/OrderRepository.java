@@ -1,20 +1,39 @@
 package ru.tinkoff.storePrime.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import ru.tinkoff.storePrime.models.Order;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
-public interface OrderRepository extends JpaRepository<Order, Long> {
+public interface OrderRepository extends JpaRepository<Order, Long>, OrderRepositoryCustom {
+
+    interface OrderOwner {
+
+        Long getId();
+
+        Long getSellerId();
+
+    }
 
     List<Order> getOrdersByCustomerId(Long customerId);
 
-    @Query("SELECT o FROM Order o JOIN o.product p WHERE p.seller.id = :sellerId")
+    @Query("SELECT o FROM Order o WHERE o.seller.id = :sellerId")
     List<Order> getOrdersByProductsSellerId(Long sellerId);
 
     List<Order> findByCustomer_IdAndStatus(Long customerId, Order.Status status);
 
+    @Query("select o.id as id, o.seller.id as sellerId from Order o where o.id in :ids")
+    List<OrderOwner> findOwnersByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query("update Order o set o.status = :status where o.id in :ids and o.seller.id = :sellerId")
+    int updateStatusByIdInAndSellerId(@Param("ids") Collection<Long> ids, @Param("sellerId") Long sellerId,
+                                      @Param("status") Order.Status status);
+
 }
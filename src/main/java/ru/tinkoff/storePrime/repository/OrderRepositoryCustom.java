@@ -0,0 +1,14 @@
+package ru.tinkoff.storePrime.repository;
+
+import ru.tinkoff.storePrime.models.Order;
+import ru.tinkoff.storePrime.repository.impl.OrderCursor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface OrderRepositoryCustom {
+
+    List<Order> findPageAfter(Long customerId, Long sellerId, Order.Status status,
+                              LocalDateTime from, LocalDateTime to, OrderCursor after, int limit);
+
+}
@@ -0,0 +1,30 @@
+package ru.tinkoff.storePrime.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import ru.tinkoff.storePrime.models.OutboxEvent;
+
+import java.util.List;
+
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+    /**
+     * Блокировка снимается вместе с транзакцией.
+     *
+     * @return false, если блокировку держит другая транзакция
+     */
+    @Query(nativeQuery = true, value = "select pg_try_advisory_xact_lock(:key)")
+    boolean tryLockRelay(@Param("key") long key);
+
+    @Query(nativeQuery = true, value = """
+        select * from outbox_event
+        order by id
+        limit :limit
+        for update
+        """)
+    List<OutboxEvent> lockPending(@Param("limit") int limit);
+
+}
@@ -3,7 +3,9 @@ package ru.tinkoff.storePrime.repository;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -12,17 +14,18 @@ import ru.tinkoff.storePrime.models.Product;
 
 import java.util.Collection;
 import java.util.List;
-import java.util.Optional;
 
 @Repository
-public interface ProductRepository extends JpaRepository<Product, Long> {
+public interface ProductRepository extends JpaRepository<Product, Long>, ProductRepositoryCustom {
 
+    @EntityGraph(attributePaths = "seller")
     @Query("""
         select p from Product p
         where p.seller.id = :sellerId
         """)
     List<Product> findAllBySellerId(@Param("sellerId") Long sellerId);
 
+    @EntityGraph(attributePaths = "seller")
     @Query("""
         select p from Product p 
         where p.seller.id = :sellerId 
@@ -37,6 +40,7 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
             @Param("categories") Collection<Category> categories
     );
 
+    @EntityGraph(attributePaths = "seller")
     @Query("""
         select p from Product p 
         where p.seller.id = :sellerId 
@@ -50,6 +54,7 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
     );
 
 
+    @EntityGraph(attributePaths = "seller")
     @Query("""
         select p from Product p 
         where p.seller.id = :sellerId 
@@ -65,6 +70,7 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
             @Param("categories") Collection<Category> categories
     );
 
+    @EntityGraph(attributePaths = "seller")
     @Query("""
         select p from Product p 
         where p.seller.id = :sellerId 
@@ -78,6 +84,7 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
             @Param("maxPrice") Double maxPrice
     );
 
+    @EntityGraph(attributePaths = "seller")
     @Query("""
         select p from Product p 
         where :minPrice <= p.price 
@@ -88,6 +95,7 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
             @Param("maxPrice") Double maxPrice
     );
 
+    @EntityGraph(attributePaths = "seller")
     @Query("""
         select p from Product p 
         where :minPrice <= p.price 
@@ -100,6 +108,7 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
             Collection<Category> categories
     );
 
+    @EntityGraph(attributePaths = "seller")
     @Query("""
         select p from Product p 
         where :categories member of p.categories
@@ -108,6 +117,7 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
             Collection<Category> categories
     );
 
+    @EntityGraph(attributePaths = "seller")
     @Query("""
         select p from Product p 
         where :minPrice <= p.price 
@@ -121,6 +131,7 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
             Collection<Category> categories
     );
 
+    @EntityGraph(attributePaths = "seller")
     @Query("""
         select p from Product p 
         where :minPrice <= p.price 
@@ -132,6 +143,7 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
             @Param("maxPrice") Double maxPrice
     );
 
+    @EntityGraph(attributePaths = "seller")
     @Query("""
         select p from Product p 
         where :categories member of p.categories
@@ -142,27 +154,59 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
     );
 
 
+    @EntityGraph(attributePaths = "seller")
     @Query("""
         select p from Product p
         """)
     Page<Product> findPage(PageRequest pageRequest);
 
-    @Query(
-            nativeQuery = true,
-            value = "SELECT * FROM product WHERE product.title ILIKE :content"
-    )
-    List<Product> findAllByContent(
-            @Param("content") String content
+    @Query(nativeQuery = true, value = """
+        select * from product
+        where to_tsvector('simple', title || ' ' || description) @@ to_tsquery('simple', :query)
+        order by ts_rank(to_tsvector('simple', title || ' ' || description), to_tsquery('simple', :query)) desc, id
+        limit :limit offset :offset
+        """)
+    List<Product> searchByContent(
+            @Param("query") String query,
+            @Param("limit") int limit,
+            @Param("offset") int offset
     );
 
-    @Query(value = "SELECT * FROM product ORDER BY random() LIMIT 1", nativeQuery = true)
-    Optional<Product> findRandomProduct();
+    interface PriceAndStock {
+
+        Long getId();
+
+        Long getSellerId();
+
+        Double getPrice();
 
-    @Query(value = "SELECT * FROM product ORDER BY random() LIMIT :amount", nativeQuery = true)
-    List<Product> findRandomProducts(@Param("amount") int amount);
+        Integer getAmount();
+
+    }
+
+    @Query("select p.id as id, p.seller.id as sellerId, p.price as price, p.amount as amount from Product p where p.id in :ids")
+    List<PriceAndStock> findPriceAndStockByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query("update Product p set p.amount = p.amount - :quantity where p.id = :productId and p.amount >= :quantity")
+    int decrementAmount(@Param("productId") Long productId, @Param("quantity") int quantity);
+
+    @Modifying
+    @Query("update Product p set p.amount = 0 where p.id = :productId")
+    int clearAmount(@Param("productId") Long productId);
 
     @Query(nativeQuery = true, value = """
-        select * from product inner join product_category on product.id = product_category.product_id where product.title ilike :content and product_category.category_id = :categoryId
+        select product.* from product
+        inner join product_category on product.id = product_category.product_id
+        where product_category.category_id = :categoryId
+        and to_tsvector('simple', product.title || ' ' || product.description) @@ to_tsquery('simple', :query)
+        order by ts_rank(to_tsvector('simple', product.title || ' ' || product.description), to_tsquery('simple', :query)) desc, product.id
+        limit :limit offset :offset
         """)
-    List<Product> findAllByContentAndCategory(@Param("content") String content, @Param("categoryId") Long categoryId);
+    List<Product> searchByContentAndCategory(
+            @Param("query") String query,
+            @Param("categoryId") Long categoryId,
+            @Param("limit") int limit,
+            @Param("offset") int offset
+    );
 }
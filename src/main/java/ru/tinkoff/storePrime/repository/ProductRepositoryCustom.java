@@ -0,0 +1,17 @@
+package ru.tinkoff.storePrime.repository;
+
+import ru.tinkoff.storePrime.dto.product.ProductSortOrder;
+import ru.tinkoff.storePrime.models.Category;
+import ru.tinkoff.storePrime.models.Product;
+import ru.tinkoff.storePrime.repository.impl.ProductCursor;
+
+import java.util.List;
+
+public interface ProductRepositoryCustom {
+
+    List<Product> findPageAfter(Long sellerId, Double minPrice, Double maxPrice, Category category,
+                                ProductSortOrder sortOrder, ProductCursor after, int limit);
+
+    long countByFilter(Long sellerId, Double minPrice, Double maxPrice, Category category);
+
+}
@@ -1,9 +1,14 @@
 package ru.tinkoff.storePrime.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import ru.tinkoff.storePrime.models.user.Account;
 import ru.tinkoff.storePrime.models.user.Seller;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 
@@ -12,6 +17,28 @@ public interface SellerRepository extends JpaRepository<Seller, Long> {
 
     Optional<Seller> findByEmail(String email);
 
+    @Query("select a.id from Seller a where a.state in :states")
+    List<Long> findIdsByStateIn(Collection<Account.State> states);
+
+    /**
+     * Актуальный баланс: снимок плюс ещё не сжатые записи журнала.
+     */
+    @Query(nativeQuery = true, value = """
+        select coalesce(a.card_balance, 0)
+            + coalesce((select sum(e.amount) from balance_entry e where e.role = 'SELLER' and e.account_id = a.id), 0)
+        from seller a
+        where a.id = :id
+        """)
+    Optional<Double> findBalanceById(@Param("id") Long id);
+
+    /**
+     * Блокирует строку счёта до конца транзакции, чтобы параллельные списания с одного счёта проверяли остаток
+     * по очереди. Остаток читается следующим оператором, {@link #findBalanceById(Long)}: в READ COMMITTED
+     * у него свежий снимок, и сжатие журнала, зафиксированное, пока списание ждало блокировку, не учитывается дважды.
+     */
+    @Query(nativeQuery = true, value = "select a.id from seller a where a.id = :id for update")
+    Optional<Long> lockById(@Param("id") Long id);
+
     Optional<Seller> findById(Long id);
 
 }
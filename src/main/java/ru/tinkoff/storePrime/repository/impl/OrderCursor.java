@@ -0,0 +1,44 @@
+package ru.tinkoff.storePrime.repository.impl;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import ru.tinkoff.storePrime.exceptions.DisparateDataException;
+import ru.tinkoff.storePrime.models.Order;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Позиция последнего выданного заказа при постраничной выдаче без OFFSET.
+ * Заказы идут от новых к старым, для клиента курсор непрозрачен: это base64 от "id:время создания".
+ */
+@Getter
+@AllArgsConstructor
+public class OrderCursor {
+
+    private final LocalDateTime createdAt;
+
+    private final Long id;
+
+    public static OrderCursor after(Order order) {
+        return new OrderCursor(order.getCreatedAt(), order.getId());
+    }
+
+    public String encode() {
+        String raw = id + ":" + createdAt;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static OrderCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split(":", 2);
+            return new OrderCursor(LocalDateTime.parse(parts[1]), Long.valueOf(parts[0]));
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException | DateTimeParseException ex) {
+            throw new DisparateDataException("Некорректный курсор страницы");
+        }
+    }
+
+}
@@ -0,0 +1,61 @@
+package ru.tinkoff.storePrime.repository.impl;
+
+import ru.tinkoff.storePrime.models.Order;
+import ru.tinkoff.storePrime.repository.OrderRepositoryCustom;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.criteria.*;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+public class OrderRepositoryCustomImpl implements OrderRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * Порция заказов от новых к старым. Позиции, товары, их продавцы, категории и изображения
+     * догружаются пачками благодаря {@code @BatchSize}, так что число запросов не зависит от размера страницы.
+     */
+    @Override
+    public List<Order> findPageAfter(Long customerId, Long sellerId, Order.Status status,
+                                     LocalDateTime from, LocalDateTime to, OrderCursor after, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Order> query = cb.createQuery(Order.class);
+        Root<Order> order = query.from(Order.class);
+
+        List<Predicate> predicates = new ArrayList<>();
+        if (customerId != null) {
+            predicates.add(cb.equal(order.get("customer").get("id"), customerId));
+        }
+        if (sellerId != null) {
+            predicates.add(cb.equal(order.get("seller").get("id"), sellerId));
+        }
+        if (status != null) {
+            predicates.add(cb.equal(order.get("status"), status));
+        }
+        Path<LocalDateTime> createdAt = order.get("createdAt");
+        if (from != null) {
+            predicates.add(cb.greaterThanOrEqualTo(createdAt, from));
+        }
+        if (to != null) {
+            predicates.add(cb.lessThan(createdAt, to));
+        }
+        if (after != null) {
+            Path<Long> id = order.get("id");
+            predicates.add(cb.or(
+                    cb.lessThan(createdAt, after.getCreatedAt()),
+                    cb.and(cb.equal(createdAt, after.getCreatedAt()), cb.lessThan(id, after.getId()))));
+        }
+        query.select(order)
+                .where(predicates.toArray(new Predicate[0]))
+                .orderBy(cb.desc(createdAt), cb.desc(order.get("id")));
+
+        return entityManager.createQuery(query)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+}
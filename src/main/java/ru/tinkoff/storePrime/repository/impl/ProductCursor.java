@@ -0,0 +1,65 @@
+package ru.tinkoff.storePrime.repository.impl;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import ru.tinkoff.storePrime.dto.product.ProductSortOrder;
+import ru.tinkoff.storePrime.exceptions.DisparateDataException;
+import ru.tinkoff.storePrime.models.Product;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Позиция последнего выданного товара при постраничной выдаче без OFFSET.
+ * Для клиента курсор непрозрачен: это base64 от "порядок:цена:id". Цена обязательна для сортировок по цене
+ * и пуста для {@link ProductSortOrder#NEWEST}; любой другой курсор отклоняется с кодом 400.
+ */
+@Getter
+@AllArgsConstructor
+public class ProductCursor {
+
+    private final ProductSortOrder sortOrder;
+
+    private final Double price;
+
+    private final Long id;
+
+    public static ProductCursor after(Product product, ProductSortOrder sortOrder) {
+        return new ProductCursor(sortOrder, sortOrder == ProductSortOrder.NEWEST ? null : product.getPrice(), product.getId());
+    }
+
+    public String encode() {
+        String raw = sortOrder.name() + ":" + (price == null ? "" : price) + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static ProductCursor decode(String token, ProductSortOrder expectedSortOrder) {
+        String[] parts;
+        try {
+            parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split(":", -1);
+        } catch (IllegalArgumentException ex) {
+            throw new DisparateDataException("Некорректный курсор страницы");
+        }
+        if (parts.length != 3) {
+            throw new DisparateDataException("Некорректный курсор страницы");
+        }
+        if (!expectedSortOrder.name().equals(parts[0])) {
+            throw new DisparateDataException("Курсор не соответствует порядку сортировки " + expectedSortOrder);
+        }
+        boolean byPrice = expectedSortOrder != ProductSortOrder.NEWEST;
+        if (byPrice == parts[1].isEmpty()) {
+            throw new DisparateDataException("Некорректный курсор страницы");
+        }
+        try {
+            Double price = byPrice ? Double.valueOf(parts[1]) : null;
+            long id = Long.parseLong(parts[2]);
+            if (price != null && !Double.isFinite(price)) {
+                throw new DisparateDataException("Некорректный курсор страницы");
+            }
+            return new ProductCursor(expectedSortOrder, price, id);
+        } catch (NumberFormatException ex) {
+            throw new DisparateDataException("Некорректный курсор страницы");
+        }
+    }
+
+}
@@ -0,0 +1,94 @@
+package ru.tinkoff.storePrime.repository.impl;
+
+import ru.tinkoff.storePrime.dto.product.ProductSortOrder;
+import ru.tinkoff.storePrime.models.Category;
+import ru.tinkoff.storePrime.models.Product;
+import ru.tinkoff.storePrime.repository.ProductRepositoryCustom;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.criteria.*;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ProductRepositoryCustomImpl implements ProductRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<Product> findPageAfter(Long sellerId, Double minPrice, Double maxPrice, Category category,
+                                       ProductSortOrder sortOrder, ProductCursor after, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Product> query = cb.createQuery(Product.class);
+        Root<Product> product = query.from(Product.class);
+        product.fetch("seller");
+
+        List<Predicate> predicates = filterPredicates(cb, product, sellerId, minPrice, maxPrice, category);
+        if (after != null) {
+            predicates.add(seekPredicate(cb, product, sortOrder, after));
+        }
+        query.select(product)
+                .where(predicates.toArray(new Predicate[0]))
+                .orderBy(sortOrders(cb, product, sortOrder));
+
+        return entityManager.createQuery(query)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    @Override
+    public long countByFilter(Long sellerId, Double minPrice, Double maxPrice, Category category) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<Product> product = query.from(Product.class);
+
+        List<Predicate> predicates = filterPredicates(cb, product, sellerId, minPrice, maxPrice, category);
+        query.select(cb.count(product))
+                .where(predicates.toArray(new Predicate[0]));
+
+        return entityManager.createQuery(query).getSingleResult();
+    }
+
+    private List<Predicate> filterPredicates(CriteriaBuilder cb, Root<Product> product,
+                                             Long sellerId, Double minPrice, Double maxPrice, Category category) {
+        List<Predicate> predicates = new ArrayList<>();
+        if (sellerId != null) {
+            predicates.add(cb.equal(product.get("seller").get("id"), sellerId));
+        }
+        if (minPrice != null) {
+            predicates.add(cb.greaterThanOrEqualTo(product.get("price"), minPrice));
+        }
+        if (maxPrice != null) {
+            predicates.add(cb.lessThanOrEqualTo(product.get("price"), maxPrice));
+        }
+        if (category != null) {
+            Join<Product, Category> categories = product.join("categories");
+            predicates.add(cb.equal(categories, category));
+        }
+        return predicates;
+    }
+
+    private Predicate seekPredicate(CriteriaBuilder cb, Root<Product> product, ProductSortOrder sortOrder, ProductCursor after) {
+        Path<Long> id = product.get("id");
+        Path<Double> price = product.get("price");
+        return switch (sortOrder) {
+            case NEWEST -> cb.lessThan(id, after.getId());
+            case PRICE_ASC -> cb.or(
+                    cb.greaterThan(price, after.getPrice()),
+                    cb.and(cb.equal(price, after.getPrice()), cb.greaterThan(id, after.getId())));
+            case PRICE_DESC -> cb.or(
+                    cb.lessThan(price, after.getPrice()),
+                    cb.and(cb.equal(price, after.getPrice()), cb.lessThan(id, after.getId())));
+        };
+    }
+
+    private List<Order> sortOrders(CriteriaBuilder cb, Root<Product> product, ProductSortOrder sortOrder) {
+        return switch (sortOrder) {
+            case NEWEST -> List.of(cb.desc(product.get("id")));
+            case PRICE_ASC -> List.of(cb.asc(product.get("price")), cb.asc(product.get("id")));
+            case PRICE_DESC -> List.of(cb.desc(product.get("price")), cb.desc(product.get("id")));
+        };
+    }
+
+}
@@ -0,0 +1,21 @@
+package ru.tinkoff.storePrime.security.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import ru.tinkoff.storePrime.security.repositories.impl.BlackListRedisRepositoryImpl;
+
+@Configuration
+public class BlackListRedisConfig {
+
+    @Bean
+    public RedisMessageListenerContainer blackListListenerContainer(RedisConnectionFactory connectionFactory,
+                                                                   BlackListRedisRepositoryImpl blackListRepository) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(blackListRepository, BlackListRedisRepositoryImpl.BLACKLIST_TOPIC);
+        return container;
+    }
+
+}
@@ -0,0 +1,38 @@
+package ru.tinkoff.storePrime.security.config;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+import ru.tinkoff.storePrime.security.utils.JwtKeyRegistry;
+
+/**
+ * Ротация ключей подписи без перезапуска, ключи расходятся на все экземпляры через Redis.
+ * По умолчанию endpoint не публикуется, его нужно явно добавить в management.endpoints.web.exposure.include.
+ */
+@Component
+@Endpoint(id = "jwtkeys")
+@RequiredArgsConstructor
+public class JwtKeysEndpoint {
+
+    private final JwtKeyRegistry jwtKeyRegistry;
+
+    @ReadOperation
+    public String activeKeyId() {
+        return jwtKeyRegistry.getActiveKeyId();
+    }
+
+    @WriteOperation
+    public void rotate(String keyId, String secret) {
+        jwtKeyRegistry.rotate(keyId, secret);
+    }
+
+    @DeleteOperation
+    public void retire(@Selector String keyId) {
+        jwtKeyRegistry.retire(keyId);
+    }
+
+}
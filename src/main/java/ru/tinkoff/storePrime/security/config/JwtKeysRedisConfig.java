@@ -0,0 +1,21 @@
+package ru.tinkoff.storePrime.security.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import ru.tinkoff.storePrime.security.utils.impl.JwtKeyRegistryImpl;
+
+@Configuration
+public class JwtKeysRedisConfig {
+
+    @Bean
+    public RedisMessageListenerContainer jwtKeysListenerContainer(RedisConnectionFactory connectionFactory,
+                                                                  JwtKeyRegistryImpl jwtKeyRegistry) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(jwtKeyRegistry, JwtKeyRegistryImpl.KEYS_TOPIC);
+        return container;
+    }
+
+}
@@ -2,6 +2,10 @@ package ru.tinkoff.storePrime.security.exceptions;
 
 public class JWTVerificationException extends RuntimeException {
 
+    public JWTVerificationException(String message) {
+        super(message);
+    }
+
     public JWTVerificationException(Throwable cause) {
         super(cause);
     }
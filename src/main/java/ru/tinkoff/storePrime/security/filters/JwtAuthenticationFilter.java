@@ -4,9 +4,9 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.AuthenticationException;
-import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import org.springframework.stereotype.Component;
+import ru.tinkoff.storePrime.models.user.Account;
 import ru.tinkoff.storePrime.security.authentication.RefreshTokenAuthentication;
 import ru.tinkoff.storePrime.security.details.UserDetailsImpl;
 import ru.tinkoff.storePrime.security.utils.AuthorizationHeaderUtil;
@@ -60,11 +60,10 @@ public class JwtAuthenticationFilter extends UsernamePasswordAuthenticationFilte
     @Override
     protected void successfulAuthentication(HttpServletRequest request, HttpServletResponse response, FilterChain chain, Authentication authResult) throws IOException {
         response.setContentType("application/json");
-        GrantedAuthority currentAuthority = authResult.getAuthorities().stream().findFirst().orElseThrow();
-        String email = ((UserDetailsImpl) authResult.getPrincipal()).getUsername();
+        Account account = ((UserDetailsImpl) authResult.getPrincipal()).getAccount();
         String issuer = request.getRequestURL().toString();
 
-        Map<String, String> tokens = jwtUtil.generateTokens(email, currentAuthority.getAuthority(), issuer);
+        Map<String, String> tokens = jwtUtil.generateTokens(account, issuer);
 
         objectMapper.writeValue(response.getOutputStream(), tokens);
     }
@@ -29,7 +29,7 @@ public class RefreshTokenAuthenticationProvider implements AuthenticationProvide
             throw new RefreshTokenException("Token was revoked");
         }
         try {
-            return jwtUtil.buildAuthentication(refreshTokenValue);
+            return jwtUtil.buildRefreshAuthentication(refreshTokenValue);
         } catch (JWTVerificationException e) {
             log.info(e.getMessage());
             throw new RefreshTokenException(e.getMessage(), e);
@@ -1,23 +1,155 @@
 package ru.tinkoff.storePrime.security.repositories.impl;
 
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.exceptions.JWTDecodeException;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.Cursor;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Repository;
 import ru.tinkoff.storePrime.security.repositories.BlackListRepository;
+import ru.tinkoff.storePrime.security.utils.BloomFilter;
+import ru.tinkoff.storePrime.security.utils.TokenHashUtil;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Date;
+
+/**
+ * Отозванные токены хранятся в Redis по SHA-256 с TTL, равным оставшемуся сроку жизни токена.
+ * Перед Redis стоит локальный фильтр Блума: если хэша в фильтре нет, токен точно не отзывался.
+ * Фильтры всех экземпляров пополняются через pub/sub и периодически перестраиваются,
+ * чтобы освободиться от истёкших записей.
+ */
+@Slf4j
 @RequiredArgsConstructor
 @Repository
-public class BlackListRedisRepositoryImpl implements BlackListRepository {
+public class BlackListRedisRepositoryImpl implements BlackListRepository, MessageListener {
+
+    public static final ChannelTopic BLACKLIST_TOPIC = new ChannelTopic("blacklist");
+
+    private static final String KEY_PREFIX = "blacklist:";
+
+    private static final String LEGACY_KEY_PATTERN = "eyJ*";
+
+    private static final int SCAN_BATCH_SIZE = 1000;
+
     private final RedisTemplate<String, String> redisTemplate;
 
+    @Value("${jwt.refresh_token.expires_time_millis}")
+    private long maxTokenLifetimeMillis;
+
+    @Value("${jwt.blacklist.bloom-filter.expected-insertions}")
+    private int expectedInsertions;
+
+    @Value("${jwt.blacklist.bloom-filter.false-positive-probability}")
+    private double falsePositiveProbability;
+
+    private volatile BloomFilter bloomFilter;
+
+    private volatile BloomFilter pendingBloomFilter;
+
     @Override
     public void save(String token) {
-        redisTemplate.opsForValue().set(token, "");
+        long ttlMillis = remainingLifetimeMillis(token);
+        if (ttlMillis <= 0) {
+            return;
+        }
+        String tokenHash = TokenHashUtil.sha256(token);
+        redisTemplate.opsForValue().set(KEY_PREFIX + tokenHash, "", Duration.ofMillis(ttlMillis));
+        addToBloomFilters(tokenHash);
+        redisTemplate.convertAndSend(BLACKLIST_TOPIC.getTopic(), tokenHash);
     }
 
     @Override
     public boolean exists(String token) {
-        Boolean hasToken = redisTemplate.hasKey(token);
+        String tokenHash = TokenHashUtil.sha256(token);
+        BloomFilter filter = bloomFilter;
+        if (filter != null && !filter.mightContain(tokenHash)) {
+            return false;
+        }
+        Boolean hasToken = redisTemplate.hasKey(KEY_PREFIX + tokenHash);
         return hasToken != null && hasToken;
     }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        addToBloomFilters(new String(message.getBody(), StandardCharsets.UTF_8));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        migrateLegacyEntries();
+        rebuildBloomFilter();
+    }
+
+    @Scheduled(fixedDelayString = "${jwt.blacklist.bloom-filter.rebuild-millis}",
+            initialDelayString = "${jwt.blacklist.bloom-filter.rebuild-millis}")
+    public void rebuildBloomFilter() {
+        BloomFilter rebuilt = new BloomFilter(expectedInsertions, falsePositiveProbability);
+        pendingBloomFilter = rebuilt;
+        try (Cursor<String> keys = redisTemplate.scan(ScanOptions.scanOptions()
+                .match(KEY_PREFIX + "*")
+                .count(SCAN_BATCH_SIZE)
+                .build())) {
+            keys.forEachRemaining(key -> rebuilt.put(key.substring(KEY_PREFIX.length())));
+        }
+        bloomFilter = rebuilt;
+        pendingBloomFilter = null;
+    }
+
+    /**
+     * Перестраиваемый фильтр читается первым: если перестройка завершится между чтениями,
+     * хэш попадёт в уже опубликованный новый фильтр, а не только в заменённый старый.
+     */
+    private void addToBloomFilters(String tokenHash) {
+        BloomFilter pending = pendingBloomFilter;
+        if (pending != null) {
+            pending.put(tokenHash);
+        }
+        BloomFilter filter = bloomFilter;
+        if (filter != null) {
+            filter.put(tokenHash);
+        }
+    }
+
+    /**
+     * Раньше токены сохранялись в Redis как есть и без TTL. Такие записи переносятся в новый формат,
+     * уже истёкшие удаляются.
+     */
+    private void migrateLegacyEntries() {
+        try (Cursor<String> keys = redisTemplate.scan(ScanOptions.scanOptions()
+                .match(LEGACY_KEY_PATTERN)
+                .count(SCAN_BATCH_SIZE)
+                .build())) {
+            keys.forEachRemaining(token -> {
+                long ttlMillis = remainingLifetimeMillis(token);
+                if (ttlMillis > 0) {
+                    redisTemplate.opsForValue().set(KEY_PREFIX + TokenHashUtil.sha256(token), "", Duration.ofMillis(ttlMillis));
+                }
+                redisTemplate.delete(token);
+            });
+        }
+    }
+
+    private long remainingLifetimeMillis(String token) {
+        try {
+            Date expiresAt = JWT.decode(token).getExpiresAt();
+            if (expiresAt == null) {
+                return maxTokenLifetimeMillis;
+            }
+            return Math.min(expiresAt.getTime() - System.currentTimeMillis(), maxTokenLifetimeMillis);
+        } catch (JWTDecodeException e) {
+            log.info("Revoked value is not a JWT, keeping it for the maximum token lifetime");
+            return maxTokenLifetimeMillis;
+        }
+    }
 }
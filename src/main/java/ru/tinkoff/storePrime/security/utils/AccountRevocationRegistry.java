@@ -0,0 +1,11 @@
+package ru.tinkoff.storePrime.security.utils;
+
+import ru.tinkoff.storePrime.models.user.Account;
+
+public interface AccountRevocationRegistry {
+
+    void revoke(Account.Role role, Long accountId);
+
+    boolean isRevoked(Account.Role role, Long accountId);
+
+}
@@ -0,0 +1,51 @@
+package ru.tinkoff.storePrime.security.utils;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Потокобезопасный фильтр Блума для SHA-256 хэшей в hex-представлении.
+ * Хэш уже равномерно распределён, поэтому позиции битов берутся из его первых 128 бит
+ * методом двойного хэширования.
+ */
+public class BloomFilter {
+
+    private final AtomicLongArray words;
+
+    private final int bitCount;
+
+    private final int hashCount;
+
+    public BloomFilter(int expectedInsertions, double falsePositiveProbability) {
+        long optimalBits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveProbability) / (Math.log(2) * Math.log(2)));
+        this.bitCount = (int) Math.max(Long.SIZE, Math.min(optimalBits, Integer.MAX_VALUE - Long.SIZE));
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedInsertions * Math.log(2)));
+        this.words = new AtomicLongArray((bitCount + Long.SIZE - 1) / Long.SIZE);
+    }
+
+    public void put(String sha256Hex) {
+        long first = Long.parseUnsignedLong(sha256Hex.substring(0, 16), 16);
+        long second = Long.parseUnsignedLong(sha256Hex.substring(16, 32), 16);
+        for (int i = 0; i < hashCount; i++) {
+            int bit = (int) Math.floorMod(first + i * second, (long) bitCount);
+            long mask = 1L << bit;
+            int word = bit / Long.SIZE;
+            long current;
+            do {
+                current = words.get(word);
+            } while ((current & mask) == 0 && !words.compareAndSet(word, current, current | mask));
+        }
+    }
+
+    public boolean mightContain(String sha256Hex) {
+        long first = Long.parseUnsignedLong(sha256Hex.substring(0, 16), 16);
+        long second = Long.parseUnsignedLong(sha256Hex.substring(16, 32), 16);
+        for (int i = 0; i < hashCount; i++) {
+            int bit = (int) Math.floorMod(first + i * second, (long) bitCount);
+            if ((words.get(bit / Long.SIZE) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,20 @@
+package ru.tinkoff.storePrime.security.utils;
+
+import com.auth0.jwt.JWTVerifier;
+import com.auth0.jwt.algorithms.Algorithm;
+
+import java.util.Optional;
+
+public interface JwtKeyRegistry {
+
+    String getActiveKeyId();
+
+    Algorithm getActiveAlgorithm();
+
+    Optional<JWTVerifier> getVerifier(String keyId);
+
+    void rotate(String keyId, String secret);
+
+    void retire(String keyId);
+
+}
@@ -1,12 +1,15 @@
 package ru.tinkoff.storePrime.security.utils;
 
 import org.springframework.security.core.Authentication;
+import ru.tinkoff.storePrime.models.user.Account;
 import ru.tinkoff.storePrime.security.exceptions.JWTVerificationException;
 
 import java.util.Map;
 
 public interface JwtUtil {
-    Map<String, String> generateTokens(String subject, String authority, String issuer);
+    Map<String, String> generateTokens(Account account, String issuer);
 
     Authentication buildAuthentication(String token) throws JWTVerificationException;
+
+    Authentication buildRefreshAuthentication(String refreshToken) throws JWTVerificationException;
 }
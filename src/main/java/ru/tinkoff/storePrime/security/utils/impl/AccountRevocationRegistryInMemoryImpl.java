@@ -0,0 +1,88 @@
+package ru.tinkoff.storePrime.security.utils.impl;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.tinkoff.storePrime.models.user.Account;
+import ru.tinkoff.storePrime.repository.CustomerRepository;
+import ru.tinkoff.storePrime.repository.SellerRepository;
+import ru.tinkoff.storePrime.security.utils.AccountRevocationRegistry;
+
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Множество удалённых и заблокированных аккаунтов, по которому токены отклоняются без обращения к базе.
+ * Изменения на этом экземпляре применяются сразу, изменения с других экземпляров подтягиваются
+ * периодической перезагрузкой. Отзывы, сделанные во время перезагрузки, добавляются в новое множество,
+ * иначе снимок, прочитанный до их коммита, затёр бы их до следующей перезагрузки.
+ */
+@Component
+@RequiredArgsConstructor
+public class AccountRevocationRegistryInMemoryImpl implements AccountRevocationRegistry {
+
+    private static final Set<Account.State> REVOKED_STATES = EnumSet.of(Account.State.DELETED, Account.State.BANNED);
+
+    private final CustomerRepository customerRepository;
+
+    private final SellerRepository sellerRepository;
+
+    private final Object reloadLock = new Object();
+
+    private volatile Set<String> revokedAccounts = ConcurrentHashMap.newKeySet();
+
+    private final Set<String> revokedDuringReload = new HashSet<>();
+
+    private boolean reloading;
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${jwt.authorization.revocation-refresh-millis}",
+            initialDelayString = "${jwt.authorization.revocation-refresh-millis}")
+    public void reload() {
+        synchronized (reloadLock) {
+            synchronized (this) {
+                revokedDuringReload.clear();
+                reloading = true;
+            }
+            Set<String> revoked = ConcurrentHashMap.newKeySet();
+            try {
+                customerRepository.findIdsByStateIn(REVOKED_STATES)
+                        .forEach(id -> revoked.add(key(Account.Role.CUSTOMER, id)));
+                sellerRepository.findIdsByStateIn(REVOKED_STATES)
+                        .forEach(id -> revoked.add(key(Account.Role.SELLER, id)));
+                synchronized (this) {
+                    revoked.addAll(revokedDuringReload);
+                    revokedAccounts = revoked;
+                }
+            } finally {
+                synchronized (this) {
+                    reloading = false;
+                    revokedDuringReload.clear();
+                }
+            }
+        }
+    }
+
+    @Override
+    public synchronized void revoke(Account.Role role, Long accountId) {
+        String key = key(role, accountId);
+        revokedAccounts.add(key);
+        if (reloading) {
+            revokedDuringReload.add(key);
+        }
+    }
+
+    @Override
+    public boolean isRevoked(Account.Role role, Long accountId) {
+        return revokedAccounts.contains(key(role, accountId));
+    }
+
+    private static String key(Account.Role role, Long accountId) {
+        return role.name() + ":" + accountId;
+    }
+
+}
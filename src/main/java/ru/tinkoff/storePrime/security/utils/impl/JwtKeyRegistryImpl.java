@@ -0,0 +1,248 @@
+package ru.tinkoff.storePrime.security.utils.impl;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTVerifier;
+import com.auth0.jwt.algorithms.Algorithm;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.tinkoff.storePrime.security.utils.JwtKeyRegistry;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Ключи подписи токенов по kid. Алгоритм и верификатор создаются один раз на ключ.
+ * После ротации новые токены подписываются новым ключом, а выданные ранее проверяются старым,
+ * пока его не выведут из оборота.
+ * <p>
+ * Ключи хранятся в Redis: хэш {@value #KEYS_KEY} (kid → секрет, зашифрованный AES-GCM ключом
+ * jwt.keys.encryption-key из конфигурации, в Redis его нет) и kid активного ключа в {@value #ACTIVE_KEY_KEY}.
+ * Kid не переиспользуется: ротация с уже известным или выведенным из оборота kid отклоняется, иначе
+ * токены, проверенные старым секретом и закэшированные по kid, продолжали бы проходить.
+ * Ключ из конфигурации записывается туда только при первом запуске. Ротация и вывод из оборота публикуются
+ * в {@link #KEYS_TOPIC}, и остальные экземпляры перечитывают ключи; пропущенные сообщения покрывает
+ * периодическая перезагрузка. Пока Redis недоступен, экземпляр работает с ключами, прочитанными последними.
+ */
+@Slf4j
+@Component
+public class JwtKeyRegistryImpl implements JwtKeyRegistry, MessageListener {
+
+    public static final ChannelTopic KEYS_TOPIC = new ChannelTopic("jwt:keys");
+
+    private static final String KEYS_KEY = "jwt:keys";
+
+    private static final String ACTIVE_KEY_KEY = "jwt:keys:active";
+
+    private static final String RETIRED_KEYS_KEY = "jwt:keys:retired";
+
+    private static final String CIPHER = "AES/GCM/NoPadding";
+
+    private static final int IV_LENGTH = 12;
+
+    private static final int TAG_LENGTH_BITS = 128;
+
+    private static final RedisScript<Long> INITIALIZE_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('exists', KEYS[2]) == 1 then
+                return 0
+            end
+            redis.call('hset', KEYS[1], ARGV[1], ARGV[2])
+            redis.call('set', KEYS[2], ARGV[1])
+            return 1
+            """, Long.class);
+
+    private static final RedisScript<Long> ROTATE_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('sismember', KEYS[3], ARGV[1]) == 1 or redis.call('hsetnx', KEYS[1], ARGV[1], ARGV[2]) == 0 then
+                return 0
+            end
+            redis.call('set', KEYS[2], ARGV[1])
+            return 1
+            """, Long.class);
+
+    private static final RedisScript<Long> RETIRE_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('get', KEYS[2]) == ARGV[1] then
+                return 0
+            end
+            redis.call('hdel', KEYS[1], ARGV[1])
+            redis.call('sadd', KEYS[3], ARGV[1])
+            return 1
+            """, Long.class);
+
+    private final RedisTemplate<String, String> redisTemplate;
+
+    private final String configuredKeyId;
+
+    private final String configuredSecret;
+
+    private final SecretKeySpec encryptionKey;
+
+    private final SecureRandom random = new SecureRandom();
+
+    private volatile Map<String, SigningKey> keys;
+
+    private volatile SigningKey activeKey;
+
+    public JwtKeyRegistryImpl(RedisTemplate<String, String> redisTemplate,
+                              @Value("${jwt.key-id}") String keyId,
+                              @Value("${jwt.secret}") String secret,
+                              @Value("${jwt.keys.encryption-key}") String encryptionKey) {
+        this.redisTemplate = redisTemplate;
+        this.configuredKeyId = keyId;
+        this.configuredSecret = secret;
+        this.encryptionKey = new SecretKeySpec(Base64.getDecoder().decode(encryptionKey), "AES");
+        SigningKey key = signingKey(keyId, null, secret);
+        this.keys = Map.of(keyId, key);
+        this.activeKey = key;
+    }
+
+    @Override
+    public String getActiveKeyId() {
+        return activeKey.keyId;
+    }
+
+    @Override
+    public Algorithm getActiveAlgorithm() {
+        return activeKey.algorithm;
+    }
+
+    @Override
+    public Optional<JWTVerifier> getVerifier(String keyId) {
+        SigningKey key = keys.get(keyId);
+        return key == null ? Optional.empty() : Optional.of(key.verifier);
+    }
+
+    @Override
+    public void rotate(String keyId, String secret) {
+        Long rotated = redisTemplate.execute(ROTATE_SCRIPT, List.of(KEYS_KEY, ACTIVE_KEY_KEY, RETIRED_KEYS_KEY),
+                keyId, encrypt(secret));
+        if (rotated == null || rotated == 0) {
+            throw new IllegalArgumentException("Ключ " + keyId + " уже использовался, для ротации нужен новый kid");
+        }
+        redisTemplate.convertAndSend(KEYS_TOPIC.getTopic(), keyId);
+        reload();
+    }
+
+    @Override
+    public void retire(String keyId) {
+        Long retired = redisTemplate.execute(RETIRE_SCRIPT, List.of(KEYS_KEY, ACTIVE_KEY_KEY, RETIRED_KEYS_KEY), keyId);
+        if (retired == null || retired == 0) {
+            throw new IllegalArgumentException("Нельзя вывести из оборота активный ключ " + keyId);
+        }
+        redisTemplate.convertAndSend(KEYS_TOPIC.getTopic(), keyId);
+        reload();
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        reloadQuietly();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        try {
+            redisTemplate.execute(INITIALIZE_SCRIPT, List.of(KEYS_KEY, ACTIVE_KEY_KEY), configuredKeyId, encrypt(configuredSecret));
+        } catch (DataAccessException ex) {
+            log.warn("Redis недоступен, ключи подписи взяты из конфигурации: {}", ex.getMessage());
+            return;
+        }
+        reloadQuietly();
+    }
+
+    @Scheduled(fixedDelayString = "${jwt.keys.refresh-millis}", initialDelayString = "${jwt.keys.refresh-millis}")
+    public void reloadQuietly() {
+        try {
+            reload();
+        } catch (DataAccessException ex) {
+            log.warn("Не удалось перечитать ключи подписи из Redis: {}", ex.getMessage());
+        }
+    }
+
+    /**
+     * Уже созданные алгоритмы и верификаторы переиспользуются, если запись ключа не изменилась.
+     * Ключ, который не удалось расшифровать, пропускается: им нельзя ни подписать, ни проверить токен.
+     */
+    private synchronized void reload() {
+        Map<Object, Object> stored = redisTemplate.opsForHash().entries(KEYS_KEY);
+        String activeKeyId = redisTemplate.opsForValue().get(ACTIVE_KEY_KEY);
+        if (activeKeyId == null || !stored.containsKey(activeKeyId)) {
+            return;
+        }
+        Map<String, SigningKey> current = keys;
+        Map<String, SigningKey> reloaded = new HashMap<>();
+        stored.forEach((id, encrypted) -> {
+            SigningKey existing = current.get((String) id);
+            if (existing != null && encrypted.equals(existing.encryptedSecret)) {
+                reloaded.put((String) id, existing);
+                return;
+            }
+            try {
+                reloaded.put((String) id, signingKey((String) id, (String) encrypted, decrypt((String) encrypted)));
+            } catch (GeneralSecurityException | IllegalArgumentException ex) {
+                log.error("Не удалось расшифровать ключ подписи {}: {}", id, ex.getMessage());
+            }
+        });
+        if (!reloaded.containsKey(activeKeyId)) {
+            return;
+        }
+        keys = Map.copyOf(reloaded);
+        activeKey = reloaded.get(activeKeyId);
+    }
+
+    private String encrypt(String secret) {
+        try {
+            byte[] iv = new byte[IV_LENGTH];
+            random.nextBytes(iv);
+            Cipher cipher = Cipher.getInstance(CIPHER);
+            cipher.init(Cipher.ENCRYPT_MODE, encryptionKey, new GCMParameterSpec(TAG_LENGTH_BITS, iv));
+            byte[] encrypted = cipher.doFinal(secret.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(ByteBuffer.allocate(iv.length + encrypted.length)
+                    .put(iv)
+                    .put(encrypted)
+                    .array());
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException("Не удалось зашифровать ключ подписи", ex);
+        }
+    }
+
+    private String decrypt(String stored) throws GeneralSecurityException {
+        byte[] bytes = Base64.getDecoder().decode(stored);
+        Cipher cipher = Cipher.getInstance(CIPHER);
+        cipher.init(Cipher.DECRYPT_MODE, encryptionKey, new GCMParameterSpec(TAG_LENGTH_BITS, bytes, 0, IV_LENGTH));
+        return new String(cipher.doFinal(bytes, IV_LENGTH, bytes.length - IV_LENGTH), StandardCharsets.UTF_8);
+    }
+
+    private static SigningKey signingKey(String keyId, String encryptedSecret, String secret) {
+        Algorithm algorithm = Algorithm.HMAC256(secret.getBytes(StandardCharsets.UTF_8));
+        return new SigningKey(keyId, encryptedSecret, algorithm, JWT.require(algorithm).build());
+    }
+
+    @AllArgsConstructor
+    private static class SigningKey {
+        private final String keyId;
+        private final String encryptedSecret;
+        private final Algorithm algorithm;
+        private final JWTVerifier verifier;
+    }
+
+}
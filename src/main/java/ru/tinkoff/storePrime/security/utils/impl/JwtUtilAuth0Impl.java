@@ -5,6 +5,9 @@ import com.auth0.jwt.JWT;
 import com.auth0.jwt.JWTVerifier;
 import com.auth0.jwt.algorithms.Algorithm;
 import com.auth0.jwt.interfaces.DecodedJWT;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import lombok.*;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
@@ -13,46 +16,94 @@ import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 import ru.tinkoff.storePrime.models.user.Account;
+import ru.tinkoff.storePrime.models.user.Customer;
+import ru.tinkoff.storePrime.models.user.Seller;
 import ru.tinkoff.storePrime.security.details.UserDetailsImpl;
 import ru.tinkoff.storePrime.security.exceptions.JWTVerificationException;
+import ru.tinkoff.storePrime.security.utils.AccountRevocationRegistry;
+import ru.tinkoff.storePrime.security.utils.JwtKeyRegistry;
 import ru.tinkoff.storePrime.security.utils.JwtUtil;
+import ru.tinkoff.storePrime.security.utils.TokenHashUtil;
 import ru.tinkoff.storePrime.services.AccountService;
 
-import java.nio.charset.StandardCharsets;
+import javax.annotation.PostConstruct;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 @Component
 @RequiredArgsConstructor
 public class JwtUtilAuth0Impl implements JwtUtil {
     private final AccountService accountService;
 
+    private final AccountRevocationRegistry accountRevocationRegistry;
+
+    private final JwtKeyRegistry jwtKeyRegistry;
+
+    private Cache<String, ParsedToken> verifiedTokens;
+
     @Value("${jwt.access_token.expires_time_millis}")
     private long ACCESS_TOKEN_EXPIRES_TIME;
 
     @Value("${jwt.refresh_token.expires_time_millis}")
     private long REFRESH_TOKEN_EXPIRES_TIME;
 
-    @Value("${jwt.secret}")
-    private String secret;
+    @Value("${jwt.key-id}")
+    private String defaultKeyId;
+
+    @Value("${jwt.verified-tokens-cache.maximum-size}")
+    private long verifiedTokensCacheSize;
+
+    @Value("${jwt.authorization.stateless}")
+    private boolean stateless;
+
+    @PostConstruct
+    public void initVerifiedTokensCache() {
+        verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(verifiedTokensCacheSize)
+                .expireAfter(new Expiry<String, ParsedToken>() {
+                    @Override
+                    public long expireAfterCreate(String key, ParsedToken value, long currentTime) {
+                        return TimeUnit.MILLISECONDS.toNanos(Math.max(0, value.getExpiresAt() - System.currentTimeMillis()));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, ParsedToken value, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, value, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, ParsedToken value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
 
     @Override
-    public Map<String, String> generateTokens(String subject, String authority, String issuer) {
-        Algorithm algorithm = Algorithm.HMAC256(secret.getBytes(StandardCharsets.UTF_8));
+    public Map<String, String> generateTokens(Account account, String issuer) {
+        Algorithm algorithm = jwtKeyRegistry.getActiveAlgorithm();
+        String keyId = jwtKeyRegistry.getActiveKeyId();
 
         String accessToken = JWT.create()
-                .withSubject(subject)
+                .withKeyId(keyId)
+                .withSubject(account.getEmail())
                 .withExpiresAt(new Date(System.currentTimeMillis() + ACCESS_TOKEN_EXPIRES_TIME))
-                .withClaim("role", authority)
+                .withClaim("role", account.getRole().name())
+                .withClaim("id", account.getId())
+                .withClaim("state", account.getState().name())
                 .withIssuer(issuer)
                 .sign(algorithm);
 
         String refreshToken = JWT.create()
-                .withSubject(subject)
+                .withKeyId(keyId)
+                .withSubject(account.getEmail())
                 .withExpiresAt(new Date(System.currentTimeMillis() + REFRESH_TOKEN_EXPIRES_TIME))
-                .withClaim("role", authority)
+                .withClaim("role", account.getRole().name())
+                .withClaim("id", account.getId())
+                .withClaim("state", account.getState().name())
                 .withIssuer(issuer)
                 .sign(algorithm);
 
@@ -66,28 +117,95 @@ public class JwtUtilAuth0Impl implements JwtUtil {
     @Override
     public Authentication buildAuthentication(String token) throws JWTVerificationException {
         ParsedToken parsedToken = parse(token);
-        Account account = accountService.getUserByEmail(parsedToken.email);
+        Account account;
+        if (stateless && parsedToken.getId() != null && parsedToken.getState() != null) {
+            account = buildAccountFromClaims(parsedToken);
+        } else {
+            account = accountService.getUserByEmail(parsedToken.email);
+        }
         UserDetails userDetails = new UserDetailsImpl(account);
         return new UsernamePasswordAuthenticationToken(userDetails,
                 null,
                 Collections.singleton(new SimpleGrantedAuthority(parsedToken.getRole())));
     }
 
+    /**
+     * Новые токены выпускаются по аккаунту из базы, а не по claims старого токена, поэтому смена состояния
+     * или роли попадает в токен при первом же обновлении, в том числе в режиме без обращения к базе.
+     */
+    @Override
+    public Authentication buildRefreshAuthentication(String refreshToken) throws JWTVerificationException {
+        ParsedToken parsedToken = parse(refreshToken);
+        Account account = accountService.getUserByEmail(parsedToken.getEmail());
+        if (account.isBanned()) {
+            throw new JWTVerificationException("Account " + account.getId() + " was revoked");
+        }
+        UserDetails userDetails = new UserDetailsImpl(account);
+        return new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
+    }
+
+    /**
+     * Собирает аккаунт только из подписанных claims токена. Такой аккаунт содержит id, email, роль и состояние,
+     * остальные поля не заполнены. Удалённые и заблокированные аккаунты отсекаются по реестру отзыва.
+     */
+    private Account buildAccountFromClaims(ParsedToken parsedToken) {
+        Account.Role role = Account.Role.valueOf(parsedToken.getRole());
+        if (accountRevocationRegistry.isRevoked(role, parsedToken.getId())) {
+            throw new JWTVerificationException("Account " + parsedToken.getId() + " was revoked");
+        }
+        Account.State state = Account.State.valueOf(parsedToken.getState());
+        if (Account.Role.CUSTOMER.equals(role)) {
+            return Customer.builder()
+                    .id(parsedToken.getId())
+                    .email(parsedToken.getEmail())
+                    .role(role)
+                    .state(state)
+                    .build();
+        }
+        return Seller.builder()
+                .id(parsedToken.getId())
+                .email(parsedToken.getEmail())
+                .role(role)
+                .state(state)
+                .build();
+    }
 
-    private ParsedToken parse(String token) throws JWTVerificationException {
-        Algorithm algorithm = Algorithm.HMAC256(secret.getBytes(StandardCharsets.UTF_8));
 
-        JWTVerifier verifier = JWT.require(algorithm).build();
+    /**
+     * Успешно проверенные токены кэшируются по SHA-256 до истечения срока действия,
+     * поэтому повторные запросы с тем же токеном не проверяют подпись и не разбирают JSON.
+     * Токены без kid выпущены до появления ротации и проверяются ключом по умолчанию.
+     * Попадание в кэш засчитывается, только пока kid указывает на тот же верификатор, которым токен проверяли.
+     */
+    private ParsedToken parse(String token) throws JWTVerificationException {
+        String tokenHash = TokenHashUtil.sha256(token);
+        ParsedToken cached = verifiedTokens.getIfPresent(tokenHash);
+        if (cached != null && jwtKeyRegistry.getVerifier(cached.getKeyId())
+                .filter(verifier -> verifier == cached.getVerifier())
+                .isPresent()) {
+            return cached;
+        }
 
         try {
-            DecodedJWT decodedJWT = verifier.verify(token);
+            DecodedJWT unverifiedJWT = JWT.decode(token);
+            String keyId = unverifiedJWT.getKeyId() != null ? unverifiedJWT.getKeyId() : defaultKeyId;
+            JWTVerifier verifier = jwtKeyRegistry.getVerifier(keyId)
+                    .orElseThrow(() -> new JWTVerificationException("Unknown signing key " + keyId));
+            DecodedJWT decodedJWT = verifier.verify(unverifiedJWT);
             String email = decodedJWT.getSubject();
             String role = decodedJWT.getClaim("role").asString();
 
-            return ParsedToken.builder()
+            ParsedToken parsedToken = ParsedToken.builder()
                     .role(role)
                     .email(email)
+                    .id(decodedJWT.getClaim("id").asLong())
+                    .state(decodedJWT.getClaim("state").asString())
+                    .keyId(keyId)
+                    .verifier(verifier)
+                    .expiresAt(decodedJWT.getExpiresAt() != null ? decodedJWT.getExpiresAt().getTime() : Long.MAX_VALUE)
                     .build();
+            verifiedTokens.put(tokenHash, parsedToken);
+            return parsedToken;
         } catch (com.auth0.jwt.exceptions.JWTVerificationException e) {
             throw new JWTVerificationException(e);
         }
@@ -102,5 +220,10 @@ public class JwtUtilAuth0Impl implements JwtUtil {
     private static class ParsedToken {
         private String email;
         private String role;
+        private Long id;
+        private String state;
+        private String keyId;
+        private JWTVerifier verifier;
+        private long expiresAt;
     }
 }
@@ -0,0 +1,19 @@
+package ru.tinkoff.storePrime.services;
+
+import ru.tinkoff.storePrime.models.user.Account;
+
+import java.util.Map;
+
+public interface BalanceService {
+
+    void credit(Account.Role role, Long accountId, double amount);
+
+    void creditAll(Account.Role role, Map<Long, Double> amounts);
+
+    double debit(Account.Role role, Long accountId, double amount);
+
+    double getBalance(Account.Role role, Long accountId);
+
+    int compact();
+
+}
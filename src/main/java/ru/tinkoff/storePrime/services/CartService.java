@@ -1,6 +1,8 @@
 package ru.tinkoff.storePrime.services;
 
+import ru.tinkoff.storePrime.dto.cart.CartItemChangeDto;
 import ru.tinkoff.storePrime.dto.cart.CartItemDto;
+import ru.tinkoff.storePrime.dto.cart.CartSummaryDto;
 
 import java.util.List;
 
@@ -11,4 +13,8 @@ public interface CartService {
     List<CartItemDto> getCustomerCart(Long customerId);
 
     void deleteProductFromCart(Long customerId, Long productId);
+
+    List<CartItemDto> changeCartItems(Long customerId, List<CartItemChangeDto> changes);
+
+    CartSummaryDto getCartSummary(Long customerId);
 }
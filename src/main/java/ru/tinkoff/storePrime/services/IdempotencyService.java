@@ -0,0 +1,11 @@
+package ru.tinkoff.storePrime.services;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+
+import java.util.function.Supplier;
+
+public interface IdempotencyService {
+
+    <T> T execute(String scope, String key, Object request, TypeReference<T> responseType, Supplier<T> action);
+
+}
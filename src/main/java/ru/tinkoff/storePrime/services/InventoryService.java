@@ -0,0 +1,10 @@
+package ru.tinkoff.storePrime.services;
+
+import java.util.Map;
+import java.util.Set;
+
+public interface InventoryService {
+
+    Set<Long> reserve(Map<Long, Integer> quantitiesByProductId);
+
+}
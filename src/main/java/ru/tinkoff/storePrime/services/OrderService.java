@@ -1,7 +1,11 @@
 package ru.tinkoff.storePrime.services;
 
 import ru.tinkoff.storePrime.dto.order.OrderDto;
+import ru.tinkoff.storePrime.dto.order.OrderStatusChangeResultDto;
+import ru.tinkoff.storePrime.dto.order.OrdersCursorPage;
+import ru.tinkoff.storePrime.models.Order;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 public interface OrderService {
@@ -12,8 +16,16 @@ public interface OrderService {
 
     List<OrderDto> getAllOrdersOfSeller(Long sellerId);
 
+    OrdersCursorPage getOrdersOfCustomerAfter(Long customerId, String after, Order.Status status,
+                                              LocalDateTime from, LocalDateTime to);
+
+    OrdersCursorPage getOrdersOfSellerAfter(Long sellerId, String after, Order.Status status,
+                                            LocalDateTime from, LocalDateTime to);
+
     OrderDto changeStatus(Long sellerId, Long orderId, String status);
 
+    List<OrderStatusChangeResultDto> changeStatuses(Long sellerId, List<Long> orderIds, String status);
+
     OrderDto cancelOrder(Long customerId, Long orderId);
 
     List<OrderDto> getCancelledOrdersByCustomerId(Long customerId);
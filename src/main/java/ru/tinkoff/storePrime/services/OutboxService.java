@@ -0,0 +1,20 @@
+package ru.tinkoff.storePrime.services;
+
+import ru.tinkoff.storePrime.models.Order;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface OutboxService {
+
+    void orderCreated(List<Order> orders);
+
+    void orderStatusChanged(Order order);
+
+    void orderStatusesChanged(Long sellerId, Collection<Long> orderIds, Order.Status status);
+
+    void orderCancelled(Order order, Double refund);
+
+    int publishPending();
+
+}
@@ -2,6 +2,8 @@ package ru.tinkoff.storePrime.services;
 
 import ru.tinkoff.storePrime.dto.product.NewOrUpdateProductDto;
 import ru.tinkoff.storePrime.dto.product.ProductDto;
+import ru.tinkoff.storePrime.dto.product.ProductSortOrder;
+import ru.tinkoff.storePrime.dto.product.ProductsCursorPage;
 import ru.tinkoff.storePrime.dto.product.ProductsPage;
 
 import java.util.List;
@@ -21,11 +23,14 @@ public interface ProductService {
 
     ProductsPage getProductsPage(int page, Double minPrice, Double maxPrice, String category, Long sellerId);
 
-    List<ProductDto> getAllProductsByContentString(String content);
+    ProductsCursorPage getProductsAfter(String after, ProductSortOrder sortOrder, Double minPrice, Double maxPrice,
+                                        String category, Long sellerId, boolean withTotal);
+
+    List<ProductDto> getAllProductsByContentString(String content, int page);
 
     ProductDto getOneProduct();
 
     List<ProductDto> getRandomProducts(Integer amount);
 
-    List<ProductDto> getAllProductsByContentStringAndCategory(String content, String category);
+    List<ProductDto> getAllProductsByContentStringAndCategory(String content, String category, int page);
 }
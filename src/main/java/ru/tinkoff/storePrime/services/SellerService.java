@@ -3,6 +3,8 @@ package ru.tinkoff.storePrime.services;
 import ru.tinkoff.storePrime.dto.user.NewOrUpdateSellerDto;
 import ru.tinkoff.storePrime.dto.user.SellerDto;
 
+import java.util.Map;
+
 public interface SellerService {
 
     SellerDto addSeller(NewOrUpdateSellerDto sellerDto);
@@ -14,5 +16,7 @@ public interface SellerService {
     SellerDto getSeller(Long id);
     void updateCardBalanceBySellerId(Long sellerId, Double amount);
 
+    void updateCardBalancesBySellerIds(Map<Long, Double> replenishments);
+
 
 }
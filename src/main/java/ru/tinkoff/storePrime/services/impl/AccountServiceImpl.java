@@ -1,7 +1,6 @@
 package ru.tinkoff.storePrime.services.impl;
 
 import lombok.RequiredArgsConstructor;
-import org.springframework.cache.CacheManager;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 import ru.tinkoff.storePrime.models.user.Account;
@@ -11,15 +10,12 @@ import ru.tinkoff.storePrime.repository.CustomerRepository;
 import ru.tinkoff.storePrime.repository.SellerRepository;
 import ru.tinkoff.storePrime.services.AccountService;
 
-import java.util.Objects;
 import java.util.Optional;
 
 @RequiredArgsConstructor
 @Service
 public class AccountServiceImpl implements AccountService {
 
-    private final CacheManager cacheManager;
-
     private final CustomerRepository customerRepository;
 
     private final SellerRepository sellerRepository;
@@ -29,24 +25,20 @@ public class AccountServiceImpl implements AccountService {
         return customerRepository.findByEmail(email).isPresent() || sellerRepository.findByEmail(email).isPresent();
     }
 
+    /**
+     * Вызывается на каждый вход и, без stateless-авторизации, на каждый запрос, поэтому в кэш аккаунтов
+     * ничего не пишет: запись стоила бы обращения к Redis и сброса ключа в L1 всех экземпляров.
+     */
     @Override
     public Account getUserByEmail(String email) {
         Optional<Customer> customer = customerRepository.findByEmail(email);
         if (customer.isPresent()) {
-            Customer notNullCustomer = customer.get();
-            if (cacheManager.getCache("account") != null) {
-                Objects.requireNonNull(cacheManager.getCache("account")).put(notNullCustomer.getId(), notNullCustomer);
-            }
-            return notNullCustomer;
+            return customer.get();
         }
 
         Optional<Seller> seller = sellerRepository.findByEmail(email);
         if (seller.isPresent()) {
-            Seller notNullSeller = seller.get();
-            if (cacheManager.getCache("account") != null) {
-                Objects.requireNonNull(cacheManager.getCache("account")).put(notNullSeller.getId(), notNullSeller);
-            }
-            return notNullSeller;
+            return seller.get();
         }
 
         throw new UsernameNotFoundException("Account with such email does not exist");
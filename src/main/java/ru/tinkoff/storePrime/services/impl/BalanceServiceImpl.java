@@ -0,0 +1,104 @@
+package ru.tinkoff.storePrime.services.impl;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.tinkoff.storePrime.exceptions.PaymentImpossibleException;
+import ru.tinkoff.storePrime.exceptions.not_found.CustomerNotFoundException;
+import ru.tinkoff.storePrime.exceptions.not_found.NotFoundException;
+import ru.tinkoff.storePrime.exceptions.not_found.SellerNotFoundException;
+import ru.tinkoff.storePrime.models.BalanceEntry;
+import ru.tinkoff.storePrime.models.user.Account;
+import ru.tinkoff.storePrime.repository.BalanceEntryRepository;
+import ru.tinkoff.storePrime.repository.CustomerRepository;
+import ru.tinkoff.storePrime.repository.SellerRepository;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Балансы ведутся журналом: пополнение — это только вставка записи, без блокировки строки счёта,
+ * поэтому зачисления популярному продавцу от разных заказов не конкурируют между собой.
+ * Списание блокирует строку счёта, чтобы проверка остатка и запись выполнялись атомарно.
+ */
+@RequiredArgsConstructor
+@Service
+public class BalanceServiceImpl implements BalanceService {
+
+    private final BalanceEntryRepository balanceEntryRepository;
+
+    private final CustomerRepository customerRepository;
+
+    private final SellerRepository sellerRepository;
+
+    @Value("${balance.compaction.batch-size}")
+    private int compactionBatchSize;
+
+    @Override
+    public void credit(Account.Role role, Long accountId, double amount) {
+        balanceEntryRepository.save(entry(role, accountId, amount));
+    }
+
+    @Override
+    @Transactional
+    public void creditAll(Account.Role role, Map<Long, Double> amounts) {
+        balanceEntryRepository.saveAll(amounts.entrySet().stream()
+                .map(amount -> entry(role, amount.getKey(), amount.getValue()))
+                .collect(Collectors.toList()));
+    }
+
+    @Override
+    @Transactional
+    public double debit(Account.Role role, Long accountId, double amount) {
+        Optional<Long> lockedAccount = Account.Role.CUSTOMER.equals(role)
+                ? customerRepository.lockById(accountId)
+                : sellerRepository.lockById(accountId);
+        lockedAccount.orElseThrow(() -> accountNotFound(role, accountId));
+        double balance = getBalance(role, accountId);
+        if (balance < amount) {
+            throw new PaymentImpossibleException("Недостаточно средств");
+        }
+        balanceEntryRepository.save(entry(role, accountId, -amount));
+        return balance - amount;
+    }
+
+    @Override
+    public double getBalance(Account.Role role, Long accountId) {
+        Optional<Double> balance = Account.Role.CUSTOMER.equals(role)
+                ? customerRepository.findBalanceById(accountId)
+                : sellerRepository.findBalanceById(accountId);
+        return balance.orElseThrow(() -> accountNotFound(role, accountId));
+    }
+
+    /**
+     * Переносит накопившиеся записи журнала в снимки балансов, чтобы подсчёт баланса
+     * не замедлялся с ростом журнала.
+     *
+     * @return количество обновлённых счетов
+     */
+    @Override
+    @Scheduled(fixedDelayString = "${balance.compaction.delay-millis}")
+    @Transactional
+    public int compact() {
+        return balanceEntryRepository.compactCustomerEntries(compactionBatchSize)
+                + balanceEntryRepository.compactSellerEntries(compactionBatchSize);
+    }
+
+    private BalanceEntry entry(Account.Role role, Long accountId, double amount) {
+        return BalanceEntry.builder()
+                .role(role)
+                .accountId(accountId)
+                .amount(amount)
+                .build();
+    }
+
+    private NotFoundException accountNotFound(Account.Role role, Long accountId) {
+        return Account.Role.CUSTOMER.equals(role)
+                ? new CustomerNotFoundException("Покупатель с id " + accountId + " не найден")
+                : new SellerNotFoundException("Продавец с id " + accountId + " не найден");
+    }
+
+}
@@ -2,8 +2,14 @@ package ru.tinkoff.storePrime.services.impl;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.tinkoff.storePrime.converters.ProductConverter;
+import ru.tinkoff.storePrime.dto.cart.CartItemChangeDto;
 import ru.tinkoff.storePrime.dto.cart.CartItemDto;
+import ru.tinkoff.storePrime.dto.cart.CartSummaryDto;
+import ru.tinkoff.storePrime.exceptions.DisparateDataException;
 import ru.tinkoff.storePrime.exceptions.not_found.CartItemNotFoundException;
 import ru.tinkoff.storePrime.exceptions.not_found.ProductNotFoundException;
 import ru.tinkoff.storePrime.models.CartItem;
@@ -13,9 +19,20 @@ import ru.tinkoff.storePrime.repository.CartRepository;
 import ru.tinkoff.storePrime.repository.ProductRepository;
 import ru.tinkoff.storePrime.services.CartService;
 import ru.tinkoff.storePrime.services.utils.AccountCachingUtil;
+import ru.tinkoff.storePrime.services.utils.RedisCartStore;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -25,6 +42,11 @@ public class CartServiceImpl implements CartService {
 
     private final ProductRepository productRepository;
 
+    private final RedisCartStore redisCartStore;
+
+    @Value("${cart.batch.max-size}")
+    private int maxBatchSize;
+
     private AccountCachingUtil accountCachingUtil;
 
     @Autowired
@@ -34,11 +56,16 @@ public class CartServiceImpl implements CartService {
 
     @Override
     public CartItemDto addNewCartItem(Long customerId, Long productId, Integer quantity) {
+        if (redisCartStore.isEnabled()) {
+            Product product = productRepository.findById(productId)
+                    .orElseThrow(() -> new ProductNotFoundException("Product not found"));
+            return toCartItemDto(customerId, product, redisCartStore.put(customerId, productId, quantity));
+        }
         Optional<CartItem> foundCartItem = cartRepository.findByCustomer_IdAndProduct_Id(customerId, productId);
         CartItem newCartItem = foundCartItem.orElseGet(() -> {
             Product product = productRepository.findById(productId)
                     .orElseThrow(() -> new ProductNotFoundException("Product not found"));
-            Customer customer = accountCachingUtil.getCustomer(customerId);
+            Customer customer = accountCachingUtil.getCustomerReference(customerId);
             return CartItem.builder()
                     .product(product)
                     .customer(customer)
@@ -52,15 +79,188 @@ public class CartServiceImpl implements CartService {
 
     @Override
     public List<CartItemDto> getCustomerCart(Long customerId) {
+        if (redisCartStore.isEnabled()) {
+            Map<Long, RedisCartStore.Entry> entries = redisCartStore.getEntries(customerId);
+            return productRepository.findAllById(entries.keySet()).stream()
+                    .map(product -> toCartItemDto(customerId, product, entries.get(product.getId())))
+                    .collect(Collectors.toList());
+        }
         return CartItemDto.from(cartRepository.findByCustomer_Id(customerId));
     }
 
     @Override
     public void deleteProductFromCart(Long customerId, Long productId) {
+        if (redisCartStore.isEnabled()) {
+            if (!redisCartStore.remove(customerId, productId)) {
+                throw new CartItemNotFoundException("Элемент корзины не найден");
+            }
+            return;
+        }
         CartItem foundCartItem = cartRepository.findByCustomer_IdAndProduct_Id(customerId, productId).orElseThrow(() ->
                 new CartItemNotFoundException("Элемент корзины не найден"));
         cartRepository.delete(foundCartItem);
     }
 
+    /**
+     * Итоги считаются одним агрегирующим запросом по cart_item и product, без загрузки сущностей.
+     * Корзину из Redis агрегировать в базе нельзя, поэтому для неё читаются только цена, остаток и продавец товаров.
+     */
+    @Override
+    public CartSummaryDto getCartSummary(Long customerId) {
+        List<CartSummaryDto.SellerSubtotal> sellers = new ArrayList<>();
+        List<Long> outOfStockProductIds = new ArrayList<>();
+        if (redisCartStore.isEnabled()) {
+            Map<Long, RedisCartStore.Entry> entries = redisCartStore.getEntries(customerId);
+            Map<Long, CartSummaryDto.SellerSubtotal> subtotalsBySellerId = new TreeMap<>();
+            if (!entries.isEmpty()) {
+                productRepository.findPriceAndStockByIdIn(entries.keySet()).forEach(product -> {
+                    int quantity = entries.get(product.getId()).getQuantity();
+                    CartSummaryDto.SellerSubtotal subtotal = subtotalsBySellerId.computeIfAbsent(product.getSellerId(),
+                            sellerId -> new CartSummaryDto.SellerSubtotal(sellerId, 0L, 0L, 0.0));
+                    subtotal.setLineCount(subtotal.getLineCount() + 1);
+                    subtotal.setQuantity(subtotal.getQuantity() + quantity);
+                    subtotal.setSubtotal(subtotal.getSubtotal() + product.getPrice() * quantity);
+                    if (product.getAmount() != null && product.getAmount() < quantity) {
+                        outOfStockProductIds.add(product.getId());
+                    }
+                });
+            }
+            sellers.addAll(subtotalsBySellerId.values());
+            outOfStockProductIds.sort(null);
+        } else {
+            cartRepository.summarizeByCustomerId(customerId).forEach(row -> {
+                sellers.add(new CartSummaryDto.SellerSubtotal(row.getSellerId(), row.getLineCount(), row.getQuantity(), row.getSubtotal()));
+                if (row.getOutOfStockProductIds() != null) {
+                    Arrays.stream(row.getOutOfStockProductIds().split(",")).map(Long::valueOf).forEach(outOfStockProductIds::add);
+                }
+            });
+        }
+        return CartSummaryDto.builder()
+                .lineCount(sellers.stream().mapToLong(CartSummaryDto.SellerSubtotal::getLineCount).sum())
+                .totalQuantity(sellers.stream().mapToLong(CartSummaryDto.SellerSubtotal::getQuantity).sum())
+                .totalPrice(sellers.stream().mapToDouble(CartSummaryDto.SellerSubtotal::getSubtotal).sum())
+                .sellers(sellers)
+                .outOfStockProductIds(outOfStockProductIds)
+                .build();
+    }
+
+    /**
+     * Все изменения применяются в одной транзакции: текущая корзина и новые товары читаются
+     * по одному запросу, новые и изменённые позиции сохраняются JDBC-батчем, удалённые — одним DELETE.
+     * Повторные изменения одного товара схлопываются, действует последнее.
+     *
+     * @return корзина после изменений
+     */
+    @Override
+    @Transactional
+    public List<CartItemDto> changeCartItems(Long customerId, List<CartItemChangeDto> changes) {
+        Map<Long, Integer> quantitiesByProductId = getRequestedQuantities(changes);
+        if (redisCartStore.isEnabled()) {
+            return changeRedisCartItems(customerId, quantitiesByProductId);
+        }
+
+        Map<Long, CartItem> itemsByProductId = cartRepository.findByCustomer_Id(customerId).stream()
+                .collect(Collectors.toMap(item -> item.getProduct().getId(), Function.identity(), (a, b) -> a, LinkedHashMap::new));
+        Set<Long> newProductIds = quantitiesByProductId.entrySet().stream()
+                .filter(change -> change.getValue() > 0 && !itemsByProductId.containsKey(change.getKey()))
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        Map<Long, Product> newProducts = loadProducts(newProductIds);
+
+        List<CartItem> savedItems = new ArrayList<>();
+        List<CartItem> deletedItems = new ArrayList<>();
+        Customer customer = newProducts.isEmpty() ? null : accountCachingUtil.getCustomerReference(customerId);
+        quantitiesByProductId.forEach((productId, quantity) -> {
+            CartItem item = itemsByProductId.get(productId);
+            if (quantity == 0) {
+                if (item != null) {
+                    deletedItems.add(itemsByProductId.remove(productId));
+                }
+                return;
+            }
+            if (item == null) {
+                item = CartItem.builder()
+                        .product(newProducts.get(productId))
+                        .customer(customer)
+                        .build();
+                itemsByProductId.put(productId, item);
+            }
+            item.setQuantity(quantity);
+            savedItems.add(item);
+        });
+        cartRepository.saveAll(savedItems);
+        if (!deletedItems.isEmpty()) {
+            cartRepository.deleteAllInBatch(deletedItems);
+        }
+        return CartItemDto.from(new ArrayList<>(itemsByProductId.values()));
+    }
+
+    /**
+     * Существовать должны только добавляемые товары. Товары, которые уже лежат в корзине, но удалены из каталога,
+     * убираются из неё, а не ломают изменение остальных позиций.
+     */
+    private List<CartItemDto> changeRedisCartItems(Long customerId, Map<Long, Integer> quantitiesByProductId) {
+        Set<Long> addedProductIds = quantitiesByProductId.entrySet().stream()
+                .filter(change -> change.getValue() > 0)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        Map<Long, Product> products = new HashMap<>(loadProducts(addedProductIds));
+        Set<Long> keptProductIds = redisCartStore.getEntries(customerId).keySet().stream()
+                .filter(productId -> !quantitiesByProductId.containsKey(productId))
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        Map<Long, Integer> changes = new LinkedHashMap<>(quantitiesByProductId);
+        if (!keptProductIds.isEmpty()) {
+            productRepository.findAllById(keptProductIds).forEach(product -> products.put(product.getId(), product));
+            keptProductIds.stream()
+                    .filter(productId -> !products.containsKey(productId))
+                    .forEach(productId -> changes.put(productId, 0));
+        }
+        Map<Long, RedisCartStore.Entry> entries = redisCartStore.putAll(customerId, changes);
+        return entries.entrySet().stream()
+                .filter(entry -> products.containsKey(entry.getKey()))
+                .map(entry -> toCartItemDto(customerId, products.get(entry.getKey()), entry.getValue()))
+                .collect(Collectors.toList());
+    }
+
+    private Map<Long, Integer> getRequestedQuantities(List<CartItemChangeDto> changes) {
+        if (changes.size() > maxBatchSize) {
+            throw new DisparateDataException("За один запрос можно изменить не более " + maxBatchSize + " позиций корзины");
+        }
+        Map<Long, Integer> quantitiesByProductId = new LinkedHashMap<>();
+        for (CartItemChangeDto change : changes) {
+            if (change.getProductId() == null || change.getQuantity() == null || change.getQuantity() < 0) {
+                throw new DisparateDataException("Для каждой позиции нужно указать товар и неотрицательное количество");
+            }
+            quantitiesByProductId.remove(change.getProductId());
+            quantitiesByProductId.put(change.getProductId(), change.getQuantity());
+        }
+        return quantitiesByProductId;
+    }
+
+    /**
+     * Товары, которые добавляются в корзину, должны существовать все: иначе не меняется ничего.
+     */
+    private Map<Long, Product> loadProducts(Set<Long> productIds) {
+        if (productIds.isEmpty()) {
+            return Map.of();
+        }
+        Map<Long, Product> products = productRepository.findAllById(productIds).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+        List<Long> missingIds = productIds.stream().filter(id -> !products.containsKey(id)).collect(Collectors.toList());
+        if (!missingIds.isEmpty()) {
+            throw new ProductNotFoundException("Товары с id " + missingIds + " не найдены");
+        }
+        return products;
+    }
+
+    private static CartItemDto toCartItemDto(Long customerId, Product product, RedisCartStore.Entry entry) {
+        return CartItemDto.builder()
+                .id(entry.getItemId())
+                .product(ProductConverter.getProductDtoFromProduct(product))
+                .customerId(customerId)
+                .quantity(entry.getQuantity())
+                .build();
+    }
+
 
 }
@@ -2,37 +2,39 @@ package ru.tinkoff.storePrime.services.impl;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.cache.CacheManager;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import ru.tinkoff.storePrime.converters.CustomerConverter;
 import ru.tinkoff.storePrime.dto.user.CustomerDto;
 import ru.tinkoff.storePrime.dto.user.NewOrUpdateCustomerDto;
-import ru.tinkoff.storePrime.exceptions.PaymentImpossibleException;
 import ru.tinkoff.storePrime.exceptions.not_found.CustomerNotFoundException;
 import ru.tinkoff.storePrime.models.user.Account;
 import ru.tinkoff.storePrime.models.user.Customer;
+import ru.tinkoff.storePrime.models.user.CustomerSnapshot;
 import ru.tinkoff.storePrime.repository.CustomerRepository;
 import ru.tinkoff.storePrime.security.exceptions.AlreadyExistsException;
+import ru.tinkoff.storePrime.security.utils.AccountRevocationRegistry;
 import ru.tinkoff.storePrime.services.AccountService;
+import ru.tinkoff.storePrime.services.BalanceService;
 import ru.tinkoff.storePrime.services.CustomerService;
 import ru.tinkoff.storePrime.services.utils.AccountCachingUtil;
 
-import java.util.Objects;
-
 @RequiredArgsConstructor
 @Service
 public class CustomerServiceImpl implements CustomerService {
 
 
-    private final CacheManager cacheManager;
-
     private final PasswordEncoder passwordEncoder;
 
+    private final AccountRevocationRegistry accountRevocationRegistry;
+
     private final AccountService accountService;
 
     private final CustomerRepository customerRepository;
 
+    private final BalanceService balanceService;
+
     private AccountCachingUtil accountCachingUtil;
 
     @Autowired
@@ -54,7 +56,7 @@ public class CustomerServiceImpl implements CustomerService {
 
     @Override
     public CustomerDto updateCustomer(Long customerId, NewOrUpdateCustomerDto updatedCustomerDto) {
-        Customer customer = accountCachingUtil.getCustomer(customerId);
+        CustomerSnapshot customer = accountCachingUtil.getCustomer(customerId);
         if (Account.State.DELETED.equals(customer.getState())) {
             throw new CustomerNotFoundException("Пользователь не найден");
         }
@@ -65,47 +67,49 @@ public class CustomerServiceImpl implements CustomerService {
         }
         Customer updateCustomer = CustomerConverter.getCustomerFromNewOrUpdateCustomerDto(updatedCustomerDto);
         updateCustomer.setPasswordHash(passwordEncoder.encode(updatedCustomerDto.getPasswordHash()));
-        updateCustomer.setCardBalance(customer.getCardBalance());
-        updateCustomer.setCart(customer.getCart());
         updateCustomer.setId(customerId);
         Customer updatedCustomer = customerRepository.save(updateCustomer);
-        if (cacheManager.getCache("account") != null) {
-            Objects.requireNonNull(cacheManager.getCache("account")).put(updatedCustomer.getId(), updatedCustomer);
-        }
-        return CustomerConverter.getCustomerDtoFromCustomer(updatedCustomer);
+        accountCachingUtil.putCustomer(updatedCustomer);
+        CustomerDto customerDto = CustomerConverter.getCustomerDtoFromCustomer(updatedCustomer);
+        customerDto.setCardBalance(balanceService.getBalance(Account.Role.CUSTOMER, customerId));
+        return customerDto;
     }
 
     @Override
     public void deleteCustomer(Long customerId) {
-        Customer customer = accountCachingUtil.getCustomer(customerId);
+        Customer customer = customerRepository.findById(customerId)
+                .orElseThrow(() -> new CustomerNotFoundException("Покупатель с id " + customerId + " не найден"));
         customer.setState(Account.State.DELETED);
         customerRepository.save(customer);
-        if (cacheManager.getCache("account") != null) {
-            Objects.requireNonNull(cacheManager.getCache("account")).invalidate();
-        }
+        accountRevocationRegistry.revoke(Account.Role.CUSTOMER, customerId);
+        accountCachingUtil.putCustomer(customer);
     }
 
     @Override
+    @Transactional
     public CustomerDto updateCardBalance(Long customerId, Double replenishment) {
-        Customer customer = accountCachingUtil.getCustomer(customerId);
-        if (customer.getCardBalance() + replenishment < 0) {
-            throw new PaymentImpossibleException("Недостаточно средств");
+        CustomerSnapshot customer = accountCachingUtil.getCustomer(customerId);
+        double balance;
+        if (replenishment < 0) {
+            balance = balanceService.debit(Account.Role.CUSTOMER, customerId, -replenishment);
+        } else {
+            balanceService.credit(Account.Role.CUSTOMER, customerId, replenishment);
+            balance = balanceService.getBalance(Account.Role.CUSTOMER, customerId);
         }
-        customer.setCardBalance(customer.getCardBalance() + replenishment);
-        Customer updatedCustomer = customerRepository.save(customer);
-        if (cacheManager.getCache("account") != null) {
-            Objects.requireNonNull(cacheManager.getCache("account")).put(customerId, updatedCustomer);
-        }
-        return CustomerConverter.getCustomerDtoFromCustomer(updatedCustomer);
+        CustomerDto customerDto = CustomerConverter.getCustomerDtoFromCustomerSnapshot(customer);
+        customerDto.setCardBalance(balance);
+        return customerDto;
     }
 
     @Override
     public CustomerDto getThisCustomer(Long id) {
-        Customer customer = accountCachingUtil.getCustomer(id);
+        CustomerSnapshot customer = accountCachingUtil.getCustomer(id);
         if (Account.State.DELETED.equals(customer.getState())) {
             throw new CustomerNotFoundException("Пользователь не найден");
         }
-        return CustomerConverter.getCustomerDtoFromCustomer(customer);
+        CustomerDto customerDto = CustomerConverter.getCustomerDtoFromCustomerSnapshot(customer);
+        customerDto.setCardBalance(balanceService.getBalance(Account.Role.CUSTOMER, id));
+        return customerDto;
     }
 
 
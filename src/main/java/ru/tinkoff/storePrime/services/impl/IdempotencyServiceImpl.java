@@ -0,0 +1,239 @@
+package ru.tinkoff.storePrime.services.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Service;
+import ru.tinkoff.storePrime.exceptions.DisparateDataException;
+import ru.tinkoff.storePrime.exceptions.RequestInProgressException;
+import ru.tinkoff.storePrime.security.utils.TokenHashUtil;
+import ru.tinkoff.storePrime.services.IdempotencyService;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Первый результат запроса с ключом идемпотентности сохраняется в Redis; повторы с тем же ключом
+ * получают его без повторного выполнения. Пока первый запрос выполняется, в Redis лежит запись без ответа,
+ * и повторы ждут её заполнения. Если Redis недоступен, те же гарантии даются в пределах экземпляра
+ * через локальный кэш.
+ */
+@Slf4j
+@RequiredArgsConstructor
+@Service
+public class IdempotencyServiceImpl implements IdempotencyService {
+
+    private static final String KEY_PREFIX = "idempotency:";
+
+    private static final TypeReference<IdempotencyRecord> RECORD_TYPE = new TypeReference<>() {};
+
+    private final RedisTemplate<String, String> redisTemplate;
+
+    private final ObjectMapper objectMapper;
+
+    private Cache<String, CompletableFuture<IdempotencyRecord>> localRecords;
+
+    @Value("${idempotency.ttl-millis}")
+    private long ttlMillis;
+
+    /**
+     * Должно превышать время выполнения самого долгого запроса, иначе повтор выполнится параллельно с ним.
+     */
+    @Value("${idempotency.in-flight-ttl-millis}")
+    private long inFlightTtlMillis;
+
+    @Value("${idempotency.wait-timeout-millis}")
+    private long waitTimeoutMillis;
+
+    @Value("${idempotency.poll-millis}")
+    private long pollMillis;
+
+    @Value("${idempotency.local.maximum-size}")
+    private long localMaximumSize;
+
+    @PostConstruct
+    public void initLocalRecords() {
+        localRecords = Caffeine.newBuilder()
+                .maximumSize(localMaximumSize)
+                .expireAfterWrite(ttlMillis, TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    @Override
+    public <T> T execute(String scope, String key, Object request, TypeReference<T> responseType, Supplier<T> action) {
+        if (key == null) {
+            return action.get();
+        }
+        String storageKey = KEY_PREFIX + scope + ":" + TokenHashUtil.sha256(key);
+        String fingerprint = TokenHashUtil.sha256(write(request));
+        long deadline = System.currentTimeMillis() + waitTimeoutMillis;
+        while (true) {
+            Boolean acquired;
+            try {
+                acquired = redisTemplate.opsForValue().setIfAbsent(storageKey,
+                        write(new IdempotencyRecord(fingerprint, null)), Duration.ofMillis(inFlightTtlMillis));
+            } catch (DataAccessException ex) {
+                log.warn("Redis недоступен, ключи идемпотентности проверяются локально: {}", ex.getMessage());
+                return executeLocally(storageKey, fingerprint, responseType, action);
+            }
+            if (Boolean.TRUE.equals(acquired)) {
+                return executeAndStore(storageKey, fingerprint, action);
+            }
+            String stored;
+            try {
+                stored = redisTemplate.opsForValue().get(storageKey);
+            } catch (DataAccessException ex) {
+                log.warn("Redis недоступен, ключи идемпотентности проверяются локально: {}", ex.getMessage());
+                return executeLocally(storageKey, fingerprint, responseType, action);
+            }
+            if (stored != null) {
+                IdempotencyRecord record = read(stored, RECORD_TYPE);
+                checkFingerprint(record, fingerprint);
+                if (record.getResponse() != null) {
+                    return read(record.getResponse(), responseType);
+                }
+                IdempotencyRecord local = completedLocally(storageKey);
+                if (local != null) {
+                    return read(local.getResponse(), responseType);
+                }
+            }
+            awaitUntil(deadline);
+        }
+    }
+
+    private <T> T executeAndStore(String storageKey, String fingerprint, Supplier<T> action) {
+        T response;
+        try {
+            response = action.get();
+        } catch (RuntimeException ex) {
+            try {
+                redisTemplate.delete(storageKey);
+            } catch (DataAccessException redisEx) {
+                ex.addSuppressed(redisEx);
+            }
+            throw ex;
+        }
+        IdempotencyRecord completed = new IdempotencyRecord(fingerprint, write(response));
+        try {
+            redisTemplate.opsForValue().set(storageKey, write(completed), Duration.ofMillis(ttlMillis));
+        } catch (DataAccessException ex) {
+            log.warn("Не удалось сохранить результат запроса с ключом идемпотентности: {}", ex.getMessage());
+            keepCompleted(storageKey, completed);
+        }
+        return response;
+    }
+
+    /**
+     * Действие уже выполнено, и если запись «в процессе» истечёт, повтор выполнит его второй раз.
+     * Поэтому запись продлевается на всё окно идемпотентности: на этом экземпляре повтор получит ответ
+     * из локального кэша, на остальных — отказ, пока запрос будто бы выполняется, но не дубль.
+     */
+    private void keepCompleted(String storageKey, IdempotencyRecord completed) {
+        localRecords.put(storageKey, CompletableFuture.completedFuture(completed));
+        try {
+            redisTemplate.expire(storageKey, Duration.ofMillis(ttlMillis));
+        } catch (DataAccessException ex) {
+            log.error("Не удалось продлить запись ключа идемпотентности {}: {}", storageKey, ex.getMessage());
+        }
+    }
+
+    private IdempotencyRecord completedLocally(String storageKey) {
+        CompletableFuture<IdempotencyRecord> local = localRecords.getIfPresent(storageKey);
+        if (local == null || !local.isDone() || local.isCompletedExceptionally()) {
+            return null;
+        }
+        return local.join();
+    }
+
+    private <T> T executeLocally(String storageKey, String fingerprint, TypeReference<T> responseType, Supplier<T> action) {
+        long deadline = System.currentTimeMillis() + waitTimeoutMillis;
+        while (true) {
+            CompletableFuture<IdempotencyRecord> created = new CompletableFuture<>();
+            CompletableFuture<IdempotencyRecord> existing = localRecords.asMap().putIfAbsent(storageKey, created);
+            if (existing == null) {
+                try {
+                    T response = action.get();
+                    created.complete(new IdempotencyRecord(fingerprint, write(response)));
+                    return response;
+                } catch (RuntimeException ex) {
+                    localRecords.asMap().remove(storageKey, created);
+                    created.completeExceptionally(ex);
+                    throw ex;
+                }
+            }
+            try {
+                IdempotencyRecord record = existing.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+                checkFingerprint(record, fingerprint);
+                return read(record.getResponse(), responseType);
+            } catch (ExecutionException ex) {
+                // первый запрос завершился ошибкой и освободил ключ, пробуем выполнить сами
+            } catch (TimeoutException ex) {
+                throw new RequestInProgressException("Запрос с этим ключом идемпотентности ещё выполняется");
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new RequestInProgressException("Запрос с этим ключом идемпотентности ещё выполняется");
+            }
+        }
+    }
+
+    private void checkFingerprint(IdempotencyRecord record, String fingerprint) {
+        if (!fingerprint.equals(record.getFingerprint())) {
+            throw new DisparateDataException("Ключ идемпотентности уже использован для другого запроса");
+        }
+    }
+
+    private void awaitUntil(long deadline) {
+        if (System.currentTimeMillis() >= deadline) {
+            throw new RequestInProgressException("Запрос с этим ключом идемпотентности ещё выполняется");
+        }
+        try {
+            Thread.sleep(pollMillis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RequestInProgressException("Запрос с этим ключом идемпотентности ещё выполняется");
+        }
+    }
+
+    private String write(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Не удалось сериализовать результат запроса", ex);
+        }
+    }
+
+    private <T> T read(String value, TypeReference<T> type) {
+        try {
+            return objectMapper.readValue(value, type);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Не удалось прочитать сохранённый результат запроса", ex);
+        }
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    static class IdempotencyRecord {
+
+        private String fingerprint;
+
+        private String response;
+
+    }
+
+}
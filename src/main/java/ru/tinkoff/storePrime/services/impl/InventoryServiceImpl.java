@@ -0,0 +1,49 @@
+package ru.tinkoff.storePrime.services.impl;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.tinkoff.storePrime.repository.ProductRepository;
+import ru.tinkoff.storePrime.services.InventoryService;
+import ru.tinkoff.storePrime.services.utils.FlashSaleStock;
+
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+@RequiredArgsConstructor
+@Service
+public class InventoryServiceImpl implements InventoryService {
+
+    private final ProductRepository productRepository;
+
+    private final FlashSaleStock flashSaleStock;
+
+    /**
+     * Списывает остатки условным update: строка уменьшается, только если товара хватает,
+     * поэтому параллельные заказы не могут продать больше, чем есть. Товары обходятся по возрастанию id,
+     * чтобы заказы с пересекающимися наборами товаров брали блокировки строк в одном порядке и не взаимоблокировались.
+     * Вызывается внутри транзакции оформления заказа: если вернулись товары, которых не хватило,
+     * вызывающий код должен откатить транзакцию, иначе успешные списания останутся в силе.
+     * Товары распродажи списываются из общих счётчиков в Redis, см. {@link FlashSaleStock}.
+     *
+     * @return идентификаторы товаров, по которым списание не удалось
+     */
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Set<Long> reserve(Map<Long, Integer> quantitiesByProductId) {
+        Set<Long> failedProductIds = new LinkedHashSet<>();
+        new TreeMap<>(quantitiesByProductId).forEach((productId, quantity) -> {
+            boolean reserved = flashSaleStock.isFlashSaleProduct(productId)
+                    ? flashSaleStock.tryReserve(productId, quantity)
+                    : productRepository.decrementAmount(productId, quantity) > 0;
+            if (!reserved) {
+                failedProductIds.add(productId);
+            }
+        });
+        return failedProductIds;
+    }
+
+}
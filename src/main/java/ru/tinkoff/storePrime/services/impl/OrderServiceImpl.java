@@ -2,27 +2,44 @@ package ru.tinkoff.storePrime.services.impl;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import ru.tinkoff.storePrime.converters.OrderConverter;
 import ru.tinkoff.storePrime.dto.order.OrderDto;
+import ru.tinkoff.storePrime.dto.order.OrderStatusChangeResultDto;
+import ru.tinkoff.storePrime.dto.order.OrdersCursorPage;
 import ru.tinkoff.storePrime.exceptions.DisparateDataException;
 import ru.tinkoff.storePrime.exceptions.ForbiddenException;
 import ru.tinkoff.storePrime.exceptions.not_found.CartItemNotFoundException;
 import ru.tinkoff.storePrime.exceptions.not_found.OrderNotFoundException;
 import ru.tinkoff.storePrime.models.CartItem;
 import ru.tinkoff.storePrime.models.Order;
+import ru.tinkoff.storePrime.models.OrderLine;
 import ru.tinkoff.storePrime.models.Product;
 import ru.tinkoff.storePrime.models.user.Customer;
 import ru.tinkoff.storePrime.repository.CartRepository;
 import ru.tinkoff.storePrime.repository.OrderRepository;
 import ru.tinkoff.storePrime.services.CustomerService;
+import ru.tinkoff.storePrime.services.InventoryService;
 import ru.tinkoff.storePrime.services.OrderService;
+import ru.tinkoff.storePrime.services.OutboxService;
 import ru.tinkoff.storePrime.services.SellerService;
 import ru.tinkoff.storePrime.services.utils.AccountCachingUtil;
+import ru.tinkoff.storePrime.services.utils.CheckoutMetrics;
+import ru.tinkoff.storePrime.repository.impl.OrderCursor;
+import ru.tinkoff.storePrime.services.utils.RedisCartStore;
 
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @RequiredArgsConstructor
 @Service
@@ -36,50 +53,141 @@ public class OrderServiceImpl implements OrderService {
 
     private final CustomerService customerService;
 
+    private final InventoryService inventoryService;
+
+    private final OutboxService outboxService;
+
+    private final CheckoutMetrics checkoutMetrics;
+
+    private final RedisCartStore redisCartStore;
+
     private AccountCachingUtil accountCachingUtil;
 
+    @Value("${default.page-size}")
+    private int defaultPageSize;
+
+    @Value("${orders.status-batch.max-size}")
+    private int maxStatusBatchSize;
+
     @Autowired
     public void setAccountCachingUtil(AccountCachingUtil accountCachingUtil) {
         this.accountCachingUtil = accountCachingUtil;
     }
 
+    /**
+     * Позиции корзины группируются по продавцам: на каждого продавца создаётся один заказ с позициями,
+     * сумма которого считается здесь же и дальше не пересчитывается.
+     */
     @Override
     @Transactional
     public List<OrderDto> createNewOrders(Long customerId, List<Long> cartItemIdList) {
-        Customer customer = accountCachingUtil.getCustomer(customerId);
-        List<CartItem> items = new ArrayList<>();
-        for (Long itemId: cartItemIdList) {
-            CartItem newItem = cartRepository.findById(itemId).orElseThrow(
-                    () -> new CartItemNotFoundException("Товар в корзине с id " + itemId + " не найден"));
-            if (!newItem.getCustomer().getId().equals(customerId)) {
-                throw new ForbiddenException("Этот пользователь не имеет прав на обращение к элементу корзины с id " + itemId);
-            } else {
-                items.add(newItem);
-            }
+        CheckoutMetrics.Trace trace = checkoutMetrics.start("checkout");
+        trace.cartSize(cartItemIdList.size());
+        try {
+            List<OrderDto> orderDtos = createNewOrders(customerId, cartItemIdList, trace);
+            trace.success();
+            return orderDtos;
+        } finally {
+            trace.finish();
         }
+    }
+
+    private List<OrderDto> createNewOrders(Long customerId, List<Long> cartItemIdList, CheckoutMetrics.Trace trace) {
+        Customer customer = accountCachingUtil.getCustomerReference(customerId);
+        redisCartStore.flushCustomer(customerId);
+        List<CartItem> items = getCustomerCartItems(customerId, cartItemIdList);
+        trace.stage("load_items");
 
-        List<Order> orders = new ArrayList<>();
-        for (CartItem item: items) {
+        Map<Long, Order> ordersBySellerId = new LinkedHashMap<>();
+        for (CartItem item : items) {
             Product product = item.getProduct();
-            if (product.getAmount() < item.getQuantity()) {
-                throw new DisparateDataException("Запрос товара в заказе превышает его реальное колчество");
-            }
-            double price = product.getPrice()*item.getQuantity();
-            sellerService.updateCardBalanceBySellerId(product.getSeller().getId(), price*0.97);
-            customerService.updateCardBalance(item.getCustomer().getId(), -1*price);
-            product.setAmount(product.getAmount() - item.getQuantity());
-            Order order = Order.builder()
+            Order order = ordersBySellerId.computeIfAbsent(product.getSeller().getId(), sellerId -> Order.builder()
                     .status(Order.Status.CREATED)
+                    .customer(customer)
+                    .seller(product.getSeller())
+                    .totalPrice(0.0)
+                    .build());
+            order.addLine(OrderLine.builder()
                     .product(product)
                     .quantity(item.getQuantity())
-                    .customer(customer)
-                    .build();
-            Order newOrder = orderRepository.save(order);
-            orders.add(newOrder);
+                    .price(product.getPrice())
+                    .build());
+            order.setTotalPrice(order.getTotalPrice() + product.getPrice() * item.getQuantity());
+        }
+
+        double totalPrice = 0;
+        Map<Long, Double> sellerReplenishments = new LinkedHashMap<>();
+        for (Map.Entry<Long, Order> sellerOrder : ordersBySellerId.entrySet()) {
+            totalPrice += sellerOrder.getValue().getTotalPrice();
+            sellerReplenishments.put(sellerOrder.getKey(), sellerOrder.getValue().getTotalPrice() * 0.97);
+        }
+        trace.stage("build_orders");
+
+        customerService.updateCardBalance(customerId, -totalPrice);
+        trace.stage("customer_balance");
+        sellerService.updateCardBalancesBySellerIds(sellerReplenishments);
+        trace.stage("seller_balance");
+
+        Map<Long, Integer> requestedAmounts = reserveProducts(items);
+        trace.stage("reserve_stock");
+
+        List<Order> newOrders = orderRepository.saveAll(new ArrayList<>(ordersBySellerId.values()));
+        trace.stage("save_orders");
+        outboxService.orderCreated(newOrders);
+        trace.stage("outbox");
+        cartRepository.deleteAllInBatch(items);
+        redisCartStore.removeCheckedOut(customerId, requestedAmounts.keySet());
+        trace.stage("cart_delete");
+        List<OrderDto> orderDtos = OrderConverter.getOrderDtoFromOrder(newOrders);
+        orderDtos.forEach(orderDto -> orderDto.getLines().forEach(line -> line.getProduct().setAmount(
+                line.getProduct().getAmount() - requestedAmounts.get(line.getProduct().getId()))));
+        trace.stage("convert");
+        return orderDtos;
+    }
+
+    /**
+     * Списывает остатки атомарно в базе, а не через сущность: загруженный в начале оформления
+     * {@code Product.amount} к этому моменту мог устареть. Списание идёт последним шагом перед вставкой заказов,
+     * чтобы блокировки популярных товаров держались как можно меньше.
+     *
+     * @return количество, списанное по каждому товару
+     */
+    private Map<Long, Integer> reserveProducts(List<CartItem> items) {
+        Map<Long, Integer> requestedAmounts = new LinkedHashMap<>();
+        for (CartItem item : items) {
+            requestedAmounts.merge(item.getProduct().getId(), item.getQuantity(), Integer::sum);
         }
+        Set<Long> failedProductIds = inventoryService.reserve(requestedAmounts);
+        if (!failedProductIds.isEmpty()) {
+            List<Long> failedItemIds = items.stream()
+                    .filter(item -> failedProductIds.contains(item.getProduct().getId()))
+                    .map(CartItem::getId)
+                    .collect(Collectors.toList());
+            throw new DisparateDataException("Запрос товара в заказе превышает его реальное колчество для элементов корзины с id " + failedItemIds);
+        }
+        return requestedAmounts;
+    }
 
-        cartRepository.deleteAll(items);
-        return OrderConverter.getOrderDtoFromOrder(orders);
+    /**
+     * Загружает элементы корзины вместе с товарами и продавцами одним запросом
+     * и сохраняет порядок, в котором их передал покупатель.
+     */
+    private List<CartItem> getCustomerCartItems(Long customerId, List<Long> cartItemIdList) {
+        Set<Long> itemIds = new LinkedHashSet<>(cartItemIdList);
+        Map<Long, CartItem> itemsById = cartRepository.findAllWithProductsByIdIn(itemIds).stream()
+                .collect(Collectors.toMap(CartItem::getId, Function.identity()));
+        List<CartItem> items = new ArrayList<>();
+        for (Long itemId : itemIds) {
+            CartItem item = itemsById.get(itemId);
+            if (item == null) {
+                throw new CartItemNotFoundException("Товар в корзине с id " + itemId + " не найден");
+            }
+            if (!item.getCustomer().getId().equals(customerId)) {
+                throw new ForbiddenException("Этот пользователь не имеет прав на обращение к элементу корзины с id " + itemId);
+            }
+            items.add(item);
+        }
+        return items;
     }
 
     @Override
@@ -93,38 +201,134 @@ public class OrderServiceImpl implements OrderService {
     }
 
     @Override
-    public OrderDto changeStatus(Long sellerId, Long orderId, String status) {
-        Order.Status newStatus;
-        if (status.equals("CANCELLED")) {
-            throw new ForbiddenException("У вас нет прав на это действие");
+    @Transactional(readOnly = true)
+    public OrdersCursorPage getOrdersOfCustomerAfter(Long customerId, String after, Order.Status status,
+                                                     LocalDateTime from, LocalDateTime to) {
+        return getOrdersAfter(customerId, null, after, status, from, to);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public OrdersCursorPage getOrdersOfSellerAfter(Long sellerId, String after, Order.Status status,
+                                                   LocalDateTime from, LocalDateTime to) {
+        return getOrdersAfter(null, sellerId, after, status, from, to);
+    }
+
+    private OrdersCursorPage getOrdersAfter(Long customerId, Long sellerId, String after, Order.Status status,
+                                            LocalDateTime from, LocalDateTime to) {
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new DisparateDataException("Начало периода позже его окончания");
         }
-        try {
-            newStatus = Order.Status.valueOf(status);
-        } catch (IllegalArgumentException ex) {
-            throw new DisparateDataException("Данный статус не относится к возможным статусам заказа");
+        OrderCursor cursor = after == null ? null : OrderCursor.decode(after);
+
+        List<Order> orders = orderRepository.findPageAfter(customerId, sellerId, status, from, to, cursor, defaultPageSize + 1);
+        String nextCursor = null;
+        if (orders.size() > defaultPageSize) {
+            orders = orders.subList(0, defaultPageSize);
+            nextCursor = OrderCursor.after(orders.get(orders.size() - 1)).encode();
         }
+
+        return OrdersCursorPage.builder()
+                .orders(OrderConverter.getOrderDtoFromOrder(orders))
+                .nextCursor(nextCursor)
+                .build();
+    }
+
+    @Override
+    @Transactional
+    public OrderDto changeStatus(Long sellerId, Long orderId, String status) {
+        Order.Status newStatus = parseSellerStatus(status);
         Order order = orderRepository.findById(orderId).orElseThrow(() -> new OrderNotFoundException("Заказ с id "+ orderId +" не найден"));
-        Product product = order.getProduct();
-        if (product.getSeller().getId().equals(sellerId)) {
+        if (order.getSeller().getId().equals(sellerId)) {
             order.setStatus(newStatus);
             Order updatedOrder = orderRepository.save(order);
+            outboxService.orderStatusChanged(updatedOrder);
             return OrderConverter.getOrderDtoFromOrder(updatedOrder);
         }
         throw new ForbiddenException("Этот продавец не имеет права на редактирование заказа с id " + orderId);
     }
 
+    /**
+     * Права проверяются одним запросом по {@code seller_id} заказов, сами статусы меняются одним UPDATE,
+     * без загрузки заказов, товаров и продавцов.
+     */
+    @Override
+    @Transactional
+    public List<OrderStatusChangeResultDto> changeStatuses(Long sellerId, List<Long> orderIds, String status) {
+        Order.Status newStatus = parseSellerStatus(status);
+        Set<Long> ids = new LinkedHashSet<>(orderIds);
+        if (ids.size() > maxStatusBatchSize) {
+            throw new DisparateDataException("За один запрос можно изменить не более " + maxStatusBatchSize + " заказов");
+        }
+        Map<Long, Long> sellerIdsByOrderId = new HashMap<>();
+        if (!ids.isEmpty()) {
+            orderRepository.findOwnersByIdIn(ids).forEach(owner -> sellerIdsByOrderId.put(owner.getId(), owner.getSellerId()));
+        }
+
+        List<Long> ownedIds = new ArrayList<>();
+        List<OrderStatusChangeResultDto> results = new ArrayList<>();
+        for (Long orderId : ids) {
+            OrderStatusChangeResultDto.Result result;
+            if (!sellerIdsByOrderId.containsKey(orderId)) {
+                result = OrderStatusChangeResultDto.Result.NOT_FOUND;
+            } else if (sellerId.equals(sellerIdsByOrderId.get(orderId))) {
+                ownedIds.add(orderId);
+                result = OrderStatusChangeResultDto.Result.UPDATED;
+            } else {
+                result = OrderStatusChangeResultDto.Result.FORBIDDEN;
+            }
+            results.add(OrderStatusChangeResultDto.builder().orderId(orderId).result(result).build());
+        }
+
+        if (!ownedIds.isEmpty()) {
+            orderRepository.updateStatusByIdInAndSellerId(ownedIds, sellerId, newStatus);
+            outboxService.orderStatusesChanged(sellerId, ownedIds, newStatus);
+        }
+        return results;
+    }
+
+    private Order.Status parseSellerStatus(String status) {
+        if (status.equals("CANCELLED")) {
+            throw new ForbiddenException("У вас нет прав на это действие");
+        }
+        try {
+            return Order.Status.valueOf(status);
+        } catch (IllegalArgumentException ex) {
+            throw new DisparateDataException("Данный статус не относится к возможным статусам заказа");
+        }
+    }
+
     @Override
     @Transactional
     public OrderDto cancelOrder(Long customerId, Long orderId) {
+        CheckoutMetrics.Trace trace = checkoutMetrics.start("cancel");
+        try {
+            OrderDto orderDto = cancelOrder(customerId, orderId, trace);
+            trace.success();
+            return orderDto;
+        } finally {
+            trace.finish();
+        }
+    }
+
+    private OrderDto cancelOrder(Long customerId, Long orderId, CheckoutMetrics.Trace trace) {
         Order order = orderRepository.findById(orderId).orElseThrow(() -> new OrderNotFoundException("Этот заказ не найден"));
-        if (order.getCustomer().getId().equals(customerId)) {
-            order.setStatus(Order.Status.CANCELLED);
-            Double orderPrice = order.getProduct().getPrice();
-            customerService.updateCardBalance(customerId, orderPrice);
-            sellerService.updateCardBalanceBySellerId(order.getProduct().getSeller().getId(), -orderPrice*0.97);
-            return OrderConverter.getOrderDtoFromOrder(orderRepository.save(order));
-        }
-        throw new ForbiddenException("Этот покупатель не имеет права на редактирование заказа с id " + orderId);
+        if (!order.getCustomer().getId().equals(customerId)) {
+            throw new ForbiddenException("Этот покупатель не имеет права на редактирование заказа с id " + orderId);
+        }
+        trace.cartSize(order.getLines().size());
+        trace.stage("load_order");
+        order.setStatus(Order.Status.CANCELLED);
+        Double orderPrice = order.getTotalPrice();
+        customerService.updateCardBalance(customerId, orderPrice);
+        trace.stage("customer_balance");
+        sellerService.updateCardBalanceBySellerId(order.getSeller().getId(), -orderPrice*0.97);
+        trace.stage("seller_balance");
+        Order updatedOrder = orderRepository.save(order);
+        trace.stage("save_order");
+        outboxService.orderCancelled(updatedOrder, orderPrice);
+        trace.stage("outbox");
+        return OrderConverter.getOrderDtoFromOrder(updatedOrder);
     }
 
     @Override
@@ -0,0 +1,163 @@
+package ru.tinkoff.storePrime.services.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.concurrent.ListenableFuture;
+import ru.tinkoff.storePrime.dto.order.event.OrderCancelledEvent;
+import ru.tinkoff.storePrime.dto.order.event.OrderCreatedEvent;
+import ru.tinkoff.storePrime.dto.order.event.OrderStatusChangedEvent;
+import ru.tinkoff.storePrime.models.Order;
+import ru.tinkoff.storePrime.models.OutboxEvent;
+import ru.tinkoff.storePrime.repository.OutboxEventRepository;
+import ru.tinkoff.storePrime.services.OutboxService;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+
+/**
+ * Transactional outbox для событий заказов. События пишутся в outbox_event в той же транзакции,
+ * что и сам заказ, а фоновый relay пачками отправляет их в Kafka и удаляет отправленные.
+ * Доставка «хотя бы один раз»: при сбое посреди пачки она уйдёт повторно, поэтому потребители
+ * должны отбрасывать дубли по заголовку eventId.
+ * Relay на всех экземплярах один: пачку публикует тот, кто взял advisory-блокировку, иначе два экземпляра
+ * могли бы отправить события одного заказа в обратном порядке.
+ */
+@RequiredArgsConstructor
+@Service
+public class OutboxServiceImpl implements OutboxService {
+
+    public static final String EVENT_ID_HEADER = "eventId";
+
+    public static final String EVENT_TYPE_HEADER = "eventType";
+
+    private static final long RELAY_LOCK_KEY = 0x6f7574626f78L;
+
+    private final OutboxEventRepository outboxEventRepository;
+
+    private final KafkaTemplate<String, String> kafkaTemplate;
+
+    private final ObjectMapper objectMapper;
+
+    @Value("${orders.events.topic}")
+    private String topic;
+
+    @Value("${orders.events.relay-batch-size}")
+    private int relayBatchSize;
+
+    @Value("${orders.events.send-timeout-millis}")
+    private long sendTimeoutMillis;
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void orderCreated(List<Order> orders) {
+        outboxEventRepository.saveAll(orders.stream()
+                .map(order -> event(order.getId(), OutboxEvent.Type.ORDER_CREATED, OrderCreatedEvent.builder()
+                        .orderId(order.getId())
+                        .customerId(order.getCustomer().getId())
+                        .sellerId(order.getSeller().getId())
+                        .lines(order.getLines().stream()
+                                .map(line -> OrderCreatedEvent.Line.builder()
+                                        .productId(line.getProduct().getId())
+                                        .quantity(line.getQuantity())
+                                        .price(line.getPrice())
+                                        .build())
+                                .collect(Collectors.toList()))
+                        .totalPrice(order.getTotalPrice())
+                        .build()))
+                .collect(Collectors.toList()));
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void orderStatusChanged(Order order) {
+        outboxEventRepository.save(event(order.getId(), OutboxEvent.Type.ORDER_STATUS_CHANGED, OrderStatusChangedEvent.builder()
+                .orderId(order.getId())
+                .sellerId(order.getSeller().getId())
+                .status(order.getStatus().name())
+                .build()));
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void orderStatusesChanged(Long sellerId, Collection<Long> orderIds, Order.Status status) {
+        outboxEventRepository.saveAll(orderIds.stream()
+                .map(orderId -> event(orderId, OutboxEvent.Type.ORDER_STATUS_CHANGED, OrderStatusChangedEvent.builder()
+                        .orderId(orderId)
+                        .sellerId(sellerId)
+                        .status(status.name())
+                        .build()))
+                .collect(Collectors.toList()));
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void orderCancelled(Order order, Double refund) {
+        outboxEventRepository.save(event(order.getId(), OutboxEvent.Type.ORDER_CANCELLED, OrderCancelledEvent.builder()
+                .orderId(order.getId())
+                .customerId(order.getCustomer().getId())
+                .sellerId(order.getSeller().getId())
+                .refund(refund)
+                .build()));
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${orders.events.relay-delay-millis}")
+    @Transactional
+    public int publishPending() {
+        if (!outboxEventRepository.tryLockRelay(RELAY_LOCK_KEY)) {
+            return 0;
+        }
+        List<OutboxEvent> events = outboxEventRepository.lockPending(relayBatchSize);
+        if (events.isEmpty()) {
+            return 0;
+        }
+        List<ListenableFuture<SendResult<String, String>>> results = new ArrayList<>(events.size());
+        for (OutboxEvent event : events) {
+            ProducerRecord<String, String> record = new ProducerRecord<>(topic, String.valueOf(event.getAggregateId()), event.getPayload());
+            record.headers().add(EVENT_ID_HEADER, String.valueOf(event.getId()).getBytes(StandardCharsets.UTF_8));
+            record.headers().add(EVENT_TYPE_HEADER, event.getEventType().name().getBytes(StandardCharsets.UTF_8));
+            results.add(kafkaTemplate.send(record));
+        }
+        kafkaTemplate.flush();
+        for (ListenableFuture<SendResult<String, String>> result : results) {
+            try {
+                result.get(sendTimeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Публикация событий заказов прервана", e);
+            } catch (ExecutionException | TimeoutException e) {
+                throw new IllegalStateException("Не удалось опубликовать события заказов", e);
+            }
+        }
+        outboxEventRepository.deleteAllInBatch(events);
+        return events.size();
+    }
+
+    private OutboxEvent event(Long orderId, OutboxEvent.Type type, Object payload) {
+        try {
+            return OutboxEvent.builder()
+                    .aggregateId(orderId)
+                    .eventType(type)
+                    .payload(objectMapper.writeValueAsString(payload))
+                    .build();
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Не удалось сериализовать событие " + type, e);
+        }
+    }
+
+}
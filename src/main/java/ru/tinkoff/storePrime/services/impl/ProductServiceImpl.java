@@ -8,6 +8,8 @@ import org.springframework.stereotype.Service;
 import ru.tinkoff.storePrime.converters.ProductConverter;
 import ru.tinkoff.storePrime.dto.product.NewOrUpdateProductDto;
 import ru.tinkoff.storePrime.dto.product.ProductDto;
+import ru.tinkoff.storePrime.dto.product.ProductSortOrder;
+import ru.tinkoff.storePrime.dto.product.ProductsCursorPage;
 import ru.tinkoff.storePrime.dto.product.ProductsPage;
 import ru.tinkoff.storePrime.exceptions.DisparateDataException;
 import ru.tinkoff.storePrime.exceptions.ForbiddenException;
@@ -18,18 +20,28 @@ import ru.tinkoff.storePrime.models.Product;
 import ru.tinkoff.storePrime.repository.CategoryRepository;
 import ru.tinkoff.storePrime.repository.ProductRepository;
 import ru.tinkoff.storePrime.repository.SellerRepository;
+import ru.tinkoff.storePrime.repository.impl.ProductCursor;
 import ru.tinkoff.storePrime.services.ProductService;
+import ru.tinkoff.storePrime.services.utils.ProductIdPool;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 @RequiredArgsConstructor
 @Service
 public class ProductServiceImpl implements ProductService {
 
+    private static final Pattern SEARCH_TERM_SPLITTER = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private static final int RANDOM_SAMPLE_ATTEMPTS = 3;
+
     @Value("${default.page-size}")
     private int defaultPageSize;
 
@@ -39,6 +51,8 @@ public class ProductServiceImpl implements ProductService {
 
     private final SellerRepository sellerRepository;
 
+    private final ProductIdPool productIdPool;
+
     @Override
     public ProductDto getProductById(Long id) {
         return ProductConverter.getProductDtoFromProduct(productRepository.findById(id).orElseThrow(() -> new ProductNotFoundException("Товар с id " + id + " не найден")));
@@ -57,7 +71,9 @@ public class ProductServiceImpl implements ProductService {
                 .flatMap(name -> categoryRepository.findByName(name).stream())
                 .collect(Collectors.toList());
         newProduct.setCategories(categories);
-        return ProductConverter.getProductDtoFromProduct(productRepository.save(newProduct));
+        Product savedProduct = productRepository.save(newProduct);
+        productIdPool.add(savedProduct.getId());
+        return ProductConverter.getProductDtoFromProduct(savedProduct);
     }
 
     @Override
@@ -83,6 +99,7 @@ public class ProductServiceImpl implements ProductService {
             throw new ForbiddenException("Товар с id " + productId + " не доступен для удаления данным продавцом");
         }
         productRepository.delete(product);
+        productIdPool.removeAll(List.of(productId));
     }
 
     @Override
@@ -153,22 +170,59 @@ public class ProductServiceImpl implements ProductService {
     }
 
     @Override
-    public List<ProductDto> getAllProductsByContentString(String content) {
-        return ProductConverter.getProductDtoFromProduct(productRepository.findAllByContent("%" + content + "%"));
+    public ProductsCursorPage getProductsAfter(String after, ProductSortOrder sortOrder, Double minPrice, Double maxPrice,
+                                               String category, Long sellerId, boolean withTotal) {
+        if (minPrice != null && maxPrice != null && minPrice > maxPrice) {
+            throw new DisparateDataException("Минимальная цена больше максимальной");
+        }
+        Category categoryToSearch = null;
+        if (category != null) {
+            categoryToSearch = categoryRepository.findByName(category)
+                    .orElseThrow(() -> new DisparateDataException("Эта категория не существует"));
+        }
+        ProductCursor cursor = after == null ? null : ProductCursor.decode(after, sortOrder);
+
+        List<Product> products = productRepository.findPageAfter(sellerId, minPrice, maxPrice, categoryToSearch,
+                sortOrder, cursor, defaultPageSize + 1);
+        String nextCursor = null;
+        if (products.size() > defaultPageSize) {
+            products = products.subList(0, defaultPageSize);
+            nextCursor = ProductCursor.after(products.get(products.size() - 1), sortOrder).encode();
+        }
+
+        return ProductsCursorPage.builder()
+                .products(ProductConverter.getProductDtoFromProduct(products))
+                .nextCursor(nextCursor)
+                .totalCount(withTotal ? productRepository.countByFilter(sellerId, minPrice, maxPrice, categoryToSearch) : null)
+                .build();
+    }
+
+    @Override
+    public List<ProductDto> getAllProductsByContentString(String content, int page) {
+        String query = toSearchQuery(content);
+        if (query.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return ProductConverter.getProductDtoFromProduct(
+                productRepository.searchByContent(query, defaultPageSize, page * defaultPageSize));
     }
 
     @Override
     public ProductDto getOneProduct() {
-        return ProductConverter.getProductDtoFromProduct(productRepository.findRandomProduct().orElseThrow(() -> new ProductNotFoundException("Товар не найден")));
+        List<Product> products = findRandomProducts(1);
+        if (products.isEmpty()) {
+            throw new ProductNotFoundException("Товар не найден");
+        }
+        return ProductConverter.getProductDtoFromProduct(products.get(0));
     }
 
     @Override
     public List<ProductDto> getRandomProducts(Integer amount) {
-        return ProductConverter.getProductDtoFromProduct(productRepository.findRandomProducts(amount));
+        return ProductConverter.getProductDtoFromProduct(findRandomProducts(amount));
     }
 
     @Override
-    public List<ProductDto> getAllProductsByContentStringAndCategory(String content, String category) {
+    public List<ProductDto> getAllProductsByContentStringAndCategory(String content, String category, int page) {
         Optional<Category> categoryToSearch = categoryRepository.findByName(category);
         Long categoryId;
         if (categoryToSearch.isPresent()) {
@@ -176,7 +230,48 @@ public class ProductServiceImpl implements ProductService {
         } else {
             throw new DisparateDataException("Эта категория не существует");
         }
-        return ProductConverter.getProductDtoFromProduct(productRepository.findAllByContentAndCategory("%" + content + "%", categoryId));
+        String query = toSearchQuery(content);
+        if (query.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return ProductConverter.getProductDtoFromProduct(
+                productRepository.searchByContentAndCategory(query, categoryId, defaultPageSize, page * defaultPageSize));
+    }
+
+    /**
+     * Выбирает случайные товары через пул идентификаторов. Товары, удалённые после последнего
+     * обновления пула, отбрасываются и добираются повторной выборкой.
+     */
+    private List<Product> findRandomProducts(int amount) {
+        List<Product> products = new ArrayList<>();
+        Set<Long> seenIds = new HashSet<>();
+        for (int attempt = 0; attempt < RANDOM_SAMPLE_ATTEMPTS && products.size() < amount; attempt++) {
+            Set<Long> ids = productIdPool.sample(amount - products.size(), seenIds);
+            if (ids.isEmpty()) {
+                break;
+            }
+            List<Product> found = productRepository.findAllById(ids);
+            seenIds.addAll(ids);
+            if (found.size() < ids.size()) {
+                Set<Long> missingIds = new HashSet<>(ids);
+                found.forEach(product -> missingIds.remove(product.getId()));
+                productIdPool.removeAll(missingIds);
+            }
+            products.addAll(found);
+        }
+        Collections.shuffle(products);
+        return products;
+    }
+
+    /**
+     * Преобразует пользовательскую строку в tsquery: каждое слово ищется по префиксу,
+     * слова объединяются через AND. Служебные символы tsquery отбрасываются.
+     */
+    private static String toSearchQuery(String content) {
+        return SEARCH_TERM_SPLITTER.splitAsStream(content.toLowerCase())
+                .filter(term -> !term.isEmpty())
+                .map(term -> term + ":*")
+                .collect(Collectors.joining(" & "));
     }
 
 
@@ -2,23 +2,26 @@ package ru.tinkoff.storePrime.services.impl;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.cache.CacheManager;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import ru.tinkoff.storePrime.converters.SellerConverter;
 import ru.tinkoff.storePrime.dto.user.NewOrUpdateSellerDto;
 import ru.tinkoff.storePrime.dto.user.SellerDto;
-import ru.tinkoff.storePrime.exceptions.PaymentImpossibleException;
 import ru.tinkoff.storePrime.exceptions.not_found.SellerNotFoundException;
 import ru.tinkoff.storePrime.models.user.Account;
 import ru.tinkoff.storePrime.models.user.Seller;
+import ru.tinkoff.storePrime.models.user.SellerSnapshot;
 import ru.tinkoff.storePrime.repository.SellerRepository;
 import ru.tinkoff.storePrime.security.exceptions.AlreadyExistsException;
+import ru.tinkoff.storePrime.security.utils.AccountRevocationRegistry;
 import ru.tinkoff.storePrime.services.AccountService;
+import ru.tinkoff.storePrime.services.BalanceService;
 import ru.tinkoff.storePrime.services.SellerService;
 import ru.tinkoff.storePrime.services.utils.AccountCachingUtil;
 
-import java.util.Objects;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 @RequiredArgsConstructor
 @Service
@@ -26,12 +29,14 @@ public class SellerServiceImpl implements SellerService {
 
     private final SellerRepository sellerRepository;
 
-    private final CacheManager cacheManager;
-
     private final AccountService accountService;
 
     private final PasswordEncoder passwordEncoder;
 
+    private final AccountRevocationRegistry accountRevocationRegistry;
+
+    private final BalanceService balanceService;
+
     private AccountCachingUtil accountCachingUtil;
 
     @Autowired
@@ -50,17 +55,17 @@ public class SellerServiceImpl implements SellerService {
 
     @Override
     public void deleteSeller(Long sellerId) {
-        Seller seller = accountCachingUtil.getSeller(sellerId);
+        Seller seller = sellerRepository.findById(sellerId)
+                .orElseThrow(() -> new SellerNotFoundException("Продавец с id " + sellerId + " не найден"));
         seller.setState(Account.State.DELETED);
         sellerRepository.save(seller);
-        if (cacheManager.getCache("account") != null) {
-            Objects.requireNonNull(cacheManager.getCache("account")).invalidate();
-        }
+        accountRevocationRegistry.revoke(Account.Role.SELLER, sellerId);
+        accountCachingUtil.putSeller(seller);
     }
 
     @Override
     public SellerDto updateSeller(Long sellerId, NewOrUpdateSellerDto updatedSellerDto) {
-        Seller seller = accountCachingUtil.getSeller(sellerId);
+        SellerSnapshot seller = accountCachingUtil.getSeller(sellerId);
         if (!updatedSellerDto.getEmail().equals(seller.getEmail())) {
             if (accountService.isEmailUsed(updatedSellerDto.getEmail())) {
                 throw new AlreadyExistsException("Account with email <" + updatedSellerDto.getEmail() + "> already exists");
@@ -70,36 +75,50 @@ public class SellerServiceImpl implements SellerService {
             throw new SellerNotFoundException("Продавец с id " + sellerId + " удален");
         }
         Seller newSeller = SellerConverter.getSellerFromNewOrUpdateSellerDto(updatedSellerDto);
-        newSeller.setPasswordHash(passwordEncoder.encode(seller.getPasswordHash()));
+        newSeller.setPasswordHash(passwordEncoder.encode(updatedSellerDto.getPasswordHash()));
         newSeller.setId(sellerId);
-        newSeller.setCardBalance(seller.getCardBalance());
         Seller updatedSeller = sellerRepository.save(newSeller);
-        if (cacheManager.getCache("account") != null) {
-            Objects.requireNonNull(cacheManager.getCache("account")).put(updatedSeller.getId(), updatedSeller);
-        }
-        return SellerConverter.getSellerDtoFromSeller(updatedSeller);
+        accountCachingUtil.putSeller(updatedSeller);
+        SellerDto sellerDto = SellerConverter.getSellerDtoFromSeller(updatedSeller);
+        sellerDto.setCardBalance(balanceService.getBalance(Account.Role.SELLER, sellerId));
+        return sellerDto;
     }
 
     @Override
     public SellerDto getSeller(Long sellerId) {
-        Seller seller = accountCachingUtil.getSeller(sellerId);
+        SellerSnapshot seller = accountCachingUtil.getSeller(sellerId);
         if (Account.State.DELETED.equals(seller.getState())) {
             throw new SellerNotFoundException("Пользователь не найден");
         }
-        return SellerConverter.getSellerDtoFromSeller(seller);
+        SellerDto sellerDto = SellerConverter.getSellerDtoFromSellerSnapshot(seller);
+        sellerDto.setCardBalance(balanceService.getBalance(Account.Role.SELLER, sellerId));
+        return sellerDto;
     }
 
     @Override
+    @Transactional
     public void updateCardBalanceBySellerId(Long sellerId, Double replenishment) {
-        Seller seller = sellerRepository.findById(sellerId).orElseThrow(() ->
-                new SellerNotFoundException("Продавец с id " + sellerId + " не найден"));
-        if (seller.getCardBalance() + replenishment < 0) {
-            throw new PaymentImpossibleException("Недостаточно средств");
+        if (replenishment < 0) {
+            balanceService.debit(Account.Role.SELLER, sellerId, -replenishment);
+        } else {
+            balanceService.credit(Account.Role.SELLER, sellerId, replenishment);
         }
-        seller.setCardBalance(seller.getCardBalance() + replenishment);
-        Seller updatedSeller = sellerRepository.save(seller);
-        if (cacheManager.getCache("account") != null) {
-            Objects.requireNonNull(cacheManager.getCache("account")).put(updatedSeller.getId(), updatedSeller);
+    }
+
+    /**
+     * Зачисления уходят в журнал одной пачкой вставок без блокировки строк продавцов;
+     * списания, если они есть, проверяют остаток каждого продавца по отдельности.
+     */
+    @Override
+    @Transactional
+    public void updateCardBalancesBySellerIds(Map<Long, Double> replenishments) {
+        Map<Boolean, Map<Long, Double>> byDirection = replenishments.entrySet().stream()
+                .collect(Collectors.partitioningBy(replenishment -> replenishment.getValue() < 0,
+                        Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue)));
+        byDirection.get(true).forEach((sellerId, replenishment) ->
+                balanceService.debit(Account.Role.SELLER, sellerId, -replenishment));
+        if (!byDirection.get(false).isEmpty()) {
+            balanceService.creditAll(Account.Role.SELLER, byDirection.get(false));
         }
     }
 
@@ -0,0 +1,93 @@
+package ru.tinkoff.storePrime.services.utils;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.tinkoff.storePrime.repository.CartRepository;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Удаляет позиции корзин, не менявшиеся дольше cart.cleanup.max-age-millis. Удаление идёт порциями
+ * по cart.cleanup.batch-size, каждая в своей транзакции, так что блокировки строк держатся недолго;
+ * за один запуск удаляется не больше cart.cleanup.max-batches порций, остаток дочищает следующий запуск.
+ * Запуск выполняет только экземпляр, взявший блокировку в Redis; если Redis недоступен, запуск пропускается.
+ * При хранении корзин в Redis cart.redis.ttl-millis должен быть меньше cart.cleanup.max-age-millis,
+ * иначе в Redis может остаться корзина, позиции которой в базе уже удалены.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AbandonedCartSweeper {
+
+    private static final String LOCK_KEY = "cart:cleanup:lock";
+
+    private static final RedisScript<Long> RELEASE_LOCK_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('get', KEYS[1]) == ARGV[1] then
+                return redis.call('del', KEYS[1])
+            end
+            return 0
+            """, Long.class);
+
+    private final CartRepository cartRepository;
+
+    private final RedisTemplate<String, String> redisTemplate;
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${cart.cleanup.max-age-millis}")
+    private long maxAgeMillis;
+
+    @Value("${cart.cleanup.batch-size}")
+    private int batchSize;
+
+    @Value("${cart.cleanup.max-batches}")
+    private int maxBatches;
+
+    @Value("${cart.cleanup.lock-ttl-millis}")
+    private long lockTtlMillis;
+
+    /**
+     * @return количество удалённых позиций
+     */
+    @Scheduled(fixedDelayString = "${cart.cleanup.delay-millis}", initialDelayString = "${cart.cleanup.delay-millis}")
+    public int sweep() {
+        String token = UUID.randomUUID().toString();
+        try {
+            if (!Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(LOCK_KEY, token, Duration.ofMillis(lockTtlMillis)))) {
+                return 0;
+            }
+        } catch (RuntimeException ex) {
+            log.warn("Redis недоступен, очистка брошенных корзин пропущена: {}", ex.getMessage());
+            return 0;
+        }
+
+        Timer.Sample sample = Timer.start(meterRegistry);
+        int removed = 0;
+        try {
+            LocalDateTime cutoff = LocalDateTime.now().minus(Duration.ofMillis(maxAgeMillis));
+            int batches = 0;
+            int deleted;
+            do {
+                deleted = cartRepository.deleteUpdatedBefore(cutoff, batchSize);
+                removed += deleted;
+            } while (deleted == batchSize && ++batches < maxBatches);
+            return removed;
+        } finally {
+            sample.stop(meterRegistry.timer("cart.cleanup.duration"));
+            meterRegistry.counter("cart.cleanup.removed").increment(removed);
+            redisTemplate.execute(RELEASE_LOCK_SCRIPT, List.of(LOCK_KEY), token);
+        }
+    }
+
+}
@@ -3,20 +3,35 @@ package ru.tinkoff.storePrime.services.utils;
 import lombok.RequiredArgsConstructor;
 import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
-import org.springframework.cache.support.SimpleValueWrapper;
 import org.springframework.stereotype.Component;
 import ru.tinkoff.storePrime.exceptions.not_found.CustomerNotFoundException;
 import ru.tinkoff.storePrime.exceptions.not_found.SellerNotFoundException;
 import ru.tinkoff.storePrime.models.user.Customer;
+import ru.tinkoff.storePrime.models.user.CustomerSnapshot;
 import ru.tinkoff.storePrime.models.user.Seller;
+import ru.tinkoff.storePrime.models.user.SellerSnapshot;
 import ru.tinkoff.storePrime.repository.CustomerRepository;
 import ru.tinkoff.storePrime.repository.SellerRepository;
 
+import java.util.function.Supplier;
 
+/**
+ * Доступ к кэшам аккаунтов. Покупатели и продавцы лежат в разных кэшах ({@value #CUSTOMER_CACHE}
+ * и {@value #SELLER_CACHE}) в виде неизменяемых снимков; при промахе снимок загружается через кэш
+ * ({@link Cache#get(Object, java.util.concurrent.Callable)}): параллельные промахи ждут одну загрузку,
+ * а снимок, прочитанный до изменения аккаунта, не попадает в кэш.
+ * Перезаписывают кэш только put и evict после изменений.
+ * Сущности из кэша не выдаются: для связей берётся ссылка {@link CustomerRepository#getReferenceById},
+ * а изменения сохраняются в базу и заменяют снимок целиком.
+ */
 @Component
 @RequiredArgsConstructor
 public class AccountCachingUtil {
 
+    public static final String CUSTOMER_CACHE = "customer";
+
+    public static final String SELLER_CACHE = "seller";
+
     private final CacheManager cacheManager;
 
     private final CustomerRepository customerRepository;
@@ -24,38 +39,70 @@ public class AccountCachingUtil {
     private final SellerRepository sellerRepository;
 
 
-    public Customer getCustomer(Long customerId) {
-        try {
-            Cache.ValueWrapper customerWrapper = cacheManager.getCache("account").get(customerId);
-            if (customerWrapper instanceof SimpleValueWrapper) {
-                Object customerObject = customerWrapper.get();
-                if (customerObject instanceof Customer) {
-                    return (Customer) customerObject;
-                }
-            }
-        } catch (NullPointerException ignored) {
+    public CustomerSnapshot getCustomer(Long customerId) {
+        return load(cacheManager.getCache(CUSTOMER_CACHE), customerId, () -> customerRepository.findById(customerId)
+                .map(CustomerSnapshot::from)
+                .orElseThrow(() -> new CustomerNotFoundException("Покупатель с id " + customerId + " не найден")));
+    }
+
+    /**
+     * @return незагруженная ссылка на покупателя для связей новых сущностей
+     */
+    public Customer getCustomerReference(Long customerId) {
+        getCustomer(customerId);
+        return customerRepository.getReferenceById(customerId);
+    }
+
+    public void putCustomer(Customer customer) {
+        Cache cache = cacheManager.getCache(CUSTOMER_CACHE);
+        if (cache != null) {
+            cache.put(customer.getId(), CustomerSnapshot.from(customer));
         }
-        return customerRepository.findById(customerId)
-                .orElseThrow(() -> new CustomerNotFoundException("Покупатель с id " + customerId + " не найден"));
     }
 
+    public void evictCustomer(Long customerId) {
+        Cache cache = cacheManager.getCache(CUSTOMER_CACHE);
+        if (cache != null) {
+            cache.evict(customerId);
+        }
+    }
 
 
-    public Seller getSeller(Long sellerId) {
-        try {
-            Cache.ValueWrapper customerWrapper = cacheManager.getCache("account").get(sellerId);
-            if (customerWrapper instanceof SimpleValueWrapper) {
-                Object sellerObject = customerWrapper.get();
-                if (sellerObject instanceof Seller) {
-                    return (Seller) sellerObject;
-                }
-            }
-        } catch (NullPointerException ignored) {
+    public SellerSnapshot getSeller(Long sellerId) {
+        return load(cacheManager.getCache(SELLER_CACHE), sellerId, () -> sellerRepository.findById(sellerId)
+                .map(SellerSnapshot::from)
+                .orElseThrow(() -> new SellerNotFoundException("Продавец с id " + sellerId + " не найден")));
+    }
+
+    public void putSeller(Seller seller) {
+        Cache cache = cacheManager.getCache(SELLER_CACHE);
+        if (cache != null) {
+            cache.put(seller.getId(), SellerSnapshot.from(seller));
         }
-        return sellerRepository.findById(sellerId)
-                .orElseThrow(() -> new SellerNotFoundException("Продавец с id " + sellerId + " не найден"));
     }
 
+    public void evictSeller(Long sellerId) {
+        Cache cache = cacheManager.getCache(SELLER_CACHE);
+        if (cache != null) {
+            cache.evict(sellerId);
+        }
+    }
 
+    /**
+     * Исключения загрузчика (например, аккаунт не найден) пробрасываются как есть, без обёртки кэша.
+     */
+    private static <T> T load(Cache cache, Long id, Supplier<T> loader) {
+        if (cache == null) {
+            return loader.get();
+        }
+        try {
+            return cache.get(id, loader::get);
+        } catch (Cache.ValueRetrievalException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw ex;
+        }
+    }
 
 }
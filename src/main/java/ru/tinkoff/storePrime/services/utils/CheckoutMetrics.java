@@ -0,0 +1,133 @@
+package ru.tinkoff.storePrime.services.utils;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Замеры этапов оформления и отмены заказа. Для каждой операции пишутся таймеры:
+ * {@code checkout.stage} по этапам и {@code checkout.duration} целиком, с тегами операции,
+ * корзины по размеру и исхода; операции дольше orders.checkout.slow-threshold-millis
+ * считаются в {@code checkout.slow} и пишутся в лог с разбивкой по этапам.
+ * Если операция идёт в транзакции, итог записывается после её завершения, а время фиксации
+ * (включая отложенные вставки) попадает в этап {@code commit}.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CheckoutMetrics {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${orders.checkout.slow-threshold-millis}")
+    private long slowThresholdMillis;
+
+    public Trace start(String operation) {
+        return new Trace(operation);
+    }
+
+    static String cartSizeBucket(int size) {
+        if (size <= 1) {
+            return "1";
+        } else if (size <= 5) {
+            return "2-5";
+        } else if (size <= 10) {
+            return "6-10";
+        } else if (size <= 25) {
+            return "11-25";
+        }
+        return "26+";
+    }
+
+    public class Trace {
+
+        private final String operation;
+
+        private final long startedAt = System.nanoTime();
+
+        private long stageStartedAt = startedAt;
+
+        private final Map<String, Long> stageNanos = new LinkedHashMap<>();
+
+        private int cartSize;
+
+        private boolean succeeded;
+
+        private Trace(String operation) {
+            this.operation = operation;
+        }
+
+        public void cartSize(int cartSize) {
+            this.cartSize = cartSize;
+        }
+
+        /**
+         * Закрывает этап, начавшийся с предыдущей отметки (или с начала операции).
+         */
+        public void stage(String name) {
+            long now = System.nanoTime();
+            stageNanos.merge(name, now - stageStartedAt, Long::sum);
+            stageStartedAt = now;
+        }
+
+        public void success() {
+            succeeded = true;
+        }
+
+        /**
+         * Вызывается в finally: без предшествующего {@link #success()} операция считается неуспешной.
+         */
+        public void finish() {
+            if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+                record(succeeded);
+                return;
+            }
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    stage("commit");
+                    record(succeeded && status == STATUS_COMMITTED);
+                }
+            });
+        }
+
+        private void record(boolean success) {
+            long totalNanos = System.nanoTime() - startedAt;
+            String bucket = cartSizeBucket(cartSize);
+            String outcome = success ? "success" : "failure";
+            stageNanos.forEach((stage, nanos) -> Timer.builder("checkout.stage")
+                    .tag("operation", operation)
+                    .tag("stage", stage)
+                    .tag("cart.size", bucket)
+                    .register(meterRegistry)
+                    .record(nanos, TimeUnit.NANOSECONDS));
+            Timer.builder("checkout.duration")
+                    .tag("operation", operation)
+                    .tag("cart.size", bucket)
+                    .tag("outcome", outcome)
+                    .register(meterRegistry)
+                    .record(totalNanos, TimeUnit.NANOSECONDS);
+
+            long totalMillis = TimeUnit.NANOSECONDS.toMillis(totalNanos);
+            if (totalMillis >= slowThresholdMillis) {
+                meterRegistry.counter("checkout.slow", "operation", operation, "cart.size", bucket).increment();
+                log.warn("Медленная операция с заказом: operation={} outcome={} cartSize={} totalMs={} stagesMs={}",
+                        operation, outcome, cartSize, totalMillis, stageNanos.entrySet().stream()
+                                .map(entry -> entry.getKey() + "=" + TimeUnit.NANOSECONDS.toMillis(entry.getValue()))
+                                .collect(Collectors.joining(",", "{", "}")));
+            }
+        }
+
+    }
+
+}
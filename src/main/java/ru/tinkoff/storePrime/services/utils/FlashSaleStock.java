@@ -0,0 +1,264 @@
+package ru.tinkoff.storePrime.services.utils;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.tinkoff.storePrime.models.FlashSaleReservation;
+import ru.tinkoff.storePrime.repository.FlashSaleReservationRepository;
+import ru.tinkoff.storePrime.repository.ProductRepository;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * Режим распродажи: остатки товаров из orders.flash-sale.product-ids держатся в общем для всех экземпляров
+ * хэше Redis {@value #STOCK_KEY} и списываются Lua-скриптом, без блокировки строки товара. Каждое списание
+ * записывается в журнал flash_sale_reservation в транзакции заказа, а журнал пачками переносится в product.amount.
+ * Перенос и сверку выполняет только экземпляр, держащий аренду {@value #OWNER_KEY}; остальные только резервируют.
+ * После каждого переноса счётчики сверяются с базой: изменение product.amount, не объяснимое перенесённым
+ * журналом (поставка, правка товара продавцом), прибавляется к счётчику. Остаток на момент последней сверки
+ * хранится рядом, в {@value #KNOWN_AMOUNTS_KEY}, и обновляется вместе со счётчиком одним скриптом,
+ * поэтому при смене владельца сверка продолжается с того же места.
+ * Счётчик создаётся только после того, как журнал перенесён полностью, и пока его нет, товар не резервируется.
+ * Продать больше остатка можно, только если его уменьшили в базе ниже уже проданного; тогда остаток обнуляется.
+ * Пока Redis недоступен, товары распродажи не резервируются.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FlashSaleStock {
+
+    private static final String STOCK_KEY = "flash-sale:stock";
+
+    private static final String KNOWN_AMOUNTS_KEY = "flash-sale:known-amounts";
+
+    private static final String OWNER_KEY = "flash-sale:owner";
+
+    private static final RedisScript<Long> RESERVE_SCRIPT = new DefaultRedisScript<>("""
+            local available = tonumber(redis.call('hget', KEYS[1], ARGV[1]))
+            if available == nil or available < tonumber(ARGV[2]) then
+                return 0
+            end
+            redis.call('hincrby', KEYS[1], ARGV[1], -tonumber(ARGV[2]))
+            return 1
+            """, Long.class);
+
+    private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('hexists', KEYS[1], ARGV[1]) == 1 then
+                redis.call('hincrby', KEYS[1], ARGV[1], ARGV[2])
+            end
+            return 1
+            """, Long.class);
+
+    /**
+     * ARGV: товар, прочитанный остаток, перенесённое количество, перенесён ли журнал полностью.
+     * Возвращает изменение счётчика, не объяснимое переносом.
+     */
+    private static final RedisScript<Long> RECONCILE_SCRIPT = new DefaultRedisScript<>("""
+            local known = redis.call('hget', KEYS[2], ARGV[1])
+            local delta = 0
+            if redis.call('hexists', KEYS[1], ARGV[1]) == 0 then
+                if ARGV[4] ~= '1' then
+                    return 0
+                end
+                redis.call('hset', KEYS[1], ARGV[1], ARGV[2])
+            elseif known then
+                delta = tonumber(ARGV[2]) - tonumber(known) + tonumber(ARGV[3])
+                if delta ~= 0 then
+                    redis.call('hincrby', KEYS[1], ARGV[1], delta)
+                end
+            end
+            redis.call('hset', KEYS[2], ARGV[1], ARGV[2])
+            return delta
+            """, Long.class);
+
+    private static final RedisScript<Long> RENEW_LEASE_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('get', KEYS[1]) == ARGV[1] then
+                redis.call('pexpire', KEYS[1], ARGV[2])
+                return 1
+            end
+            if redis.call('set', KEYS[1], ARGV[1], 'NX', 'PX', ARGV[2]) then
+                return 1
+            end
+            return 0
+            """, Long.class);
+
+    private final ProductRepository productRepository;
+
+    private final FlashSaleReservationRepository reservationRepository;
+
+    private final RedisTemplate<String, String> redisTemplate;
+
+    private final String ownerToken = UUID.randomUUID().toString();
+
+    @Value("${orders.flash-sale.product-ids}")
+    private Set<Long> flashSaleProductIds;
+
+    @Value("${orders.flash-sale.flush-batch-size}")
+    private int flushBatchSize;
+
+    @Value("${orders.flash-sale.owner-lease-millis}")
+    private long ownerLeaseMillis;
+
+    /**
+     * При старте журнал переносится полностью, чтобы можно было создать недостающие счётчики.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void initialize() {
+        flushIfOwner(true);
+    }
+
+    public boolean isFlashSaleProduct(Long productId) {
+        return flashSaleProductIds.contains(productId);
+    }
+
+    /**
+     * Резервирует товар в Redis и пишет запись журнала в текущую транзакцию.
+     * Если транзакция не будет зафиксирована, резерв возвращается в счётчик.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public boolean tryReserve(Long productId, int quantity) {
+        Long reserved;
+        try {
+            reserved = redisTemplate.execute(RESERVE_SCRIPT, List.of(STOCK_KEY),
+                    productId.toString(), String.valueOf(quantity));
+        } catch (RuntimeException ex) {
+            log.warn("Redis недоступен, товар {} распродажи не зарезервирован: {}", productId, ex.getMessage());
+            return false;
+        }
+        if (reserved == null || reserved == 0) {
+            return false;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    release(productId, quantity);
+                }
+            }
+        });
+        reservationRepository.save(FlashSaleReservation.builder()
+                .productId(productId)
+                .quantity(quantity)
+                .build());
+        return true;
+    }
+
+    @Scheduled(fixedDelayString = "${orders.flash-sale.flush-millis}")
+    @Transactional
+    public void flush() {
+        flushIfOwner(false);
+    }
+
+    private void flushIfOwner(boolean drain) {
+        if (flashSaleProductIds.isEmpty() || !renewLease()) {
+            return;
+        }
+        Map<Long, Integer> flushed = new HashMap<>();
+        int count;
+        do {
+            count = flushBatch(flushed);
+        } while (drain && count == flushBatchSize);
+        boolean drained = count < flushBatchSize;
+        Map<Long, Integer> amounts = readAmounts();
+        afterCommit(() -> reconcile(amounts, flushed, drained));
+    }
+
+    /**
+     * Счётчик уже учитывает перенесённые списания, поэтому к нему прибавляется только разница между
+     * прочитанным остатком и ожидаемым после переноса. Резервы, ещё не попавшие в журнал, сверка не трогает.
+     * Если Redis недоступен, остаток на момент сверки не обновляется, и разница учтётся при следующей.
+     */
+    private void reconcile(Map<Long, Integer> amounts, Map<Long, Integer> flushed, boolean drained) {
+        amounts.forEach((productId, amount) -> {
+            try {
+                Long delta = redisTemplate.execute(RECONCILE_SCRIPT, List.of(STOCK_KEY, KNOWN_AMOUNTS_KEY),
+                        productId.toString(), String.valueOf(amount),
+                        String.valueOf(flushed.getOrDefault(productId, 0)), drained ? "1" : "0");
+                if (delta != null && delta != 0) {
+                    log.info("Остаток товара {} на распродаже изменён в базе на {}", productId, delta);
+                }
+            } catch (RuntimeException ex) {
+                log.warn("Redis недоступен, остаток товара {} на распродаже не сверен: {}", productId, ex.getMessage());
+            }
+        });
+    }
+
+    private int flushBatch(Map<Long, Integer> flushed) {
+        List<FlashSaleReservation> reservations = reservationRepository.lockPending(flushBatchSize);
+        if (reservations.isEmpty()) {
+            return 0;
+        }
+        Map<Long, Integer> quantities = new TreeMap<>();
+        reservations.forEach(reservation -> quantities.merge(reservation.getProductId(), reservation.getQuantity(), Integer::sum));
+        quantities.forEach((productId, quantity) -> {
+            if (productRepository.decrementAmount(productId, quantity) == 0) {
+                log.warn("Остаток товара {} уменьшен в базе ниже проданного на распродаже, остаток обнулён", productId);
+                productRepository.clearAmount(productId);
+            }
+            flushed.merge(productId, quantity, Integer::sum);
+        });
+        reservationRepository.deleteAllInBatch(reservations);
+        return reservations.size();
+    }
+
+    private Map<Long, Integer> readAmounts() {
+        Map<Long, Integer> amounts = new HashMap<>();
+        productRepository.findPriceAndStockByIdIn(flashSaleProductIds).forEach(product ->
+                amounts.put(product.getId(), product.getAmount() == null ? 0 : product.getAmount()));
+        return amounts;
+    }
+
+    private void release(Long productId, int quantity) {
+        try {
+            redisTemplate.execute(RELEASE_SCRIPT, List.of(STOCK_KEY), productId.toString(), String.valueOf(quantity));
+        } catch (RuntimeException ex) {
+            log.warn("Redis недоступен, резерв товара {} распродажи не возвращён: {}", productId, ex.getMessage());
+        }
+    }
+
+    /**
+     * Аренда продлевается при каждом переносе, поэтому владелец меняется, только если он перестал переносить журнал.
+     */
+    private boolean renewLease() {
+        try {
+            Long renewed = redisTemplate.execute(RENEW_LEASE_SCRIPT, List.of(OWNER_KEY),
+                    ownerToken, String.valueOf(ownerLeaseMillis));
+            return renewed != null && renewed == 1;
+        } catch (RuntimeException ex) {
+            log.warn("Redis недоступен, перенос журнала распродажи пропущен: {}", ex.getMessage());
+            return false;
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+}
@@ -0,0 +1,169 @@
+package ru.tinkoff.storePrime.services.utils;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Пул идентификаторов товаров для случайной выборки без сортировки таблицы. Пул ограничен
+ * products.random.pool-size: пока каталог в него помещается, в пуле лежат все товары, иначе — случайная
+ * выборка страниц таблицы ({@code TABLESAMPLE SYSTEM}), так что память и нагрузка на базу не растут
+ * вместе с каталогом. Пул перечитывается в фоне, между перечитываниями поддерживается при добавлении
+ * и удалении товаров. Размер каталога берётся из статистики планировщика ({@code pg_class.reltuples}).
+ */
+@Component
+@RequiredArgsConstructor
+public class ProductIdPool {
+
+    private static final String ESTIMATE_SQL = "select greatest(reltuples, 0)::bigint from pg_class where oid = 'product'::regclass";
+
+    private static final String LOAD_SQL = "select id from product limit ?";
+
+    private static final String SAMPLE_SQL = "select id from product tablesample system (?)";
+
+    /**
+     * Запас выборки: SYSTEM берёт страницы целиком, и строк может прийти меньше расчётного.
+     */
+    private static final double SAMPLE_MARGIN = 1.5;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${products.random.pool-size}")
+    private int poolSize;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final List<Long> ids = new ArrayList<>();
+
+    private final Map<Long, Integer> positions = new HashMap<>();
+
+    private volatile boolean loaded;
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${products.random.pool-refresh-millis:60000}",
+            initialDelayString = "${products.random.pool-refresh-millis:60000}")
+    public void refresh() {
+        List<Long> actualIds = loadIds();
+        if (actualIds.size() > poolSize) {
+            Collections.shuffle(actualIds, ThreadLocalRandom.current());
+            actualIds = actualIds.subList(0, poolSize);
+        }
+        lock.writeLock().lock();
+        try {
+            ids.clear();
+            positions.clear();
+            actualIds.forEach(this::addUnderLock);
+            loaded = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void add(Long id) {
+        lock.writeLock().lock();
+        try {
+            // в заполненный пул товар попадёт при перечитывании
+            if (ids.size() < poolSize) {
+                addUnderLock(id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeAll(Collection<Long> removedIds) {
+        lock.writeLock().lock();
+        try {
+            removedIds.forEach(this::removeUnderLock);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Возвращает до {@code amount} различных идентификаторов, выбранных равновероятно.
+     * Идентификаторы из {@code excluded} в выборку не попадают.
+     */
+    public Set<Long> sample(int amount, Collection<Long> excluded) {
+        if (!loaded) {
+            refresh();
+        }
+        lock.readLock().lock();
+        try {
+            int available = ids.size() - (int) excluded.stream().filter(positions::containsKey).count();
+            int size = Math.min(amount, available);
+            Set<Long> sample = new LinkedHashSet<>(size);
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            if (size * 2 > ids.size()) {
+                List<Long> candidates = new ArrayList<>(ids);
+                candidates.removeAll(excluded);
+                Collections.shuffle(candidates, random);
+                sample.addAll(candidates.subList(0, size));
+                return sample;
+            }
+            while (sample.size() < size) {
+                Long id = ids.get(random.nextInt(ids.size()));
+                if (!excluded.contains(id)) {
+                    sample.add(id);
+                }
+            }
+            return sample;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Каталог, который помещается в пул, читается целиком; больший — выборкой страниц с запасом.
+     */
+    private List<Long> loadIds() {
+        long estimated = Objects.requireNonNull(jdbcTemplate.queryForObject(ESTIMATE_SQL, Long.class));
+        if (estimated <= poolSize) {
+            List<Long> all = jdbcTemplate.queryForList(LOAD_SQL, Long.class, poolSize + 1);
+            if (all.size() <= poolSize) {
+                return new ArrayList<>(all);
+            }
+            // статистика устарела: таблица больше, чем считает планировщик
+            estimated = all.size();
+        }
+        double percent = Math.min(100.0, 100.0 * SAMPLE_MARGIN * poolSize / estimated);
+        return new ArrayList<>(jdbcTemplate.queryForList(SAMPLE_SQL, Long.class, percent));
+    }
+
+    private void addUnderLock(Long id) {
+        if (!positions.containsKey(id)) {
+            positions.put(id, ids.size());
+            ids.add(id);
+        }
+    }
+
+    private void removeUnderLock(Long id) {
+        Integer position = positions.remove(id);
+        if (position == null) {
+            return;
+        }
+        Long last = ids.remove(ids.size() - 1);
+        if (position < ids.size()) {
+            ids.set(position, last);
+            positions.put(last, position);
+        }
+    }
+
+}
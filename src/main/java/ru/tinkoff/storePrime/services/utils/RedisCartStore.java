@@ -0,0 +1,354 @@
+package ru.tinkoff.storePrime.services.utils;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.tinkoff.storePrime.repository.CartRepository;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Хранение корзин в Redis (cart.storage=redis). Корзина покупателя — хеш cart:{customerId}
+ * «товар -> id позиции и количество»; изменения пишутся только в Redis, а покупатель отмечается в хеше cart:dirty
+ * счётчиком изменений. Отмеченные корзины периодически пачками переносятся в cart_item: позиции вставляются
+ * или обновляются по id, строки, которых в корзине больше нет, удаляются. Отметка снимается после фиксации
+ * транзакции и только если корзину с тех пор не меняли, поэтому изменения, пришедшие во время записи, не теряются.
+ * Id позиции выдаётся из той же последовательности, что и у сущностей, и не меняется при записи в базу,
+ * поэтому по нему можно оформлять заказ. Перед оформлением корзина покупателя записывается в транзакции заказа,
+ * см. {@link #flushCustomer}.
+ * Изменения применяются скриптом и только к загруженной корзине (с полем {@value #LOADED_FIELD}): если хеш
+ * истёк между загрузкой и записью, корзина загружается заново, а не создаётся частичная, которую запись в базу
+ * приняла бы за полную.
+ */
+@Component
+@RequiredArgsConstructor
+public class RedisCartStore {
+
+    private static final String KEY_PREFIX = "cart:";
+
+    private static final String DIRTY_KEY = "cart:dirty";
+
+    /**
+     * Служебное поле: отличает загруженную пустую корзину от незагруженной.
+     */
+    private static final String LOADED_FIELD = "_";
+
+    private static final RedisScript<Long> CLEAR_DIRTY_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('hget', KEYS[1], ARGV[1]) == ARGV[2] then
+                return redis.call('hdel', KEYS[1], ARGV[1])
+            end
+            return 0
+            """, Long.class);
+
+    /**
+     * KEYS: корзина, cart:dirty. ARGV: id покупателя, TTL корзины, число записываемых полей,
+     * пары «поле, значение», затем удаляемые поля.
+     *
+     * @return число изменённых полей или -1, если корзина не загружена
+     */
+    private static final RedisScript<Long> UPDATE_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('hexists', KEYS[1], '_') == 0 then
+                return -1
+            end
+            local puts = tonumber(ARGV[3])
+            local changed = 0
+            for i = 4, 3 + 2 * puts, 2 do
+                redis.call('hset', KEYS[1], ARGV[i], ARGV[i + 1])
+                changed = changed + 1
+            end
+            for i = 4 + 2 * puts, #ARGV do
+                changed = changed + redis.call('hdel', KEYS[1], ARGV[i])
+            end
+            redis.call('hincrby', KEYS[2], ARGV[1], 1)
+            redis.call('pexpire', KEYS[1], ARGV[2])
+            return changed
+            """, Long.class);
+
+    private static final String UPSERT_SQL = """
+            insert into cart_item (id, customer_id, product_id, quantity, updated_at)
+            select ?, ?, ?, ?, now() where exists (select 1 from product where id = ?)
+            on conflict (id) do update set quantity = excluded.quantity, updated_at = excluded.updated_at
+            """;
+
+    private static final String DELETE_MISSING_SQL = "delete from cart_item where customer_id = ? and id <> all (?::bigint[])";
+
+    private final RedisTemplate<String, String> redisTemplate;
+
+    private final CartRepository cartRepository;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final SequenceIdAllocator idAllocator;
+
+    @Value("${cart.storage}")
+    private String storage;
+
+    @Value("${cart.redis.ttl-millis}")
+    private long ttlMillis;
+
+    @Value("${cart.redis.flush-batch-size}")
+    private int flushBatchSize;
+
+    public boolean isEnabled() {
+        return "redis".equals(storage);
+    }
+
+    /**
+     * @return позиции корзины по id товара
+     */
+    public Map<Long, Entry> getEntries(Long customerId) {
+        Map<String, String> fields;
+        do {
+            fields = hashOperations().entries(ensureLoaded(customerId));
+        } while (!fields.containsKey(LOADED_FIELD));
+        Map<Long, Entry> entries = new LinkedHashMap<>();
+        fields.forEach((field, value) -> {
+            if (!LOADED_FIELD.equals(field)) {
+                entries.put(Long.valueOf(field), Entry.parse(value));
+            }
+        });
+        return entries;
+    }
+
+    public Entry put(Long customerId, Long productId, int quantity) {
+        while (true) {
+            String current = hashOperations().get(ensureLoaded(customerId), productId.toString());
+            Entry entry = new Entry(current == null ? idAllocator.nextId() : Entry.parse(current).getItemId(), quantity);
+            if (update(customerId, Map.of(productId.toString(), entry.format()), List.of()) >= 0) {
+                return entry;
+            }
+        }
+    }
+
+    public boolean remove(Long customerId, Long productId) {
+        while (true) {
+            ensureLoaded(customerId);
+            long removed = update(customerId, Map.of(), List.of(productId.toString()));
+            if (removed >= 0) {
+                return removed > 0;
+            }
+        }
+    }
+
+    /**
+     * Применяет изменения одной пачкой команд; количество 0 удаляет товар из корзины.
+     *
+     * @return позиции корзины после изменений по id товара
+     */
+    public Map<Long, Entry> putAll(Long customerId, Map<Long, Integer> quantitiesByProductId) {
+        while (true) {
+            Map<Long, Entry> entries = tryPutAll(customerId, quantitiesByProductId);
+            if (entries != null) {
+                return entries;
+            }
+        }
+    }
+
+    /**
+     * @return позиции корзины после изменений или null, если корзина истекла до записи
+     */
+    private Map<Long, Entry> tryPutAll(Long customerId, Map<Long, Integer> quantitiesByProductId) {
+        Map<Long, Entry> entries = getEntries(customerId);
+        Map<String, String> updated = new HashMap<>();
+        List<String> removed = new ArrayList<>();
+        quantitiesByProductId.forEach((productId, quantity) -> {
+            if (quantity == 0) {
+                if (entries.remove(productId) != null) {
+                    removed.add(productId.toString());
+                }
+                return;
+            }
+            Entry current = entries.get(productId);
+            Entry entry = new Entry(current == null ? idAllocator.nextId() : current.getItemId(), quantity);
+            entries.put(productId, entry);
+            updated.put(productId.toString(), entry.format());
+        });
+        if ((!updated.isEmpty() || !removed.isEmpty()) && update(customerId, updated, removed) < 0) {
+            return null;
+        }
+        return entries;
+    }
+
+    /**
+     * Записывает корзину покупателя в cart_item в текущей транзакции, чтобы оформление заказа видело
+     * те же позиции, что и покупатель. Если транзакция откатится, корзина останется отмеченной.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void flushCustomer(Long customerId) {
+        if (!isEnabled()) {
+            return;
+        }
+        String version = hashOperations().get(DIRTY_KEY, customerId.toString());
+        if (version != null) {
+            write(Map.of(customerId.toString(), version));
+        }
+    }
+
+    /**
+     * Убирает оформленные товары из корзины после фиксации заказа. Строки cart_item заказ удаляет сам;
+     * корзина всё равно отмечается, чтобы запись, начатая до фиксации, не вернула эти строки насовсем.
+     * Незагруженную корзину трогать не нужно: она загрузится из базы уже без этих строк.
+     */
+    public void removeCheckedOut(Long customerId, Collection<Long> productIds) {
+        if (!isEnabled() || productIds.isEmpty()) {
+            return;
+        }
+        afterCommit(() -> update(customerId, Map.of(),
+                productIds.stream().map(Object::toString).collect(Collectors.toList())));
+    }
+
+    /**
+     * За один запуск записывается не больше cart.redis.flush-batch-size корзин.
+     */
+    @Scheduled(fixedDelayString = "${cart.redis.flush-delay-millis}")
+    @Transactional
+    public void flush() {
+        if (!isEnabled()) {
+            return;
+        }
+        Map<String, String> versions = new LinkedHashMap<>();
+        try (Cursor<Map.Entry<String, String>> cursor = hashOperations().scan(DIRTY_KEY,
+                ScanOptions.scanOptions().count(flushBatchSize).build())) {
+            while (cursor.hasNext() && versions.size() < flushBatchSize) {
+                Map.Entry<String, String> dirty = cursor.next();
+                versions.put(dirty.getKey(), dirty.getValue());
+            }
+        }
+        if (!versions.isEmpty()) {
+            write(versions);
+        }
+    }
+
+    private void write(Map<String, String> versionsByCustomerId) {
+        List<Object[]> upserts = new ArrayList<>();
+        List<Object[]> deletes = new ArrayList<>();
+        versionsByCustomerId.keySet().forEach(customerId -> {
+            Map<String, String> fields = hashOperations().entries(KEY_PREFIX + customerId);
+            if (fields.isEmpty()) {
+                // корзина истекла в Redis: в базе остаётся последнее записанное состояние
+                return;
+            }
+            boolean loaded = fields.containsKey(LOADED_FIELD);
+            List<Long> itemIds = new ArrayList<>();
+            fields.forEach((field, value) -> {
+                if (!LOADED_FIELD.equals(field)) {
+                    Entry entry = Entry.parse(value);
+                    Long productId = Long.valueOf(field);
+                    itemIds.add(entry.getItemId());
+                    upserts.add(new Object[]{entry.getItemId(), Long.valueOf(customerId), productId, entry.getQuantity(), productId});
+                }
+            });
+            if (!loaded) {
+                // частичный хеш без отметки загрузки: в нём не все позиции, удалять по нему нельзя
+                return;
+            }
+            deletes.add(new Object[]{Long.valueOf(customerId),
+                    itemIds.stream().map(Object::toString).collect(Collectors.joining(",", "{", "}"))});
+        });
+        if (!upserts.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPSERT_SQL, upserts);
+        }
+        if (!deletes.isEmpty()) {
+            jdbcTemplate.batchUpdate(DELETE_MISSING_SQL, deletes);
+        }
+        afterCommit(() -> versionsByCustomerId.forEach((customerId, version) ->
+                redisTemplate.execute(CLEAR_DIRTY_SCRIPT, List.of(DIRTY_KEY), customerId, version)));
+    }
+
+    private String ensureLoaded(Long customerId) {
+        String key = key(customerId);
+        if (hashOperations().hasKey(key, LOADED_FIELD)) {
+            return key;
+        }
+        Map<String, String> fields = new HashMap<>();
+        cartRepository.findEntriesByCustomerId(customerId).forEach(entry -> fields.put(entry.getProductId().toString(),
+                new Entry(entry.getId(), entry.getQuantity()).format()));
+        // putIfAbsent: не затираем изменения, записанные параллельным запросом, пока шла загрузка;
+        // отметка ставится последней, чтобы до неё скрипт изменений не писал в недогруженную корзину
+        fields.forEach((field, value) -> hashOperations().putIfAbsent(key, field, value));
+        hashOperations().putIfAbsent(key, LOADED_FIELD, "1");
+        redisTemplate.expire(key, Duration.ofMillis(ttlMillis));
+        return key;
+    }
+
+    /**
+     * Записывает и удаляет поля загруженной корзины и отмечает её для записи в базу.
+     *
+     * @return число изменённых полей или -1, если корзина не загружена
+     */
+    private long update(Long customerId, Map<String, String> puts, Collection<String> deletes) {
+        List<String> args = new ArrayList<>(3 + 2 * puts.size() + deletes.size());
+        args.add(customerId.toString());
+        args.add(String.valueOf(ttlMillis));
+        args.add(String.valueOf(puts.size()));
+        puts.forEach((field, value) -> {
+            args.add(field);
+            args.add(value);
+        });
+        args.addAll(deletes);
+        Long changed = redisTemplate.execute(UPDATE_SCRIPT, List.of(key(customerId), DIRTY_KEY), args.toArray());
+        return changed == null ? 0 : changed;
+    }
+
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private HashOperations<String, String, String> hashOperations() {
+        return redisTemplate.opsForHash();
+    }
+
+    private static String key(Long customerId) {
+        return KEY_PREFIX + customerId;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Entry {
+
+        private final long itemId;
+
+        private final int quantity;
+
+        private static Entry parse(String value) {
+            int separator = value.indexOf(':');
+            return new Entry(Long.parseLong(value.substring(0, separator)), Integer.parseInt(value.substring(separator + 1)));
+        }
+
+        private String format() {
+            return itemId + ":" + quantity;
+        }
+
+    }
+
+}
@@ -0,0 +1,33 @@
+package ru.tinkoff.storePrime.services.utils;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Выдаёт идентификаторы из hibernate_sequence тем же способом, что и Hibernate
+ * (см. {@link ru.tinkoff.storePrime.models.base.LongIdEntity}): одно обращение к последовательности
+ * резервирует блок из {@value #ALLOCATION_SIZE} значений, заканчивающийся полученным значением.
+ * Нужен для строк, которые пишутся мимо Hibernate, но должны получить id до записи в базу.
+ */
+@Component
+@RequiredArgsConstructor
+public class SequenceIdAllocator {
+
+    static final int ALLOCATION_SIZE = 50;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private long next = 1;
+
+    private long hi;
+
+    public synchronized long nextId() {
+        if (next > hi) {
+            hi = jdbcTemplate.queryForObject("select nextval('hibernate_sequence')", Long.class);
+            next = hi - ALLOCATION_SIZE + 1;
+        }
+        return next++;
+    }
+
+}
@@ -0,0 +1,206 @@
+package ru.tinkoff.storePrime.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.DisplayNameGeneration;
+import org.junit.jupiter.api.DisplayNameGenerator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.Cache.ValueWrapper;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import ru.tinkoff.storePrime.models.user.Account;
+import ru.tinkoff.storePrime.models.user.Customer;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+class TwoLevelCacheTest {
+
+    @Mock
+    private RedisTemplate<String, String> redisTemplate;
+
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+    private Cache<Object, Object> localCache;
+
+    private TwoLevelCache cache;
+
+    @BeforeEach
+    void setUp() {
+        localCache = Caffeine.newBuilder().build();
+        cache = new TwoLevelCache("account", localCache, redisTemplate, objectMapper,
+                Map.of("customer", Customer.class), Long::valueOf, Duration.ofMinutes(30));
+    }
+
+    private Customer customer() {
+        return Customer.builder().id(1L).email("customer@mail.ru").state(Account.State.CONFIRMED).name("Покупатель").build();
+    }
+
+    @Test
+    @DisplayName("Should keep the value locally, drop it from Redis and notify other nodes on put")
+    void put_invalidates_redis_and_publishes_key() {
+        cache.put(1L, customer());
+
+        verify(redisTemplate).execute(any(RedisScript.class), eq(List.of("cache:account:1", "cache-version:account:1")), eq("1800000"));
+        verifyNoInteractions(valueOperations);
+        ArgumentCaptor<String> message = ArgumentCaptor.forClass(String.class);
+        verify(redisTemplate).convertAndSend(eq(TwoLevelCache.INVALIDATION_TOPIC.getTopic()), message.capture());
+        assertTrue(message.getValue().endsWith("|account|1"));
+        assertEquals("customer@mail.ru", ((Customer) localCache.getIfPresent(1L)).getEmail());
+    }
+
+    @Test
+    @DisplayName("Should read Redis on a local miss and keep the value locally")
+    void get_reads_redis_on_local_miss() throws Exception {
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.get("cache:account:1")).thenReturn("customer:" + objectMapper.writeValueAsString(customer()));
+
+        Customer cached = (Customer) cache.get(1L).get();
+
+        assertEquals("customer@mail.ru", cached.getEmail());
+        assertEquals(cached, localCache.getIfPresent(1L));
+    }
+
+    @Test
+    @DisplayName("Should load a missing key once and store it in Redis only if its version is unchanged")
+    void get_with_loader_fills_redis_if_version_unchanged() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.multiGet(List.of("cache:account:1", "cache-version:account:1"))).thenReturn(Arrays.asList(null, "2"));
+        when(redisTemplate.execute(any(RedisScript.class), eq(List.of("cache:account:1", "cache-version:account:1")),
+                eq("2"), anyString(), eq("1800000"))).thenAnswer(invocation -> invocation.getArgument(3));
+        AtomicInteger loads = new AtomicInteger();
+
+        Customer loaded = cache.get(1L, () -> {
+            loads.incrementAndGet();
+            return customer();
+        });
+        Customer cached = cache.get(1L, () -> {
+            loads.incrementAndGet();
+            return customer();
+        });
+
+        assertEquals(1, loads.get());
+        assertEquals(loaded, cached);
+        verify(redisTemplate, never()).convertAndSend(anyString(), any());
+    }
+
+    @Test
+    @DisplayName("Should not cache a value loaded before a concurrent write")
+    void get_with_loader_skips_cache_when_version_changed() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.multiGet(List.of("cache:account:1", "cache-version:account:1"))).thenReturn(Arrays.asList(null, null));
+        when(redisTemplate.execute(any(RedisScript.class), eq(List.of("cache:account:1", "cache-version:account:1")),
+                eq(""), anyString(), eq("1800000"))).thenReturn(null);
+
+        Customer loaded = cache.get(1L, this::customer);
+
+        assertEquals("customer@mail.ru", loaded.getEmail());
+        assertNull(localCache.getIfPresent(1L));
+    }
+
+    @Test
+    @DisplayName("Should let concurrent misses on one key wait for a single load")
+    void concurrent_misses_share_one_load() throws Exception {
+        when(redisTemplate.opsForValue()).thenThrow(new IllegalStateException("connection refused"));
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicReference<Customer> waited = new AtomicReference<>();
+
+        Thread loader = new Thread(() -> cache.get(1L, () -> {
+            loads.incrementAndGet();
+            loading.countDown();
+            release.await();
+            return customer();
+        }));
+        loader.start();
+        loading.await();
+        Thread waiter = new Thread(() -> waited.set(cache.get(1L, () -> {
+            loads.incrementAndGet();
+            return customer();
+        })));
+        waiter.start();
+        while (waiter.getState() != Thread.State.WAITING) {
+            Thread.onSpinWait();
+        }
+        release.countDown();
+        loader.join();
+        waiter.join();
+
+        assertEquals(1, loads.get());
+        assertEquals("customer@mail.ru", waited.get().getEmail());
+    }
+
+    @Test
+    @DisplayName("Should keep a value already stored in Redis instead of overwriting it")
+    void put_if_absent_keeps_stored_value() throws Exception {
+        Customer fresh = customer();
+        fresh.setState(Account.State.DELETED);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.setIfAbsent(eq("cache:account:1"), anyString(), eq(Duration.ofMinutes(30)))).thenReturn(false);
+        when(valueOperations.get("cache:account:1")).thenReturn("customer:" + objectMapper.writeValueAsString(fresh));
+
+        ValueWrapper existing = cache.putIfAbsent(1L, customer());
+
+        assertEquals(Account.State.DELETED, ((Customer) existing.get()).getState());
+        assertEquals(Account.State.DELETED, ((Customer) localCache.getIfPresent(1L)).getState());
+        verify(redisTemplate, never()).convertAndSend(anyString(), any());
+    }
+
+    @Test
+    @DisplayName("Should treat Redis errors as a miss")
+    void get_when_redis_is_down() {
+        when(redisTemplate.opsForValue()).thenThrow(new IllegalStateException("connection refused"));
+
+        assertNull(cache.get(1L));
+    }
+
+    @Test
+    @DisplayName("Should drop a key on invalidation from another node and ignore its own messages")
+    void invalidation_message_evicts_local_key() {
+        cache.put(1L, customer());
+        ArgumentCaptor<String> ownMessage = ArgumentCaptor.forClass(String.class);
+        verify(redisTemplate).convertAndSend(anyString(), ownMessage.capture());
+
+        cache.onMessage(message(ownMessage.getValue()), null);
+        assertEquals(customer().getEmail(), ((Customer) localCache.getIfPresent(1L)).getEmail());
+
+        cache.onMessage(message("other-node|account|1"), null);
+        assertNull(localCache.getIfPresent(1L));
+    }
+
+    private DefaultMessage message(String body) {
+        return new DefaultMessage(TwoLevelCache.INVALIDATION_TOPIC.getTopic().getBytes(StandardCharsets.UTF_8),
+                body.getBytes(StandardCharsets.UTF_8));
+    }
+
+}
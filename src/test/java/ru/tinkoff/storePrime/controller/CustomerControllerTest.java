@@ -27,10 +27,15 @@ import ru.tinkoff.storePrime.models.Location;
 import ru.tinkoff.storePrime.models.user.Customer;
 import ru.tinkoff.storePrime.security.details.UserDetailsImpl;
 import ru.tinkoff.storePrime.services.CustomerService;
+import ru.tinkoff.storePrime.services.IdempotencyService;
 
 import java.time.LocalDate;
+import java.util.function.Supplier;
 
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
@@ -44,9 +49,12 @@ class CustomerControllerTest {
     @Mock
     private CustomerService customerService;
 
+    @Mock
+    private IdempotencyService idempotencyService;
+
     @BeforeEach
     public void setup() {
-        mockMvc = MockMvcBuilders.standaloneSetup(new CustomerController(customerService))
+        mockMvc = MockMvcBuilders.standaloneSetup(new CustomerController(customerService, idempotencyService))
                 .setControllerAdvice(new RestExceptionHandler())
                 .setCustomArgumentResolvers(new HandlerMethodArgumentResolver() {
                     @Override
@@ -266,6 +274,8 @@ class CustomerControllerTest {
                     .build();
             savedCustomer.setCardBalance(savedCustomer.getCardBalance() + 30.0);
             when(customerService.updateCardBalance(eq(1L), eq(30.0))).thenReturn(savedCustomer);
+            when(idempotencyService.execute(eq("balance:1"), isNull(), eq(30.0), any(), any()))
+                    .thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(4).get());
             String jsonPayload = "30";
             mockMvc.perform(MockMvcRequestBuilders.patch("/customer")
                             .contentType(MediaType.APPLICATION_JSON)
@@ -276,6 +286,23 @@ class CustomerControllerTest {
                     .andDo(print());
         }
 
+        @Test
+        void test_update_customer_card_balance_with_idempotency_key() throws Exception {
+            CustomerDto savedCustomer = CustomerDto.builder()
+                    .id(1L)
+                    .surname("Иванов")
+                    .cardBalance(530.0)
+                    .build();
+            when(idempotencyService.execute(eq("balance:1"), eq("retry-1"), eq(30.0), any(), any())).thenReturn(savedCustomer);
+            mockMvc.perform(MockMvcRequestBuilders.patch("/customer")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .header("Idempotency-Key", "retry-1")
+                            .content("30"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.cardBalance").value(530.0));
+            verify(idempotencyService).execute(eq("balance:1"), eq("retry-1"), eq(30.0), any(), any());
+        }
+
         @Test
         void test_update_customer_card_balance_bad_request() throws Exception {
             CustomerDto savedCustomer = CustomerDto.builder()
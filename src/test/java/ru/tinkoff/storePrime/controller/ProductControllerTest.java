@@ -117,7 +117,7 @@ public class ProductControllerTest {
 
         @Test
         void get_products_by_content_string_when_no_products_match() throws Exception {
-            when(productService.getAllProductsByContentString("nonexistent")).thenReturn(new ArrayList<>());
+            when(productService.getAllProductsByContentString("nonexistent", 0)).thenReturn(new ArrayList<>());
             mockMvc.perform(get("/products/search?content=nonexistent"))
                     .andExpect(status().isOk())
                     .andExpect(jsonPath("$").isArray())
@@ -146,7 +146,7 @@ public class ProductControllerTest {
                     .amount(6)
                     .build();
 
-            when(productService.getAllProductsByContentString("Test")).thenReturn(Arrays.asList(expectedProductDto, expectedProductDto2));
+            when(productService.getAllProductsByContentString("Test", 0)).thenReturn(Arrays.asList(expectedProductDto, expectedProductDto2));
             String content = "Test";
             mockMvc.perform(get("/products/search?content=" + content))
                     .andDo(print())
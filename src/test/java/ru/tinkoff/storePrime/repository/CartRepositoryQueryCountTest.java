@@ -0,0 +1,53 @@
+package ru.tinkoff.storePrime.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import ru.tinkoff.storePrime.models.CartItem;
+import ru.tinkoff.storePrime.models.Category;
+import ru.tinkoff.storePrime.models.user.Customer;
+import ru.tinkoff.storePrime.models.user.Seller;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CartRepositoryQueryCountTest extends RepositoryQueryCountTest {
+
+    /**
+     * Категории и изображения товара; товар и продавец приходят в основном запросе.
+     */
+    private static final int LAZY_ASSOCIATIONS = 2;
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Test
+    void cart_larger_than_batch_is_loaded_in_batches() {
+        Seller seller = persistSeller("seller@mail.ru");
+        Customer customer = persistCustomer("customer@mail.ru");
+        Category category = persistCategory("Категория");
+        for (int i = 0; i < LARGE; i++) {
+            entityManager.persist(CartItem.builder()
+                    .customer(customer)
+                    .product(persistProduct(seller, 100.0 + i, 10, category))
+                    .quantity(1)
+                    .build());
+        }
+
+        long statements = countStatements(() -> assertEquals(LARGE,
+                touchAll(cartRepository.findByCustomer_Id(customer.getId()))));
+
+        assertTrue(statements <= 1 + batchedLoads(LARGE, LAZY_ASSOCIATIONS), "запросов: " + statements);
+    }
+
+    private int touchAll(List<CartItem> items) {
+        for (CartItem item : items) {
+            item.getProduct().getSeller().getName();
+            item.getProduct().getCategories().size();
+            item.getProduct().getImagesIds().size();
+        }
+        return items.size();
+    }
+
+}
@@ -0,0 +1,71 @@
+package ru.tinkoff.storePrime.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import ru.tinkoff.storePrime.models.CartItem;
+import ru.tinkoff.storePrime.models.Product;
+import ru.tinkoff.storePrime.models.user.Customer;
+import ru.tinkoff.storePrime.models.user.Seller;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class CartRepositorySummaryTest extends RepositoryQueryCountTest {
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Test
+    void summary_is_aggregated_per_seller_in_one_statement() {
+        Seller first = persistSeller("first@mail.ru");
+        Seller second = persistSeller("second@mail.ru");
+        Customer customer = persistCustomer("customer@mail.ru");
+        Product cheap = persistProduct(first, 100.0, 10);
+        Product scarce = persistProduct(first, 50.0, 1);
+        Product other = persistProduct(second, 30.0, 5);
+        persistCartItem(customer, cheap, 2);
+        persistCartItem(customer, scarce, 3);
+        persistCartItem(customer, other, 1);
+
+        List<List<CartRepository.SellerCartSummary>> result = new ArrayList<>();
+        long statements = countStatements(() -> result.add(cartRepository.summarizeByCustomerId(customer.getId())));
+        List<CartRepository.SellerCartSummary> summary = result.get(0);
+
+        assertEquals(1, statements);
+        assertEquals(2, summary.size());
+        assertEquals(first.getId(), summary.get(0).getSellerId());
+        assertEquals(2, summary.get(0).getLineCount());
+        assertEquals(5, summary.get(0).getQuantity());
+        assertEquals(350.0, summary.get(0).getSubtotal());
+        assertEquals(String.valueOf(scarce.getId()), summary.get(0).getOutOfStockProductIds());
+        assertEquals(30.0, summary.get(1).getSubtotal());
+        assertNull(summary.get(1).getOutOfStockProductIds());
+    }
+
+    @Test
+    void summary_of_a_cart_larger_than_batch_is_one_statement() {
+        Seller seller = persistSeller("seller@mail.ru");
+        Customer customer = persistCustomer("customer@mail.ru");
+        for (int i = 0; i < LARGE; i++) {
+            persistCartItem(customer, persistProduct(seller, 10.0, 10), 1);
+        }
+
+        List<List<CartRepository.SellerCartSummary>> result = new ArrayList<>();
+        long statements = countStatements(() -> result.add(cartRepository.summarizeByCustomerId(customer.getId())));
+
+        assertEquals(1, statements);
+        assertEquals(LARGE, result.get(0).get(0).getLineCount());
+    }
+
+    private void persistCartItem(Customer customer, Product product, int quantity) {
+        entityManager.persist(CartItem.builder()
+                .customer(customer)
+                .product(product)
+                .quantity(quantity)
+                .build());
+    }
+
+}
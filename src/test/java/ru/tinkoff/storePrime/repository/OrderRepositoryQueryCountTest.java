@@ -0,0 +1,125 @@
+package ru.tinkoff.storePrime.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import ru.tinkoff.storePrime.models.Category;
+import ru.tinkoff.storePrime.models.Order;
+import ru.tinkoff.storePrime.models.OrderLine;
+import ru.tinkoff.storePrime.models.Product;
+import ru.tinkoff.storePrime.models.user.Customer;
+import ru.tinkoff.storePrime.models.user.Seller;
+import ru.tinkoff.storePrime.repository.impl.OrderCursor;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OrderRepositoryQueryCountTest extends RepositoryQueryCountTest {
+
+    private static final int PRODUCTS = 4;
+
+    /**
+     * Товар позиции, его продавец, категории и изображения.
+     */
+    private static final int PRODUCT_ASSOCIATIONS = 4;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    private Seller seller;
+
+    private Customer customer;
+
+    @BeforeEach
+    void setUp() {
+        seller = persistSeller("seller@mail.ru");
+        customer = persistCustomer("customer@mail.ru");
+    }
+
+    @Test
+    void customer_orders_are_loaded_in_batches() {
+        persistOrders(LARGE);
+
+        long statements = countStatements(() -> assertEquals(LARGE,
+                touchAll(orderRepository.getOrdersByCustomerId(customer.getId()))));
+
+        assertTrue(statements <= maxStatements(LARGE), "запросов: " + statements);
+    }
+
+    @Test
+    void page_larger_than_batch_is_loaded_in_batches() {
+        persistOrders(LARGE);
+
+        long statements = countStatements(() -> assertEquals(LARGE, touchAll(
+                orderRepository.findPageAfter(null, seller.getId(), null, null, null, null, LARGE))));
+
+        assertTrue(statements <= maxStatements(LARGE), "запросов: " + statements);
+    }
+
+    @Test
+    void cursor_walks_all_orders_of_a_seller_exactly_once() {
+        persistOrders(LARGE);
+        int pageSize = BATCH_SIZE + 1;
+
+        Set<Long> seen = new LinkedHashSet<>();
+        OrderCursor cursor = null;
+        List<Order> page;
+        do {
+            page = orderRepository.findPageAfter(null, seller.getId(), Order.Status.CREATED, null, null, cursor, pageSize);
+            page.forEach(order -> seen.add(order.getId()));
+            if (!page.isEmpty()) {
+                cursor = OrderCursor.decode(OrderCursor.after(page.get(page.size() - 1)).encode());
+            }
+        } while (page.size() == pageSize);
+
+        assertEquals(LARGE, seen.size());
+    }
+
+    /**
+     * Выборка заказов, их позиции пачками по заказам и связи товаров пачками по товарам.
+     */
+    private static long maxStatements(int orders) {
+        return 1 + batchedLoads(orders, 1) + batchedLoads(PRODUCTS, PRODUCT_ASSOCIATIONS);
+    }
+
+    private void persistOrders(int count) {
+        Category category = persistCategory("Категория");
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < PRODUCTS; i++) {
+            products.add(persistProduct(seller, 100.0 + i, 10, category));
+        }
+        for (int i = 0; i < count; i++) {
+            Order order = Order.builder()
+                    .status(Order.Status.CREATED)
+                    .seller(seller)
+                    .customer(customer)
+                    .build();
+            double totalPrice = 0;
+            for (int j = 0; j < 2; j++) {
+                Product product = products.get((i + j) % products.size());
+                order.addLine(OrderLine.builder().product(product).quantity(1).price(product.getPrice()).build());
+                totalPrice += product.getPrice();
+            }
+            order.setTotalPrice(totalPrice);
+            entityManager.persist(order);
+        }
+    }
+
+    private int touchAll(List<Order> orders) {
+        for (Order order : orders) {
+            order.getCustomer().getId();
+            for (OrderLine line : order.getLines()) {
+                line.getProduct().getSeller().getName();
+                line.getProduct().getCategories().size();
+                line.getProduct().getImagesIds().size();
+            }
+        }
+        return orders.size();
+    }
+
+}
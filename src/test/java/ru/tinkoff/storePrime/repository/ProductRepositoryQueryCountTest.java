@@ -0,0 +1,71 @@
+package ru.tinkoff.storePrime.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import ru.tinkoff.storePrime.models.Category;
+import ru.tinkoff.storePrime.models.Product;
+import ru.tinkoff.storePrime.models.user.Seller;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProductRepositoryQueryCountTest extends RepositoryQueryCountTest {
+
+    /**
+     * Категории и изображения товара; продавец приходит в основном запросе.
+     */
+    private static final int LAZY_ASSOCIATIONS = 2;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    private Seller seller;
+
+    @BeforeEach
+    void setUp() {
+        seller = persistSeller("seller@mail.ru");
+    }
+
+    @Test
+    void seller_catalog_is_loaded_in_batches() {
+        persistProducts(LARGE);
+
+        long statements = countStatements(() -> assertEquals(LARGE,
+                touchAll(productRepository.findAllBySellerId(seller.getId()))));
+
+        assertTrue(statements <= 1 + batchedLoads(LARGE, LAZY_ASSOCIATIONS), "запросов: " + statements);
+    }
+
+    @Test
+    void page_larger_than_batch_is_loaded_in_batches() {
+        persistProducts(LARGE);
+
+        long statements = countStatements(() -> assertEquals(LARGE,
+                touchAll(productRepository.findPage(PageRequest.of(0, LARGE)).getContent())));
+
+        // выборка страницы и подсчёт общего числа
+        assertTrue(statements <= 2 + batchedLoads(LARGE, LAZY_ASSOCIATIONS), "запросов: " + statements);
+    }
+
+    private void persistProducts(int count) {
+        Category first = persistCategory("Первая");
+        Category second = persistCategory("Вторая");
+        for (int i = 0; i < count; i++) {
+            persistProduct(seller, 100.0 + i, 10, first, second);
+        }
+    }
+
+    private int touchAll(List<Product> products) {
+        for (Product product : products) {
+            product.getSeller().getName();
+            product.getCategories().size();
+            product.getImagesIds().size();
+        }
+        return products.size();
+    }
+
+}
@@ -0,0 +1,122 @@
+package ru.tinkoff.storePrime.repository;
+
+import io.zonky.test.db.AutoConfigureEmbeddedDatabase;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayNameGeneration;
+import org.junit.jupiter.api.DisplayNameGenerator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import ru.tinkoff.storePrime.models.Category;
+import ru.tinkoff.storePrime.models.Location;
+import ru.tinkoff.storePrime.models.Product;
+import ru.tinkoff.storePrime.models.user.Account;
+import ru.tinkoff.storePrime.models.user.Customer;
+import ru.tinkoff.storePrime.models.user.Seller;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.List;
+
+/**
+ * Основа тестов репозиториев на встроенном Postgres: считает подготовленные запросы по статистике Hibernate
+ * и создаёт аккаунты, категории и товары для выборок.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureEmbeddedDatabase(type = AutoConfigureEmbeddedDatabase.DatabaseType.POSTGRES)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+abstract class RepositoryQueryCountTest {
+
+    /**
+     * Размер {@code @BatchSize} у товаров, продавцов, заказов и их коллекций.
+     */
+    protected static final int BATCH_SIZE = 50;
+
+    /**
+     * Больше трёх пачек: при N+1 запросов будет не меньше, чем строк, а при пакетной загрузке — по одному на пачку.
+     */
+    protected static final int LARGE = 3 * BATCH_SIZE + 10;
+
+    @Autowired
+    protected TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    private int productCount;
+
+    @BeforeEach
+    void setUpStatistics() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    /**
+     * Выполняет запрос на пустом контексте сохраняемости.
+     *
+     * @return число подготовленных запросов
+     */
+    protected long countStatements(Runnable query) {
+        entityManager.flush();
+        entityManager.clear();
+        statistics.clear();
+        query.run();
+        return statistics.getPrepareStatementCount();
+    }
+
+    /**
+     * @return число запросов, которыми догружаются {@code lazyAssociations} ленивых связей у {@code rows} строк
+     */
+    protected static long batchedLoads(int rows, int lazyAssociations) {
+        return (long) lazyAssociations * ((rows + BATCH_SIZE - 1) / BATCH_SIZE);
+    }
+
+    protected Seller persistSeller(String email) {
+        return entityManager.persist(Seller.builder()
+                .role(Account.Role.SELLER)
+                .email(email)
+                .phoneNumber("89999999999")
+                .passwordHash("hash")
+                .cardBalance(0.0)
+                .state(Account.State.CONFIRMED)
+                .name("Продавец")
+                .description("Описание")
+                .location(new Location("Россия", "Казань"))
+                .build());
+    }
+
+    protected Customer persistCustomer(String email) {
+        return entityManager.persist(Customer.builder()
+                .role(Account.Role.CUSTOMER)
+                .email(email)
+                .phoneNumber("89999999998")
+                .passwordHash("hash")
+                .cardBalance(0.0)
+                .state(Account.State.CONFIRMED)
+                .name("Покупатель")
+                .surname("Покупателев")
+                .build());
+    }
+
+    protected Category persistCategory(String name) {
+        return entityManager.persist(Category.builder().name(name).build());
+    }
+
+    protected Product persistProduct(Seller seller, double price, int amount, Category... categories) {
+        int index = ++productCount;
+        return entityManager.persist(Product.builder()
+                .title("Товар " + index)
+                .description("Описание товара " + index)
+                .price(price)
+                .amount(amount)
+                .seller(seller)
+                .categories(List.of(categories))
+                .imagesIds(List.of("image" + index))
+                .build());
+    }
+
+}
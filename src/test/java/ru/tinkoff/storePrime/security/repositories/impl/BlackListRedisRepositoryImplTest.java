@@ -0,0 +1,129 @@
+package ru.tinkoff.storePrime.security.repositories.impl;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.tinkoff.storePrime.security.utils.TokenHashUtil;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BlackListRedisRepositoryImplTest {
+
+    private static final String TOKEN = "revoked-token";
+
+    private static final String TOKEN_HASH = TokenHashUtil.sha256(TOKEN);
+
+    @Mock
+    private RedisTemplate<String, String> redisTemplate;
+
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    @Mock
+    private Cursor<String> cursor;
+
+    @InjectMocks
+    private BlackListRedisRepositoryImpl blackListRepository;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(blackListRepository, "maxTokenLifetimeMillis", 60_000L);
+        ReflectionTestUtils.setField(blackListRepository, "expectedInsertions", 1000);
+        ReflectionTestUtils.setField(blackListRepository, "falsePositiveProbability", 0.01);
+    }
+
+    @Nested
+    @DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+    @DisplayName("save() is working")
+    class SaveTest {
+
+        @Test
+        @DisplayName("Should store the token hash with a TTL and publish it")
+        void token_hash_is_stored_and_published() {
+            when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+
+            blackListRepository.save(TOKEN);
+
+            verify(valueOperations).set("blacklist:" + TOKEN_HASH, "", Duration.ofMillis(60_000L));
+            verify(redisTemplate).convertAndSend(BlackListRedisRepositoryImpl.BLACKLIST_TOPIC.getTopic(), TOKEN_HASH);
+        }
+    }
+
+    @Nested
+    @DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+    @DisplayName("exists() is working")
+    class ExistsTest {
+
+        @Test
+        @DisplayName("Should not query Redis when the Bloom filter misses")
+        void bloom_filter_miss_skips_redis() {
+            when(redisTemplate.scan(any())).thenReturn(cursor);
+            blackListRepository.rebuildBloomFilter();
+
+            assertFalse(blackListRepository.exists(TOKEN));
+
+            verify(redisTemplate, never()).hasKey(any());
+        }
+
+        @Test
+        @DisplayName("Should check Redis when the Bloom filter hits")
+        void bloom_filter_hit_checks_redis() {
+            when(redisTemplate.scan(any())).thenReturn(cursor);
+            when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+            when(redisTemplate.hasKey("blacklist:" + TOKEN_HASH)).thenReturn(true);
+            blackListRepository.rebuildBloomFilter();
+
+            blackListRepository.save(TOKEN);
+
+            assertTrue(blackListRepository.exists(TOKEN));
+        }
+
+        @Test
+        @DisplayName("Should find tokens from the rebuild scan")
+        void rebuilt_filter_contains_scanned_keys() {
+            when(redisTemplate.scan(any())).thenReturn(cursor);
+            doAnswer(invocation -> {
+                invocation.<Consumer<String>>getArgument(0).accept("blacklist:" + TOKEN_HASH);
+                return null;
+            }).when(cursor).forEachRemaining(any());
+            when(redisTemplate.hasKey("blacklist:" + TOKEN_HASH)).thenReturn(true);
+
+            blackListRepository.rebuildBloomFilter();
+
+            assertTrue(blackListRepository.exists(TOKEN));
+        }
+
+        @Test
+        @DisplayName("Should keep a token revoked on another node while the filter was rebuilt")
+        void token_revoked_during_rebuild_is_kept() {
+            when(redisTemplate.scan(any())).thenReturn(cursor);
+            blackListRepository.rebuildBloomFilter();
+            doAnswer(invocation -> {
+                blackListRepository.onMessage(new DefaultMessage(
+                        BlackListRedisRepositoryImpl.BLACKLIST_TOPIC.getTopic().getBytes(StandardCharsets.UTF_8),
+                        TOKEN_HASH.getBytes(StandardCharsets.UTF_8)), null);
+                return null;
+            }).when(cursor).forEachRemaining(any());
+            when(redisTemplate.hasKey("blacklist:" + TOKEN_HASH)).thenReturn(true);
+
+            blackListRepository.rebuildBloomFilter();
+
+            assertTrue(blackListRepository.exists(TOKEN));
+        }
+    }
+
+}
@@ -0,0 +1,54 @@
+package ru.tinkoff.storePrime.security.utils;
+
+import org.junit.jupiter.api.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BloomFilterTest {
+
+    @Nested
+    @DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+    @DisplayName("mightContain() is working")
+    class MightContainTest {
+
+        @Test
+        @DisplayName("Should find every added hash")
+        void no_false_negatives() {
+            BloomFilter filter = new BloomFilter(10_000, 0.01);
+            for (int i = 0; i < 10_000; i++) {
+                filter.put(TokenHashUtil.sha256("token-" + i));
+            }
+
+            for (int i = 0; i < 10_000; i++) {
+                assertTrue(filter.mightContain(TokenHashUtil.sha256("token-" + i)));
+            }
+        }
+
+        @Test
+        @DisplayName("Should keep false positives near the configured probability")
+        void false_positive_rate_matches_sizing() {
+            BloomFilter filter = new BloomFilter(10_000, 0.01);
+            for (int i = 0; i < 10_000; i++) {
+                filter.put(TokenHashUtil.sha256("token-" + i));
+            }
+
+            int falsePositives = 0;
+            for (int i = 0; i < 10_000; i++) {
+                if (filter.mightContain(TokenHashUtil.sha256("other-" + i))) {
+                    falsePositives++;
+                }
+            }
+
+            assertTrue(falsePositives < 200, "false positives: " + falsePositives);
+        }
+
+        @Test
+        @DisplayName("Should not contain anything when empty")
+        void empty_filter_contains_nothing() {
+            BloomFilter filter = new BloomFilter(1, 0.01);
+
+            assertFalse(filter.mightContain(TokenHashUtil.sha256("token")));
+        }
+    }
+
+}
@@ -0,0 +1,74 @@
+package ru.tinkoff.storePrime.security.utils.impl;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ru.tinkoff.storePrime.models.user.Account;
+import ru.tinkoff.storePrime.repository.CustomerRepository;
+import ru.tinkoff.storePrime.repository.SellerRepository;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AccountRevocationRegistryInMemoryImplTest {
+
+    @Mock
+    private CustomerRepository customerRepository;
+
+    @Mock
+    private SellerRepository sellerRepository;
+
+    @InjectMocks
+    private AccountRevocationRegistryInMemoryImpl accountRevocationRegistry;
+
+    @Nested
+    @DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+    @DisplayName("reload() is working")
+    class ReloadTest {
+
+        @Test
+        @DisplayName("Should revoke deleted and banned accounts from the database")
+        void accounts_are_read_from_database() {
+            when(customerRepository.findIdsByStateIn(any())).thenReturn(List.of(1L));
+            when(sellerRepository.findIdsByStateIn(any())).thenReturn(List.of(2L));
+
+            accountRevocationRegistry.reload();
+
+            assertTrue(accountRevocationRegistry.isRevoked(Account.Role.CUSTOMER, 1L));
+            assertTrue(accountRevocationRegistry.isRevoked(Account.Role.SELLER, 2L));
+            assertFalse(accountRevocationRegistry.isRevoked(Account.Role.SELLER, 1L));
+        }
+
+        @Test
+        @DisplayName("Should keep an account revoked while the reload was running")
+        void revoke_during_reload_is_kept() {
+            when(customerRepository.findIdsByStateIn(any())).thenAnswer(invocation -> {
+                accountRevocationRegistry.revoke(Account.Role.CUSTOMER, 3L);
+                return List.of();
+            });
+            when(sellerRepository.findIdsByStateIn(any())).thenReturn(List.of());
+
+            accountRevocationRegistry.reload();
+
+            assertTrue(accountRevocationRegistry.isRevoked(Account.Role.CUSTOMER, 3L));
+        }
+
+        @Test
+        @DisplayName("Should keep revoked accounts when the reload fails")
+        void failed_reload_keeps_previous_accounts() {
+            accountRevocationRegistry.revoke(Account.Role.SELLER, 4L);
+            when(customerRepository.findIdsByStateIn(any())).thenThrow(new IllegalStateException("db"));
+
+            assertThrows(IllegalStateException.class, () -> accountRevocationRegistry.reload());
+
+            assertTrue(accountRevocationRegistry.isRevoked(Account.Role.SELLER, 4L));
+        }
+    }
+
+}
@@ -0,0 +1,110 @@
+package ru.tinkoff.storePrime.services.impl;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ru.tinkoff.storePrime.exceptions.PaymentImpossibleException;
+import ru.tinkoff.storePrime.exceptions.not_found.SellerNotFoundException;
+import ru.tinkoff.storePrime.models.BalanceEntry;
+import ru.tinkoff.storePrime.models.user.Account;
+import ru.tinkoff.storePrime.repository.BalanceEntryRepository;
+import ru.tinkoff.storePrime.repository.CustomerRepository;
+import ru.tinkoff.storePrime.repository.SellerRepository;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BalanceServiceImplTest {
+
+    @Mock
+    private BalanceEntryRepository balanceEntryRepository;
+
+    @Mock
+    private CustomerRepository customerRepository;
+
+    @Mock
+    private SellerRepository sellerRepository;
+
+    @InjectMocks
+    private BalanceServiceImpl balanceService;
+
+    @Nested
+    @DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+    @DisplayName("debit() is working")
+    class DebitTest {
+
+        @Test
+        @DisplayName("Should read the balance after locking the account, write a negative entry and return the remaining balance")
+        void debit_success() {
+            when(customerRepository.lockById(1L)).thenReturn(Optional.of(1L));
+            when(customerRepository.findBalanceById(1L)).thenReturn(Optional.of(500.0));
+            ArgumentCaptor<BalanceEntry> captor = ArgumentCaptor.forClass(BalanceEntry.class);
+
+            assertEquals(380.0, balanceService.debit(Account.Role.CUSTOMER, 1L, 120.0));
+
+            InOrder inOrder = inOrder(customerRepository, balanceEntryRepository);
+            inOrder.verify(customerRepository).lockById(1L);
+            inOrder.verify(customerRepository).findBalanceById(1L);
+            inOrder.verify(balanceEntryRepository).save(captor.capture());
+            assertEquals(Account.Role.CUSTOMER, captor.getValue().getRole());
+            assertEquals(1L, captor.getValue().getAccountId());
+            assertEquals(-120.0, captor.getValue().getAmount());
+            verifyNoInteractions(sellerRepository);
+        }
+
+        @Test
+        @DisplayName("Should throw PaymentImpossibleException and write nothing when the balance is insufficient")
+        void debit_when_balance_is_insufficient() {
+            when(customerRepository.lockById(1L)).thenReturn(Optional.of(1L));
+            when(customerRepository.findBalanceById(1L)).thenReturn(Optional.of(50.0));
+
+            assertThrows(PaymentImpossibleException.class, () -> balanceService.debit(Account.Role.CUSTOMER, 1L, 120.0));
+
+            verify(balanceEntryRepository, never()).save(any());
+        }
+
+        @Test
+        @DisplayName("Should throw SellerNotFoundException when the seller does not exist")
+        void debit_when_seller_not_found() {
+            when(sellerRepository.lockById(2L)).thenReturn(Optional.empty());
+
+            assertThrows(SellerNotFoundException.class, () -> balanceService.debit(Account.Role.SELLER, 2L, 10.0));
+
+            verifyNoInteractions(balanceEntryRepository);
+        }
+
+    }
+
+    @Nested
+    @DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+    @DisplayName("creditAll() is working")
+    class CreditAllTest {
+
+        @Test
+        @DisplayName("Should only insert entries without locking seller rows")
+        @SuppressWarnings("unchecked")
+        void credit_all_inserts_entries() {
+            ArgumentCaptor<List<BalanceEntry>> captor = ArgumentCaptor.forClass(List.class);
+
+            balanceService.creditAll(Account.Role.SELLER, Map.of(2L, 97.0));
+
+            verify(balanceEntryRepository).saveAll(captor.capture());
+            assertEquals(1, captor.getValue().size());
+            assertEquals(97.0, captor.getValue().get(0).getAmount());
+            verifyNoInteractions(sellerRepository, customerRepository);
+        }
+
+    }
+
+}
@@ -3,11 +3,16 @@ package ru.tinkoff.storePrime.services.impl;
 import org.junit.Assert;
 import org.junit.jupiter.api.*;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.cache.CacheManager;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.tinkoff.storePrime.dto.cart.CartItemChangeDto;
 import ru.tinkoff.storePrime.dto.cart.CartItemDto;
+import ru.tinkoff.storePrime.dto.cart.CartSummaryDto;
+import ru.tinkoff.storePrime.exceptions.DisparateDataException;
 import ru.tinkoff.storePrime.exceptions.not_found.CartItemNotFoundException;
 import ru.tinkoff.storePrime.exceptions.not_found.CustomerNotFoundException;
 import ru.tinkoff.storePrime.exceptions.not_found.ProductNotFoundException;
@@ -21,10 +26,13 @@ import ru.tinkoff.storePrime.repository.CustomerRepository;
 import ru.tinkoff.storePrime.repository.ProductRepository;
 import ru.tinkoff.storePrime.repository.SellerRepository;
 import ru.tinkoff.storePrime.services.utils.AccountCachingUtil;
+import ru.tinkoff.storePrime.services.utils.RedisCartStore;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -38,6 +46,9 @@ class CartServiceImplTest {
     @Mock
     private ProductRepository productRepository;
 
+    @Mock
+    private RedisCartStore redisCartStore;
+
     @Mock
     private CustomerRepository customerRepository;
 
@@ -54,6 +65,7 @@ class CartServiceImplTest {
     public void setUp() {
         AccountCachingUtil accountCachingUtil = new AccountCachingUtil(cacheManager, customerRepository, sellerRepository);
         cartService.setAccountCachingUtil(accountCachingUtil);
+        ReflectionTestUtils.setField(cartService, "maxBatchSize", 3);
     }
 
     @Nested
@@ -176,6 +188,29 @@ class CartServiceImplTest {
             verify(cartRepository, times(1)).save(any(CartItem.class));
         }
 
+        @Test
+        @DisplayName("Should keep the cart item in Redis when Redis storage is enabled")
+        void add_new_CartItem_with_redis_storage() {
+            Long customerId = 1L;
+            Long productId = 2L;
+            Product product = Product.builder()
+                    .id(productId)
+                    .categories(new ArrayList<>())
+                    .seller(Seller.builder().id(1L).location(Location.builder().country("Россия").city("Казань").build()).build())
+                    .build();
+
+            when(redisCartStore.isEnabled()).thenReturn(true);
+            when(productRepository.findById(productId)).thenReturn(Optional.of(product));
+            when(redisCartStore.put(customerId, productId, 3)).thenReturn(new RedisCartStore.Entry(10L, 3));
+
+            CartItemDto result = cartService.addNewCartItem(customerId, productId, 3);
+
+            assertEquals(10L, result.getId());
+            assertEquals(3, result.getQuantity());
+            assertEquals(productId, result.getProduct().getId());
+            verifyNoInteractions(cartRepository, customerRepository);
+        }
+
     }
 
     @Nested
@@ -210,7 +245,6 @@ class CartServiceImplTest {
                             .build())
                     .quantity(3)
                     .build());
-            customer.setCart(cartItems);
             when(cartRepository.findByCustomer_Id(customerId)).thenReturn(cartItems);
             Assert.assertEquals(CartItemDto.from(cartItems), cartService.getCustomerCart(customerId));
         }
@@ -254,7 +288,153 @@ class CartServiceImplTest {
             assertDoesNotThrow(() -> cartService.deleteProductFromCart(customerId, productId));
         }
 
+        @Test
+        @DisplayName("Should remove the product from the Redis cart without touching the cart table")
+        void delete_product_from_cart_with_redis_storage() {
+            when(redisCartStore.isEnabled()).thenReturn(true);
+            when(redisCartStore.remove(1L, 2L)).thenReturn(false);
+
+            assertThrows(CartItemNotFoundException.class, () -> cartService.deleteProductFromCart(1L, 2L));
+
+            verifyNoInteractions(cartRepository);
+        }
+
     }
 
+    @Nested
+    @DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+    @DisplayName("changeCartItems() is working")
+    class ChangeCartItemsTest {
+
+        private Product product(Long id) {
+            return Product.builder()
+                    .id(id)
+                    .categories(new ArrayList<>())
+                    .seller(Seller.builder().id(1L).location(Location.builder().country("Россия").city("Казань").build()).build())
+                    .build();
+        }
+
+        @Test
+        @DisplayName("Should add, update and remove cart items with one lookup per table")
+        @SuppressWarnings("unchecked")
+        void change_cart_items_success() {
+            Long customerId = 1L;
+            Customer customer = Customer.builder().id(customerId).build();
+            CartItem updated = CartItem.builder().id(10L).customer(customer).product(product(2L)).quantity(1).build();
+            CartItem removed = CartItem.builder().id(11L).customer(customer).product(product(3L)).quantity(1).build();
+
+            when(cartRepository.findByCustomer_Id(customerId)).thenReturn(List.of(updated, removed));
+            when(productRepository.findAllById(Set.of(4L))).thenReturn(List.of(product(4L)));
+            when(customerRepository.findById(customerId)).thenReturn(Optional.of(customer));
+            when(customerRepository.getReferenceById(customerId)).thenReturn(customer);
+
+            List<CartItemDto> result = cartService.changeCartItems(customerId, List.of(
+                    new CartItemChangeDto(2L, 5),
+                    new CartItemChangeDto(3L, 0),
+                    new CartItemChangeDto(4L, 2)));
+
+            assertEquals(2, result.size());
+            assertEquals(5, result.get(0).getQuantity());
+            assertEquals(4L, result.get(1).getProduct().getId());
+            ArgumentCaptor<List<CartItem>> saved = ArgumentCaptor.forClass(List.class);
+            verify(cartRepository, times(1)).saveAll(saved.capture());
+            assertEquals(2, saved.getValue().size());
+            verify(cartRepository, times(1)).deleteAllInBatch(List.of(removed));
+        }
+
+        @Test
+        @DisplayName("Should throw an exception and change nothing when a product does not exist")
+        void change_cart_items_when_product_does_not_exist() {
+            when(cartRepository.findByCustomer_Id(1L)).thenReturn(List.of());
+            when(productRepository.findAllById(Set.of(4L, 5L))).thenReturn(List.of(product(4L)));
+
+            assertThrows(ProductNotFoundException.class, () -> cartService.changeCartItems(1L, List.of(
+                    new CartItemChangeDto(4L, 1), new CartItemChangeDto(5L, 1))));
+
+            verify(cartRepository, never()).saveAll(anyList());
+        }
+
+        @Test
+        @DisplayName("Should drop products deleted from the catalog from a Redis cart instead of failing")
+        void change_redis_cart_items_when_cart_has_deleted_product() {
+            when(redisCartStore.isEnabled()).thenReturn(true);
+            when(redisCartStore.getEntries(1L)).thenReturn(Map.of(
+                    2L, new RedisCartStore.Entry(10L, 1),
+                    9L, new RedisCartStore.Entry(11L, 1)));
+            when(productRepository.findAllById(Set.of(9L))).thenReturn(List.of());
+            when(redisCartStore.putAll(1L, Map.of(2L, 0, 9L, 0))).thenReturn(Map.of());
+
+            assertEquals(List.of(), cartService.changeCartItems(1L, List.of(new CartItemChangeDto(2L, 0))));
+
+            verify(redisCartStore).putAll(1L, Map.of(2L, 0, 9L, 0));
+        }
+
+        @Test
+        @DisplayName("Should reject a batch that is too large or has a negative quantity")
+        void change_cart_items_with_invalid_batch() {
+            assertThrows(DisparateDataException.class, () -> cartService.changeCartItems(1L, List.of(
+                    new CartItemChangeDto(1L, 1), new CartItemChangeDto(2L, 1),
+                    new CartItemChangeDto(3L, 1), new CartItemChangeDto(4L, 1))));
+            assertThrows(DisparateDataException.class, () -> cartService.changeCartItems(1L, List.of(
+                    new CartItemChangeDto(1L, -1))));
+
+            verifyNoInteractions(cartRepository, productRepository);
+        }
+
+    }
+
+    @Nested
+    @DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+    @DisplayName("getCartSummary() is working")
+    class GetCartSummaryTest {
+
+        @Test
+        @DisplayName("Should sum seller subtotals from the aggregate query")
+        void get_cart_summary_from_database() {
+            CartRepository.SellerCartSummary first = mock(CartRepository.SellerCartSummary.class);
+            when(first.getSellerId()).thenReturn(1L);
+            when(first.getLineCount()).thenReturn(2L);
+            when(first.getQuantity()).thenReturn(5L);
+            when(first.getSubtotal()).thenReturn(350.0);
+            when(first.getOutOfStockProductIds()).thenReturn("3,7");
+            CartRepository.SellerCartSummary second = mock(CartRepository.SellerCartSummary.class);
+            when(second.getSellerId()).thenReturn(2L);
+            when(second.getLineCount()).thenReturn(1L);
+            when(second.getQuantity()).thenReturn(1L);
+            when(second.getSubtotal()).thenReturn(30.0);
+            when(cartRepository.summarizeByCustomerId(1L)).thenReturn(List.of(first, second));
+
+            CartSummaryDto summary = cartService.getCartSummary(1L);
+
+            assertEquals(3L, summary.getLineCount());
+            assertEquals(6L, summary.getTotalQuantity());
+            assertEquals(380.0, summary.getTotalPrice());
+            assertEquals(2, summary.getSellers().size());
+            assertEquals(List.of(3L, 7L), summary.getOutOfStockProductIds());
+            verifyNoMoreInteractions(cartRepository);
+            verifyNoInteractions(productRepository);
+        }
+
+        @Test
+        @DisplayName("Should compute the summary of a Redis cart from product prices and stock")
+        void get_cart_summary_from_redis() {
+            ProductRepository.PriceAndStock product = mock(ProductRepository.PriceAndStock.class);
+            when(product.getId()).thenReturn(2L);
+            when(product.getSellerId()).thenReturn(1L);
+            when(product.getPrice()).thenReturn(100.0);
+            when(product.getAmount()).thenReturn(1);
+            when(redisCartStore.isEnabled()).thenReturn(true);
+            when(redisCartStore.getEntries(1L)).thenReturn(Map.of(2L, new RedisCartStore.Entry(10L, 3)));
+            when(productRepository.findPriceAndStockByIdIn(Set.of(2L))).thenReturn(List.of(product));
+
+            CartSummaryDto summary = cartService.getCartSummary(1L);
+
+            assertEquals(1L, summary.getLineCount());
+            assertEquals(300.0, summary.getTotalPrice());
+            assertEquals(List.of(2L), summary.getOutOfStockProductIds());
+            verifyNoInteractions(cartRepository);
+        }
+
+    }
 
-}
\ No newline at end of file
+}
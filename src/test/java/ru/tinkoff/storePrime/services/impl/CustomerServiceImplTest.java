@@ -6,6 +6,7 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import ru.tinkoff.storePrime.converters.AddressConverter;
 import ru.tinkoff.storePrime.converters.CustomerConverter;
@@ -19,10 +20,13 @@ import ru.tinkoff.storePrime.models.Address;
 import ru.tinkoff.storePrime.models.Location;
 import ru.tinkoff.storePrime.models.user.Account;
 import ru.tinkoff.storePrime.models.user.Customer;
+import ru.tinkoff.storePrime.models.user.CustomerSnapshot;
 import ru.tinkoff.storePrime.repository.CustomerRepository;
 import ru.tinkoff.storePrime.repository.SellerRepository;
 import ru.tinkoff.storePrime.security.exceptions.AlreadyExistsException;
+import ru.tinkoff.storePrime.security.utils.AccountRevocationRegistry;
 import ru.tinkoff.storePrime.services.AccountService;
+import ru.tinkoff.storePrime.services.BalanceService;
 import ru.tinkoff.storePrime.services.utils.AccountCachingUtil;
 
 import java.time.LocalDate;
@@ -53,6 +57,12 @@ class CustomerServiceImplTest {
     @Mock
     private CacheManager cacheManager;
 
+    @Mock
+    private AccountRevocationRegistry accountRevocationRegistry;
+
+    @Mock
+    private BalanceService balanceService;
+
     @BeforeEach
     public void setUp() {
         AccountCachingUtil accountCachingUtil = new AccountCachingUtil(cacheManager, customerRepository, sellerRepository);
@@ -385,8 +395,30 @@ class CustomerServiceImplTest {
 
             verify(customerRepository, times(1)).findById(customerId);
             verify(customerRepository, times(1)).save(customer);
+            verify(accountRevocationRegistry, times(1)).revoke(Account.Role.CUSTOMER, customerId);
             verifyNoMoreInteractions(customerRepository);
         }
+
+        @Test
+        @DisplayName("Should replace the cached snapshot instead of changing it")
+        void delete_customer_replaces_cached_snapshot() {
+            Long customerId = 1L;
+            Customer customer = Customer.builder()
+                    .id(customerId)
+                    .state(Account.State.CONFIRMED)
+                    .build();
+            CustomerSnapshot cached = CustomerSnapshot.from(customer);
+            ConcurrentMapCache cache = new ConcurrentMapCache(AccountCachingUtil.CUSTOMER_CACHE);
+            cache.put(customerId, cached);
+
+            when(cacheManager.getCache(AccountCachingUtil.CUSTOMER_CACHE)).thenReturn(cache);
+            when(customerRepository.findById(customerId)).thenReturn(Optional.of(customer));
+
+            customerService.deleteCustomer(customerId);
+
+            assertEquals(Account.State.CONFIRMED, cached.getState());
+            assertEquals(Account.State.DELETED, cache.get(customerId, CustomerSnapshot.class).getState());
+        }
     }
 
 
@@ -435,6 +467,8 @@ class CustomerServiceImplTest {
                     .build();
 
             when(customerRepository.findById(customerId)).thenReturn(Optional.of(customer));
+            when(balanceService.debit(Account.Role.CUSTOMER, customerId, 100.0))
+                    .thenThrow(new PaymentImpossibleException("Недостаточно средств"));
 
             assertThrows(PaymentImpossibleException.class, () -> customerService.updateCardBalance(customerId, replenishment));
 
@@ -467,35 +501,16 @@ class CustomerServiceImplTest {
                     .cardBalance(500.0)
                     .build();
 
-            Customer updatedCustomer = Customer.builder()
-                    .id(customerId)
-                    .role(Account.Role.CUSTOMER)
-                    .state(Account.State.CONFIRMED)
-                    .email("example@mail.ru")
-                    .phoneNumber("899999999")
-                    .name("John")
-                    .surname("Doe")
-                    .gender(Customer.Gender.MALE)
-                    .birthdayDate(LocalDate.of(1990, 1, 1))
-                    .address(Address.builder()
-                            .location(Location.builder().country("Russia").city("Moscow").build())
-                            .street("Spartakovskaya")
-                            .house(98)
-                            .apartment("6A")
-                            .build())
-                    .cardBalance(500.0 + replenishment)
-                    .build();
-
             when(customerRepository.findById(customerId)).thenReturn(Optional.of(customer));
-            when(customerRepository.save(updatedCustomer)).thenReturn(updatedCustomer);
+            when(balanceService.getBalance(Account.Role.CUSTOMER, customerId)).thenReturn(600.0);
 
             CustomerDto result = customerService.updateCardBalance(customerId, replenishment);
 
             assertNotNull(result);
             assertEquals(600.0, result.getCardBalance());
 
+            verify(balanceService, times(1)).credit(Account.Role.CUSTOMER, customerId, replenishment);
             verify(customerRepository, times(1)).findById(customerId);
-            verify(customerRepository, times(1)).save(customer);
             verifyNoMoreInteractions(customerRepository);
         }
 
@@ -503,6 +518,74 @@ class CustomerServiceImplTest {
     }
 
 
+    @Nested
+    @DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+    @DisplayName("getThisCustomer() is working")
+    public class GetThisCustomerTest {
 
+        @Test
+        @DisplayName("Should return the cached snapshot without loading the customer")
+        void get_this_customer_from_cache() {
+            Long customerId = 1L;
+            ConcurrentMapCache cache = new ConcurrentMapCache(AccountCachingUtil.CUSTOMER_CACHE);
+            cache.put(customerId, CustomerSnapshot.builder()
+                    .id(customerId)
+                    .state(Account.State.CONFIRMED)
+                    .email("example@mail.ru")
+                    .birthdayDate(LocalDate.of(1990, 1, 1))
+                    .country("Russia")
+                    .city("Moscow")
+                    .build());
+
+            when(cacheManager.getCache(AccountCachingUtil.CUSTOMER_CACHE)).thenReturn(cache);
+            when(balanceService.getBalance(Account.Role.CUSTOMER, customerId)).thenReturn(500.0);
+
+            CustomerDto result = customerService.getThisCustomer(customerId);
+
+            assertEquals("example@mail.ru", result.getEmail());
+            assertEquals("Moscow", result.getAddressDto().getLocation().getCity());
+            assertEquals(500.0, result.getCardBalance());
+            verifyNoInteractions(customerRepository);
+        }
+
+        @Test
+        @DisplayName("Should cache a snapshot of the customer loaded on a miss")
+        void get_this_customer_caches_snapshot() {
+            Long customerId = 1L;
+            Customer customer = Customer.builder()
+                    .id(customerId)
+                    .state(Account.State.CONFIRMED)
+                    .email("example@mail.ru")
+                    .passwordHash("hash")
+                    .birthdayDate(LocalDate.of(1990, 1, 1))
+                    .build();
+            ConcurrentMapCache cache = new ConcurrentMapCache(AccountCachingUtil.CUSTOMER_CACHE);
+
+            when(cacheManager.getCache(AccountCachingUtil.CUSTOMER_CACHE)).thenReturn(cache);
+            when(customerRepository.findById(customerId)).thenReturn(Optional.of(customer));
+
+            customerService.getThisCustomer(customerId);
+            customerService.getThisCustomer(customerId);
+
+            assertInstanceOf(CustomerSnapshot.class, cache.get(customerId).get());
+            verify(customerRepository, times(1)).findById(customerId);
+        }
+
+        @Test
+        @DisplayName("Should throw not found through the cache without caching anything")
+        void get_customer_not_found_is_not_cached() {
+            Long customerId = 1L;
+            ConcurrentMapCache cache = new ConcurrentMapCache(AccountCachingUtil.CUSTOMER_CACHE);
+
+            when(cacheManager.getCache(AccountCachingUtil.CUSTOMER_CACHE)).thenReturn(cache);
+            when(customerRepository.findById(customerId)).thenReturn(Optional.empty());
+
+            AccountCachingUtil accountCachingUtil = new AccountCachingUtil(cacheManager, customerRepository, sellerRepository);
+
+            assertThrows(CustomerNotFoundException.class, () -> accountCachingUtil.getCustomer(customerId));
+            assertNull(cache.get(customerId));
+        }
+
+    }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,190 @@
+package ru.tinkoff.storePrime.services.impl;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.tinkoff.storePrime.exceptions.DisparateDataException;
+import ru.tinkoff.storePrime.exceptions.PaymentImpossibleException;
+import ru.tinkoff.storePrime.exceptions.RequestInProgressException;
+import ru.tinkoff.storePrime.security.utils.TokenHashUtil;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("IdempotencyService is working when")
+class IdempotencyServiceImplTest {
+
+    private static final TypeReference<List<Long>> RESPONSE_TYPE = new TypeReference<>() {};
+
+    @Mock
+    private RedisTemplate<String, String> redisTemplate;
+
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private IdempotencyServiceImpl idempotencyService;
+
+    private final AtomicInteger executions = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        idempotencyService = new IdempotencyServiceImpl(redisTemplate, objectMapper);
+        ReflectionTestUtils.setField(idempotencyService, "ttlMillis", 60_000L);
+        ReflectionTestUtils.setField(idempotencyService, "inFlightTtlMillis", 10_000L);
+        ReflectionTestUtils.setField(idempotencyService, "waitTimeoutMillis", 50L);
+        ReflectionTestUtils.setField(idempotencyService, "pollMillis", 10L);
+        ReflectionTestUtils.setField(idempotencyService, "localMaximumSize", 100L);
+        idempotencyService.initLocalRecords();
+    }
+
+    private List<Long> action() {
+        executions.incrementAndGet();
+        return List.of(1L, 2L);
+    }
+
+    private String record(List<Long> request, String response) throws Exception {
+        String fingerprint = TokenHashUtil.sha256(objectMapper.writeValueAsString(request));
+        return objectMapper.writeValueAsString(new IdempotencyServiceImpl.IdempotencyRecord(fingerprint, response));
+    }
+
+    @Nested
+    @DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+    @DisplayName("execute() is working")
+    class ExecuteTest {
+
+        @Test
+        @DisplayName("Should execute the action directly when no key is provided")
+        void execute_without_key() {
+            assertEquals(List.of(1L, 2L), idempotencyService.execute("orders:1", null, List.of(5L), RESPONSE_TYPE, IdempotencyServiceImplTest.this::action));
+
+            assertEquals(1, executions.get());
+            verifyNoInteractions(redisTemplate);
+        }
+
+        @Test
+        @DisplayName("Should execute the action once and store its result when the key is new")
+        void execute_with_new_key() {
+            when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+            when(valueOperations.setIfAbsent(anyString(), anyString(), any(Duration.class))).thenReturn(true);
+            ArgumentCaptor<String> stored = ArgumentCaptor.forClass(String.class);
+
+            assertEquals(List.of(1L, 2L), idempotencyService.execute("orders:1", "key", List.of(5L), RESPONSE_TYPE, IdempotencyServiceImplTest.this::action));
+
+            assertEquals(1, executions.get());
+            verify(valueOperations).set(startsWith("idempotency:orders:1:"), stored.capture(), eq(Duration.ofMillis(60_000L)));
+            assertTrue(stored.getValue().contains("[1,2]"));
+        }
+
+        @Test
+        @DisplayName("Should return the stored result without executing the action again")
+        void execute_with_completed_key() throws Exception {
+            when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+            when(valueOperations.setIfAbsent(anyString(), anyString(), any(Duration.class))).thenReturn(false);
+            when(valueOperations.get(anyString())).thenReturn(record(List.of(5L), "[7,8]"));
+
+            assertEquals(List.of(7L, 8L), idempotencyService.execute("orders:1", "key", List.of(5L), RESPONSE_TYPE, IdempotencyServiceImplTest.this::action));
+
+            assertEquals(0, executions.get());
+        }
+
+        @Test
+        @DisplayName("Should throw DisparateDataException when the key was used for another request")
+        void execute_with_key_of_another_request() throws Exception {
+            when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+            when(valueOperations.setIfAbsent(anyString(), anyString(), any(Duration.class))).thenReturn(false);
+            when(valueOperations.get(anyString())).thenReturn(record(List.of(6L), "[7,8]"));
+
+            assertThrows(DisparateDataException.class,
+                    () -> idempotencyService.execute("orders:1", "key", List.of(5L), RESPONSE_TYPE, IdempotencyServiceImplTest.this::action));
+            assertEquals(0, executions.get());
+        }
+
+        @Test
+        @DisplayName("Should throw RequestInProgressException when the first request does not finish in time")
+        void execute_while_first_request_in_flight() throws Exception {
+            when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+            when(valueOperations.setIfAbsent(anyString(), anyString(), any(Duration.class))).thenReturn(false);
+            when(valueOperations.get(anyString())).thenReturn(record(List.of(5L), null));
+
+            assertThrows(RequestInProgressException.class,
+                    () -> idempotencyService.execute("orders:1", "key", List.of(5L), RESPONSE_TYPE, IdempotencyServiceImplTest.this::action));
+            assertEquals(0, executions.get());
+        }
+
+        @Test
+        @DisplayName("Should release the key when the action fails")
+        void execute_when_action_fails() {
+            when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+            when(valueOperations.setIfAbsent(anyString(), anyString(), any(Duration.class))).thenReturn(true);
+
+            assertThrows(PaymentImpossibleException.class, () -> idempotencyService.execute("orders:1", "key", List.of(5L), RESPONSE_TYPE,
+                    () -> {
+                        throw new PaymentImpossibleException("Недостаточно средств");
+                    }));
+
+            verify(redisTemplate).delete(startsWith("idempotency:orders:1:"));
+        }
+
+        @Test
+        @DisplayName("Should deduplicate requests locally when Redis is unavailable")
+        void execute_when_redis_is_unavailable() {
+            when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+            when(valueOperations.setIfAbsent(anyString(), anyString(), any(Duration.class)))
+                    .thenThrow(new RedisConnectionFailureException("down"));
+
+            idempotencyService.execute("orders:1", "key", List.of(5L), RESPONSE_TYPE, IdempotencyServiceImplTest.this::action);
+            List<Long> retried = idempotencyService.execute("orders:1", "key", List.of(5L), RESPONSE_TYPE, IdempotencyServiceImplTest.this::action);
+
+            assertEquals(List.of(1L, 2L), retried);
+            assertEquals(1, executions.get());
+        }
+
+        @Test
+        @DisplayName("Should fall back to local deduplication when Redis fails while reading the record")
+        void execute_when_redis_fails_on_read() {
+            when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+            when(valueOperations.setIfAbsent(anyString(), anyString(), any(Duration.class))).thenReturn(false);
+            when(valueOperations.get(anyString())).thenThrow(new RedisConnectionFailureException("down"));
+
+            assertEquals(List.of(1L, 2L), idempotencyService.execute("orders:1", "key", List.of(5L), RESPONSE_TYPE, IdempotencyServiceImplTest.this::action));
+            assertEquals(1, executions.get());
+        }
+
+        @Test
+        @DisplayName("Should keep the key for the whole window and not execute again when the result cannot be stored")
+        void execute_when_result_cannot_be_stored() throws Exception {
+            when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+            when(valueOperations.setIfAbsent(anyString(), anyString(), any(Duration.class))).thenReturn(true, false);
+            doThrow(new RedisConnectionFailureException("down"))
+                    .when(valueOperations).set(anyString(), anyString(), any(Duration.class));
+            when(valueOperations.get(anyString())).thenReturn(record(List.of(5L), null));
+
+            idempotencyService.execute("orders:1", "key", List.of(5L), RESPONSE_TYPE, IdempotencyServiceImplTest.this::action);
+            List<Long> retried = idempotencyService.execute("orders:1", "key", List.of(5L), RESPONSE_TYPE, IdempotencyServiceImplTest.this::action);
+
+            assertEquals(List.of(1L, 2L), retried);
+            assertEquals(1, executions.get());
+            verify(redisTemplate).expire(startsWith("idempotency:orders:1:"), eq(Duration.ofMillis(60_000L)));
+        }
+
+    }
+
+}
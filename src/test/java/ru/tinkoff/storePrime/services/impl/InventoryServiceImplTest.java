@@ -0,0 +1,71 @@
+package ru.tinkoff.storePrime.services.impl;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ru.tinkoff.storePrime.repository.ProductRepository;
+import ru.tinkoff.storePrime.services.utils.FlashSaleStock;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("InventoryService is working when")
+class InventoryServiceImplTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private FlashSaleStock flashSaleStock;
+
+    @InjectMocks
+    private InventoryServiceImpl inventoryService;
+
+    @Nested
+    @DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+    @DisplayName("reserve() is working")
+    class ReserveTest {
+
+        @Test
+        @DisplayName("Should decrement products in ascending id order and report the ones without enough stock")
+        void reserve_in_product_id_order() {
+            Map<Long, Integer> quantities = new LinkedHashMap<>();
+            quantities.put(30L, 1);
+            quantities.put(10L, 2);
+            quantities.put(20L, 5);
+            when(productRepository.decrementAmount(10L, 2)).thenReturn(1);
+            when(productRepository.decrementAmount(20L, 5)).thenReturn(0);
+            when(productRepository.decrementAmount(30L, 1)).thenReturn(1);
+
+            Set<Long> failedProductIds = inventoryService.reserve(quantities);
+
+            assertEquals(Set.of(20L), failedProductIds);
+            InOrder inOrder = inOrder(productRepository);
+            inOrder.verify(productRepository).decrementAmount(10L, 2);
+            inOrder.verify(productRepository).decrementAmount(20L, 5);
+            inOrder.verify(productRepository).decrementAmount(30L, 1);
+        }
+
+        @Test
+        @DisplayName("Should report a flash sale product without enough stock and leave the product row alone")
+        void reserve_flash_sale_product() {
+            when(flashSaleStock.isFlashSaleProduct(1L)).thenReturn(true);
+            when(flashSaleStock.tryReserve(1L, 3)).thenReturn(false);
+
+            Set<Long> failedProductIds = inventoryService.reserve(Map.of(1L, 3));
+
+            assertEquals(Set.of(1L), failedProductIds);
+            verifyNoInteractions(productRepository);
+        }
+
+    }
+
+}
@@ -1,12 +1,19 @@
 package ru.tinkoff.storePrime.services.impl;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.*;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.cache.CacheManager;
+import org.springframework.test.util.ReflectionTestUtils;
 import ru.tinkoff.storePrime.dto.order.OrderDto;
+import ru.tinkoff.storePrime.dto.order.OrderStatusChangeResultDto;
+import ru.tinkoff.storePrime.dto.order.OrdersCursorPage;
 import ru.tinkoff.storePrime.exceptions.DisparateDataException;
 import ru.tinkoff.storePrime.exceptions.ForbiddenException;
 import ru.tinkoff.storePrime.exceptions.not_found.CartItemNotFoundException;
@@ -15,6 +22,7 @@ import ru.tinkoff.storePrime.exceptions.not_found.OrderNotFoundException;
 import ru.tinkoff.storePrime.models.CartItem;
 import ru.tinkoff.storePrime.models.Location;
 import ru.tinkoff.storePrime.models.Order;
+import ru.tinkoff.storePrime.models.OrderLine;
 import ru.tinkoff.storePrime.models.Product;
 import ru.tinkoff.storePrime.models.user.Customer;
 import ru.tinkoff.storePrime.models.user.Seller;
@@ -23,16 +31,26 @@ import ru.tinkoff.storePrime.repository.CustomerRepository;
 import ru.tinkoff.storePrime.repository.OrderRepository;
 import ru.tinkoff.storePrime.repository.SellerRepository;
 import ru.tinkoff.storePrime.services.CustomerService;
+import ru.tinkoff.storePrime.services.InventoryService;
+import ru.tinkoff.storePrime.services.OutboxService;
 import ru.tinkoff.storePrime.services.SellerService;
 import ru.tinkoff.storePrime.services.utils.AccountCachingUtil;
+import ru.tinkoff.storePrime.services.utils.CheckoutMetrics;
+import ru.tinkoff.storePrime.repository.impl.OrderCursor;
+import ru.tinkoff.storePrime.services.utils.RedisCartStore;
 
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
@@ -60,13 +78,42 @@ public class OrderServiceImplTest {
     @Mock
     private CustomerService customerService;
 
+    @Mock
+    private InventoryService inventoryService;
+
+    @Mock
+    private OutboxService outboxService;
+
+    @Mock
+    private RedisCartStore redisCartStore;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Spy
+    private CheckoutMetrics checkoutMetrics = new CheckoutMetrics(meterRegistry);
+
     @InjectMocks
     private OrderServiceImpl orderService;
 
+    private static Order orderOf(Long id, Order.Status status, Product product, int quantity, Long customerId) {
+        Order order = Order.builder()
+                .id(id)
+                .status(status)
+                .seller(product.getSeller())
+                .customer(Customer.builder().id(customerId).build())
+                .totalPrice(product.getPrice() == null ? null : product.getPrice() * quantity)
+                .build();
+        order.addLine(OrderLine.builder().product(product).quantity(quantity).price(product.getPrice()).build());
+        return order;
+    }
+
     @BeforeEach
     public void setUp() {
         AccountCachingUtil accountCachingUtil = new AccountCachingUtil(cacheManager, customerRepository, sellerRepository);
         orderService.setAccountCachingUtil(accountCachingUtil);
+        ReflectionTestUtils.setField(orderService, "defaultPageSize", 2);
+        ReflectionTestUtils.setField(orderService, "maxStatusBatchSize", 3);
+        ReflectionTestUtils.setField(checkoutMetrics, "slowThresholdMillis", Long.MAX_VALUE);
     }
 
 
@@ -122,16 +169,13 @@ public class OrderServiceImplTest {
                     .build();
 
             when(customerRepository.findById(customerId)).thenReturn(Optional.of(customer));
-            when(cartRepository.findById(1L)).thenReturn(Optional.of(cartItem1));
-            when(cartRepository.findById(2L)).thenReturn(Optional.of(cartItem2));
-            when(cartRepository.findById(3L)).thenReturn(Optional.of(cartItem3));
+            when(cartRepository.findAllWithProductsByIdIn(Set.of(1L, 2L, 3L))).thenReturn(List.of(cartItem1, cartItem2, cartItem3));
 
             assertThrows(ForbiddenException.class, () -> orderService.createNewOrders(customerId, cartItemIdList));
 
             verify(customerRepository, times(1)).findById(customerId);
-            verify(cartRepository, times(1)).findById(1L);
-            verify(cartRepository, times(1)).findById(2L);
-            verify(cartRepository, times(1)).findById(3L);
+            verify(cartRepository, times(1)).findAllWithProductsByIdIn(Set.of(1L, 2L, 3L));
+            verifyNoMoreInteractions(cartRepository, orderRepository, sellerService, customerService);
         }
 
         @Test
@@ -154,11 +198,25 @@ public class OrderServiceImplTest {
                     .build();
 
             when(customerRepository.findById(customerId)).thenReturn(Optional.of(customer));
-            when(cartRepository.findById(1L)).thenReturn(Optional.of(cartItem1));
-            when(cartRepository.findById(2L)).thenReturn(Optional.of(cartItem2));
-            when(cartRepository.findById(3L)).thenReturn(Optional.empty());
+            when(cartRepository.findAllWithProductsByIdIn(Set.of(1L, 2L, 3L))).thenReturn(List.of(cartItem1, cartItem2));
 
             assertThrows(CartItemNotFoundException.class, () -> orderService.createNewOrders(customerId, cartItemIdList));
+
+            assertEquals(1, meterRegistry.get("checkout.duration")
+                    .tags("operation", "checkout", "outcome", "failure").timer().count());
+        }
+
+        @Test
+        @DisplayName("Should count checkout as slow when it exceeds the threshold")
+        void create_new_orders_counts_slow_checkout() {
+            ReflectionTestUtils.setField(checkoutMetrics, "slowThresholdMillis", 0L);
+            Customer customer = Customer.builder().id(1L).build();
+            when(customerRepository.findById(1L)).thenReturn(Optional.of(customer));
+            when(cartRepository.findAllWithProductsByIdIn(Set.of(1L))).thenReturn(List.of());
+
+            assertThrows(CartItemNotFoundException.class, () -> orderService.createNewOrders(1L, List.of(1L)));
+
+            assertEquals(1, meterRegistry.get("checkout.slow").tags("operation", "checkout", "cart.size", "1").counter().count());
         }
 
         @Test
@@ -220,19 +278,17 @@ public class OrderServiceImplTest {
 
 
             when(customerRepository.findById(customerId)).thenReturn(Optional.of(customer));
-            when(cartRepository.findById(1L)).thenReturn(Optional.of(cartItem1));
-            when(cartRepository.findById(2L)).thenReturn(Optional.of(cartItem2));
-            when(cartRepository.findById(3L)).thenReturn(Optional.of(cartItem3));
-
-            doAnswer(invocation -> null).when(sellerService).updateCardBalanceBySellerId(eq(1L), anyDouble());
-            doAnswer(invocation -> null).when(sellerService).updateCardBalanceBySellerId(eq(2L), anyDouble());
-            doAnswer(invocation -> null).when(sellerService).updateCardBalanceBySellerId(eq(3L), anyDouble());
-            doAnswer(invocation -> null).when(customerService).updateCardBalance(eq(customerId), anyDouble());
-
-            when(orderRepository.save(any(Order.class))).thenAnswer(invocation -> {
-                Order order = invocation.getArgument(0);
-                order.setId(1L);
-                return order;
+            when(customerRepository.getReferenceById(customerId)).thenReturn(customer);
+            when(cartRepository.findAllWithProductsByIdIn(Set.of(1L, 2L, 3L))).thenReturn(List.of(cartItem3, cartItem1, cartItem2));
+            when(inventoryService.reserve(Map.of(1L, 2, 2L, 1, 3L, 2))).thenReturn(Set.of());
+
+            when(orderRepository.saveAll(anyList())).thenAnswer(invocation -> {
+                List<Order> orders = invocation.getArgument(0);
+                long id = 1L;
+                for (Order order : orders) {
+                    order.setId(id++);
+                }
+                return orders;
             });
 
             List<OrderDto> result = orderService.createNewOrders(customerId, cartItemIdList);
@@ -241,7 +297,59 @@ public class OrderServiceImplTest {
             assertEquals(1L, result.get(0).getId());
             assertEquals(1L, result.get(0).getCustomerId());
             assertEquals("CREATED", result.get(0).getStatus());
-            assertEquals(1L, result.get(0).getProduct().getId());
+            assertEquals(1L, result.get(0).getSellerId());
+            assertEquals(200.0, result.get(0).getTotalPrice());
+            assertEquals(1L, result.get(0).getLines().get(0).getProduct().getId());
+            assertEquals(8, result.get(0).getLines().get(0).getProduct().getAmount());
+            assertEquals(1, result.get(2).getLines().get(0).getProduct().getAmount());
+            assertEquals(10, product1.getAmount());
+
+            verify(customerService, times(1)).updateCardBalance(customerId, -380.0);
+            verify(sellerService, times(1)).updateCardBalancesBySellerIds(Map.of(1L, 200.0 * 0.97, 2L, 120.0 * 0.97, 3L, 60.0 * 0.97));
+            verify(orderRepository, times(1)).saveAll(anyList());
+            verify(outboxService, times(1)).orderCreated(anyList());
+            verify(cartRepository, times(1)).deleteAllInBatch(List.of(cartItem1, cartItem2, cartItem3));
+            verifyNoMoreInteractions(orderRepository, sellerService, customerService);
+            InOrder cartOrder = inOrder(redisCartStore, cartRepository);
+            cartOrder.verify(redisCartStore).flushCustomer(customerId);
+            cartOrder.verify(cartRepository).findAllWithProductsByIdIn(Set.of(1L, 2L, 3L));
+            verify(redisCartStore).removeCheckedOut(customerId, Set.of(1L, 2L, 3L));
+
+            assertEquals(1, meterRegistry.get("checkout.duration")
+                    .tags("operation", "checkout", "cart.size", "2-5", "outcome", "success").timer().count());
+            assertEquals(1, meterRegistry.get("checkout.stage")
+                    .tags("operation", "checkout", "stage", "reserve_stock", "cart.size", "2-5").timer().count());
+        }
+
+        @Test
+        @DisplayName("Should put products of the same seller into one order")
+        void create_new_orders_groups_lines_by_seller() {
+            Long customerId = 1L;
+            Customer customer = Customer.builder().id(customerId).build();
+            Location location = Location.builder().country("Россия").city("Москва").build();
+            Seller seller = Seller.builder().id(1L).location(location).build();
+
+            Product product1 = Product.builder().id(1L).amount(10).price(100.0).seller(seller).categories(new ArrayList<>()).build();
+            Product product2 = Product.builder().id(2L).amount(5).price(50.0).seller(seller).categories(new ArrayList<>()).build();
+
+            CartItem cartItem1 = CartItem.builder().id(1L).customer(customer).quantity(2).product(product1).build();
+            CartItem cartItem2 = CartItem.builder().id(2L).customer(customer).quantity(3).product(product2).build();
+
+            when(customerRepository.findById(customerId)).thenReturn(Optional.of(customer));
+            when(customerRepository.getReferenceById(customerId)).thenReturn(customer);
+            when(cartRepository.findAllWithProductsByIdIn(Set.of(1L, 2L))).thenReturn(List.of(cartItem1, cartItem2));
+            when(inventoryService.reserve(Map.of(1L, 2, 2L, 3))).thenReturn(Set.of());
+            when(orderRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+            List<OrderDto> result = orderService.createNewOrders(customerId, List.of(1L, 2L));
+
+            assertEquals(1, result.size());
+            assertEquals(2, result.get(0).getLines().size());
+            assertEquals(350.0, result.get(0).getTotalPrice());
+            assertEquals(50.0, result.get(0).getLines().get(1).getPrice());
+
+            verify(customerService, times(1)).updateCardBalance(customerId, -350.0);
+            verify(sellerService, times(1)).updateCardBalancesBySellerIds(Map.of(1L, 350.0 * 0.97));
         }
 
         @Test
@@ -296,11 +404,14 @@ public class OrderServiceImplTest {
                     .build();
 
             when(customerRepository.findById(customerId)).thenReturn(Optional.of(customer));
-            when(cartRepository.findById(1L)).thenReturn(Optional.of(cartItem1));
-            when(cartRepository.findById(2L)).thenReturn(Optional.of(cartItem2));
-            when(cartRepository.findById(3L)).thenReturn(Optional.of(cartItem3));
-
-            assertThrows(DisparateDataException.class, () -> orderService.createNewOrders(customerId, cartItemIdList));
+            when(cartRepository.findAllWithProductsByIdIn(Set.of(1L, 2L, 3L))).thenReturn(List.of(cartItem1, cartItem2, cartItem3));
+            when(inventoryService.reserve(Map.of(1L, 2, 2L, 1, 3L, 2))).thenReturn(Set.of(3L));
+
+            DisparateDataException exception = assertThrows(DisparateDataException.class,
+                    () -> orderService.createNewOrders(customerId, cartItemIdList));
+            assertTrue(exception.getMessage().endsWith("[3]"));
+            verifyNoInteractions(orderRepository);
+            verify(cartRepository, never()).deleteAllInBatch(anyIterable());
         }
 
     }
@@ -317,11 +428,9 @@ public class OrderServiceImplTest {
             Long customerId = 1L;
             Location location = Location.builder().country("Россия").city("Казань").build();
             List<Order> orders = Arrays.asList(
-                    Order.builder().id(1L).status(Order.Status.CREATED).product(Product.builder().id(1L).seller(Seller.builder().id(2L).location(location).build()).categories(new ArrayList<>()).build()).quantity(2).customer(Customer.builder().id(customerId).build()).build(),
-                    Order.builder().id(2L).status(Order.Status.DELIVERED).product(Product.builder().id(2L).seller(Seller.builder().id(2L).location(location).build()).categories(new ArrayList<>()).build()).quantity(1).customer(
-                            Customer.builder().id(customerId).build()).build(),
-                    Order.builder().id(3L).status(Order.Status.CANCELLED).product(Product.builder().id(3L).seller(Seller.builder().id(22L).location(location).build()).categories(new ArrayList<>()).build()).quantity(3).customer(
-                            Customer.builder().id(customerId).build()).build()
+                    orderOf(1L, Order.Status.CREATED, Product.builder().id(1L).seller(Seller.builder().id(2L).location(location).build()).categories(new ArrayList<>()).build(), 2, customerId),
+                    orderOf(2L, Order.Status.DELIVERED, Product.builder().id(2L).seller(Seller.builder().id(2L).location(location).build()).categories(new ArrayList<>()).build(), 1, customerId),
+                    orderOf(3L, Order.Status.CANCELLED, Product.builder().id(3L).seller(Seller.builder().id(22L).location(location).build()).categories(new ArrayList<>()).build(), 3, customerId)
             );
 
             when(orderRepository.getOrdersByCustomerId(customerId)).thenReturn(orders);
@@ -380,23 +489,17 @@ public class OrderServiceImplTest {
             Long orderId = 1L;
             String status = "DELIVERED";
 
-            Order order = Order.builder()
-                    .id(orderId)
-                    .status(Order.Status.CREATED)
-                    .product(Product.builder()
-                            .id(1L).categories(new ArrayList<>())
-                            .seller(
-                                    Seller.builder()
-                                            .id(sellerId)
-                                            .location(
-                                                    Location.builder()
-                                                            .country("Россия")
-                                                            .city("Москва")
-                                                            .build())
-                                            .build()).build())
-                    .quantity(2)
-                    .customer(Customer.builder().id(1L).build())
-                    .build();
+            Order order = orderOf(orderId, Order.Status.CREATED, Product.builder()
+                    .id(1L).categories(new ArrayList<>())
+                    .seller(
+                            Seller.builder()
+                                    .id(sellerId)
+                                    .location(
+                                            Location.builder()
+                                                    .country("Россия")
+                                                    .city("Москва")
+                                                    .build())
+                                    .build()).build(), 2, 1L);
 
             when(orderRepository.findById(orderId)).thenReturn(Optional.of(order));
             when(orderRepository.save(order)).thenReturn(order);
@@ -405,6 +508,7 @@ public class OrderServiceImplTest {
 
             assertEquals(orderId, result.getId());
             assertEquals(status, result.getStatus());
+            verify(outboxService, times(1)).orderStatusChanged(order);
 
             verify(orderRepository, times(1)).findById(orderId);
             verify(orderRepository, times(1)).save(order);
@@ -418,10 +522,8 @@ public class OrderServiceImplTest {
             Long orderId = 1L;
             String status = "DELIVERED";
 
-            Order order = Order.builder()
-                    .id(orderId)
-                    .status(Order.Status.CREATED)
-                    .product(Product.builder().id(1L).seller(Seller.builder().id(2L).build()).categories(new ArrayList<>()).build()).quantity(2).customer(Customer.builder().id(1L).build()).build();
+            Order order = orderOf(orderId, Order.Status.CREATED,
+                    Product.builder().id(1L).seller(Seller.builder().id(2L).build()).categories(new ArrayList<>()).build(), 2, 1L);
 
             when(orderRepository.findById(orderId)).thenReturn(Optional.of(order));
 
@@ -459,15 +561,9 @@ public class OrderServiceImplTest {
             Long customerId = 1L;
             Long orderId = 1L;
 
-            Order order = Order.builder()
-                    .id(orderId)
-                    .status(Order.Status.CREATED)
-                    .product(Product.builder().id(1L).seller(Seller.builder().id(1L).build())
-                            .categories(new ArrayList<>())
-                            .build())
-                    .quantity(2)
-                    .customer(Customer.builder().id(2L).build())
-                    .build();
+            Order order = orderOf(orderId, Order.Status.CREATED, Product.builder().id(1L).seller(Seller.builder().id(1L).build())
+                    .categories(new ArrayList<>())
+                    .build(), 2, 2L);
 
             when(orderRepository.findById(orderId)).thenReturn(Optional.of(order));
 
@@ -483,24 +579,18 @@ public class OrderServiceImplTest {
             Long customerId = 1L;
             Long orderId = 1L;
 
-            Order order = Order.builder()
-                    .id(orderId)
-                    .status(Order.Status.CREATED)
-                    .product(Product.builder().id(1L)
-                            .seller(
-                            Seller.builder()
-                                    .id(1L)
-                                    .location(
-                                            Location.builder()
-                                                    .country("Россия")
-                                                    .city("Москва")
-                                                    .build())
-                                    .build())
-                            .categories(new ArrayList<>()).price(300.0)
+            Order order = orderOf(orderId, Order.Status.CREATED, Product.builder().id(1L)
+                    .seller(
+                    Seller.builder()
+                            .id(1L)
+                            .location(
+                                    Location.builder()
+                                            .country("Россия")
+                                            .city("Москва")
+                                            .build())
                             .build())
-                    .quantity(2)
-                    .customer(Customer.builder().id(customerId).build())
-                    .build();
+                    .categories(new ArrayList<>()).price(300.0)
+                    .build(), 2, customerId);
 
             when(orderRepository.findById(orderId)).thenReturn(Optional.of(order));
             when(orderRepository.save(order)).thenReturn(order);
@@ -509,6 +599,9 @@ public class OrderServiceImplTest {
 
             assertEquals(orderId, result.getId());
             assertEquals(Order.Status.CANCELLED.name(), result.getStatus());
+            verify(customerService, times(1)).updateCardBalance(customerId, 600.0);
+            verify(sellerService, times(1)).updateCardBalanceBySellerId(1L, -600.0 * 0.97);
+            verify(outboxService, times(1)).orderCancelled(order, 600.0);
 
             verify(orderRepository, times(1)).findById(orderId);
             verify(orderRepository, times(1)).save(order);
@@ -545,11 +638,9 @@ public class OrderServiceImplTest {
             Long customerId = 1L;
             Location location = Location.builder().country("Россия").city("Москва").build();
             List<Order> cancelledOrders = Arrays.asList(
-                    Order.builder().id(1L).status(Order.Status.CANCELLED).product(Product.builder().id(1L).seller(Seller.builder().id(2L).location(location).build()).categories(new ArrayList<>()).build()).quantity(2).customer(Customer.builder().id(customerId).build()).build(),
-                    Order.builder().id(2L).status(Order.Status.CANCELLED).product(Product.builder().id(2L).seller(Seller.builder().id(2L).location(location).build()).categories(new ArrayList<>()).build()).quantity(1).customer(
-                            Customer.builder().id(customerId).build()).build(),
-                    Order.builder().id(3L).status(Order.Status.CANCELLED).product(Product.builder().id(3L).seller(Seller.builder().id(22L).location(location).build()).categories(new ArrayList<>()).build()).quantity(3).customer(
-                            Customer.builder().id(customerId).build()).build()
+                    orderOf(1L, Order.Status.CANCELLED, Product.builder().id(1L).seller(Seller.builder().id(2L).location(location).build()).categories(new ArrayList<>()).build(), 2, customerId),
+                    orderOf(2L, Order.Status.CANCELLED, Product.builder().id(2L).seller(Seller.builder().id(2L).location(location).build()).categories(new ArrayList<>()).build(), 1, customerId),
+                    orderOf(3L, Order.Status.CANCELLED, Product.builder().id(3L).seller(Seller.builder().id(22L).location(location).build()).categories(new ArrayList<>()).build(), 3, customerId)
             );
 
             when(orderRepository.findByCustomer_IdAndStatus(customerId, Order.Status.CANCELLED)).thenReturn(cancelledOrders);
@@ -570,7 +661,132 @@ public class OrderServiceImplTest {
 
     }
 
+    @Nested
+    @DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+    @DisplayName("getOrdersOfSellerAfter() is working")
+    public class GetOrdersOfSellerAfterTest {
+
+        private Order order(Long id, LocalDateTime createdAt) {
+            Location location = Location.builder().country("Россия").city("Казань").build();
+            Order order = orderOf(id, Order.Status.CREATED,
+                    Product.builder().id(1L).seller(Seller.builder().id(2L).location(location).build()).categories(new ArrayList<>()).build(), 1, 1L);
+            order.setCreatedAt(createdAt);
+            return order;
+        }
+
+        @Test
+        @DisplayName("Should return a cursor to the next page when there are more orders")
+        void get_orders_of_seller_after_returns_next_cursor() {
+            Long sellerId = 2L;
+            LocalDateTime now = LocalDateTime.of(2023, 5, 10, 12, 0);
+            when(orderRepository.findPageAfter(null, sellerId, Order.Status.CREATED, null, null, null, 3))
+                    .thenReturn(List.of(order(3L, now), order(2L, now), order(1L, now.minusDays(1))));
+
+            OrdersCursorPage result = orderService.getOrdersOfSellerAfter(sellerId, null, Order.Status.CREATED, null, null);
+
+            assertEquals(2, result.getOrders().size());
+            assertEquals(now, result.getOrders().get(0).getCreatedAt());
+            OrderCursor cursor = OrderCursor.decode(result.getNextCursor());
+            assertEquals(2L, cursor.getId());
+            assertEquals(now, cursor.getCreatedAt());
+        }
+
+        @Test
+        @DisplayName("Should not return a cursor on the last page")
+        void get_orders_of_seller_after_last_page() {
+            Long sellerId = 2L;
+            LocalDateTime now = LocalDateTime.of(2023, 5, 10, 12, 0);
+            String after = new OrderCursor(now, 5L).encode();
+            when(orderRepository.findPageAfter(eq(null), eq(sellerId), eq(null), eq(null), eq(null), any(OrderCursor.class), eq(3)))
+                    .thenReturn(List.of(order(4L, now)));
+
+            OrdersCursorPage result = orderService.getOrdersOfSellerAfter(sellerId, after, null, null, null);
+
+            assertEquals(1, result.getOrders().size());
+            assertNull(result.getNextCursor());
+        }
 
+        @Test
+        @DisplayName("Should throw DisparateDataException when the cursor is malformed")
+        void get_orders_of_seller_after_bad_cursor() {
+            assertThrows(DisparateDataException.class,
+                    () -> orderService.getOrdersOfSellerAfter(2L, "not-a-cursor", null, null, null));
+            verifyNoInteractions(orderRepository);
+        }
+
+        @Test
+        @DisplayName("Should throw DisparateDataException when the period starts after it ends")
+        void get_orders_of_seller_after_bad_period() {
+            LocalDateTime now = LocalDateTime.of(2023, 5, 10, 12, 0);
+            assertThrows(DisparateDataException.class,
+                    () -> orderService.getOrdersOfSellerAfter(2L, null, null, now, now.minusDays(1)));
+            verifyNoInteractions(orderRepository);
+        }
 
+    }
+
+    @Nested
+    @DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+    @DisplayName("changeStatuses() is working")
+    public class ChangeStatusesTest {
+
+        private OrderRepository.OrderOwner owner(Long id, Long sellerId) {
+            return new OrderRepository.OrderOwner() {
+                @Override
+                public Long getId() {
+                    return id;
+                }
+
+                @Override
+                public Long getSellerId() {
+                    return sellerId;
+                }
+            };
+        }
+
+        @Test
+        @DisplayName("Should update only the seller's orders in one statement and report the rest")
+        void change_statuses_success() {
+            Long sellerId = 2L;
+            when(orderRepository.findOwnersByIdIn(Set.of(1L, 2L, 3L)))
+                    .thenReturn(List.of(owner(1L, sellerId), owner(3L, 22L)));
+
+            List<OrderStatusChangeResultDto> result = orderService.changeStatuses(sellerId, List.of(1L, 2L, 3L, 1L), "TRANSITING");
+
+            assertEquals(List.of(
+                    new OrderStatusChangeResultDto(1L, OrderStatusChangeResultDto.Result.UPDATED),
+                    new OrderStatusChangeResultDto(2L, OrderStatusChangeResultDto.Result.NOT_FOUND),
+                    new OrderStatusChangeResultDto(3L, OrderStatusChangeResultDto.Result.FORBIDDEN)), result);
+            verify(orderRepository, times(1)).updateStatusByIdInAndSellerId(List.of(1L), sellerId, Order.Status.TRANSITING);
+            verify(outboxService, times(1)).orderStatusesChanged(sellerId, List.of(1L), Order.Status.TRANSITING);
+        }
+
+        @Test
+        @DisplayName("Should not update anything when the seller owns none of the orders")
+        void change_statuses_when_nothing_is_owned() {
+            when(orderRepository.findOwnersByIdIn(Set.of(3L))).thenReturn(List.of(owner(3L, 22L)));
+
+            List<OrderStatusChangeResultDto> result = orderService.changeStatuses(2L, List.of(3L), "DELIVERED");
+
+            assertEquals(OrderStatusChangeResultDto.Result.FORBIDDEN, result.get(0).getResult());
+            verify(orderRepository, never()).updateStatusByIdInAndSellerId(any(), any(), any());
+            verifyNoInteractions(outboxService);
+        }
+
+        @Test
+        @DisplayName("Should throw ForbiddenException when the seller tries to cancel orders")
+        void change_statuses_to_cancelled() {
+            assertThrows(ForbiddenException.class, () -> orderService.changeStatuses(2L, List.of(1L), "CANCELLED"));
+            verifyNoInteractions(orderRepository);
+        }
+
+        @Test
+        @DisplayName("Should throw DisparateDataException when the batch is too large")
+        void change_statuses_when_batch_is_too_large() {
+            assertThrows(DisparateDataException.class, () -> orderService.changeStatuses(2L, List.of(1L, 2L, 3L, 4L), "DELIVERED"));
+            verifyNoInteractions(orderRepository);
+        }
+
+    }
 
 }
@@ -0,0 +1,157 @@
+package ru.tinkoff.storePrime.services.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.tinkoff.storePrime.models.Order;
+import ru.tinkoff.storePrime.models.OrderLine;
+import ru.tinkoff.storePrime.models.OutboxEvent;
+import ru.tinkoff.storePrime.models.Product;
+import ru.tinkoff.storePrime.models.user.Customer;
+import ru.tinkoff.storePrime.models.user.Seller;
+import ru.tinkoff.storePrime.repository.OutboxEventRepository;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@EmbeddedKafka(partitions = 1, topics = OutboxServiceImplTest.TOPIC)
+@DisplayName("OutboxService is working when")
+class OutboxServiceImplTest {
+
+    static final String TOPIC = "order-events";
+
+    @Mock
+    private OutboxEventRepository outboxEventRepository;
+
+    private OutboxServiceImpl outboxService;
+
+    private KafkaTemplate<String, String> kafkaTemplate;
+
+    private Consumer<String, String> consumer;
+
+    @BeforeEach
+    void setUp(EmbeddedKafkaBroker broker) {
+        Map<String, Object> producerProps = KafkaTestUtils.producerProps(broker);
+        kafkaTemplate = new KafkaTemplate<>(
+                new DefaultKafkaProducerFactory<>(producerProps, new StringSerializer(), new StringSerializer()));
+        outboxService = new OutboxServiceImpl(outboxEventRepository, kafkaTemplate, new ObjectMapper());
+        ReflectionTestUtils.setField(outboxService, "topic", TOPIC);
+        ReflectionTestUtils.setField(outboxService, "relayBatchSize", 100);
+        ReflectionTestUtils.setField(outboxService, "sendTimeoutMillis", 10_000L);
+
+        Map<String, Object> consumerProps = KafkaTestUtils.consumerProps("outbox-test", "false", broker);
+        consumer = new DefaultKafkaConsumerFactory<>(consumerProps, new StringDeserializer(), new StringDeserializer())
+                .createConsumer();
+        broker.consumeFromAnEmbeddedTopic(consumer, TOPIC);
+    }
+
+    @AfterEach
+    void tearDown() {
+        consumer.close();
+        kafkaTemplate.destroy();
+    }
+
+    @Nested
+    @DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+    @DisplayName("publishPending() is working")
+    class PublishPendingTest {
+
+        @Test
+        @DisplayName("Should publish pending events keyed by order id and remove them from the outbox")
+        void publish_pending_events() {
+            List<OutboxEvent> events = List.of(
+                    OutboxEvent.builder().id(1L).aggregateId(10L).eventType(OutboxEvent.Type.ORDER_CREATED).payload("{\"orderId\":10}").build(),
+                    OutboxEvent.builder().id(2L).aggregateId(10L).eventType(OutboxEvent.Type.ORDER_CANCELLED).payload("{\"orderId\":10}").build());
+            when(outboxEventRepository.tryLockRelay(anyLong())).thenReturn(true);
+            when(outboxEventRepository.lockPending(100)).thenReturn(events);
+
+            assertEquals(2, outboxService.publishPending());
+
+            ConsumerRecords<String, String> records = KafkaTestUtils.getRecords(consumer);
+            assertEquals(2, records.count());
+            List<String> types = new ArrayList<>();
+            for (ConsumerRecord<String, String> record : records) {
+                assertEquals("10", record.key());
+                types.add(new String(record.headers().lastHeader(OutboxServiceImpl.EVENT_TYPE_HEADER).value(), StandardCharsets.UTF_8));
+            }
+            assertEquals(List.of("ORDER_CREATED", "ORDER_CANCELLED"), types);
+            verify(outboxEventRepository, times(1)).deleteAllInBatch(events);
+        }
+
+        @Test
+        @DisplayName("Should do nothing when the outbox is empty")
+        void publish_pending_when_outbox_is_empty() {
+            when(outboxEventRepository.tryLockRelay(anyLong())).thenReturn(true);
+            when(outboxEventRepository.lockPending(100)).thenReturn(List.of());
+
+            assertEquals(0, outboxService.publishPending());
+
+            verify(outboxEventRepository, never()).deleteAllInBatch(anyList());
+        }
+
+        @Test
+        @DisplayName("Should leave the outbox to the relay of another instance")
+        void publish_pending_when_another_relay_is_running() {
+            when(outboxEventRepository.tryLockRelay(anyLong())).thenReturn(false);
+
+            assertEquals(0, outboxService.publishPending());
+
+            verify(outboxEventRepository, never()).lockPending(anyInt());
+        }
+
+    }
+
+    @Nested
+    @DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+    @DisplayName("orderCreated() is working")
+    class OrderCreatedTest {
+
+        @Test
+        @DisplayName("Should write one outbox event per order")
+        @SuppressWarnings("unchecked")
+        void order_created_writes_events() {
+            Order order = Order.builder()
+                    .id(7L)
+                    .status(Order.Status.CREATED)
+                    .customer(Customer.builder().id(3L).build())
+                    .seller(Seller.builder().id(4L).build())
+                    .totalPrice(200.0)
+                    .build();
+            order.addLine(OrderLine.builder().product(Product.builder().id(5L).price(100.0).build()).quantity(2).price(100.0).build());
+            ArgumentCaptor<List<OutboxEvent>> captor = ArgumentCaptor.forClass(List.class);
+
+            outboxService.orderCreated(List.of(order));
+
+            verify(outboxEventRepository).saveAll(captor.capture());
+            OutboxEvent event = captor.getValue().get(0);
+            assertEquals(7L, event.getAggregateId());
+            assertEquals(OutboxEvent.Type.ORDER_CREATED, event.getEventType());
+            assertTrue(event.getPayload().contains("\"sellerId\":4"));
+            assertTrue(event.getPayload().contains("\"totalPrice\":200.0"));
+        }
+
+    }
+
+}
@@ -5,8 +5,12 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
 import ru.tinkoff.storePrime.dto.product.NewOrUpdateProductDto;
 import ru.tinkoff.storePrime.dto.product.ProductDto;
+import ru.tinkoff.storePrime.dto.product.ProductSortOrder;
+import ru.tinkoff.storePrime.dto.product.ProductsCursorPage;
+import ru.tinkoff.storePrime.exceptions.DisparateDataException;
 import ru.tinkoff.storePrime.exceptions.ForbiddenException;
 import ru.tinkoff.storePrime.exceptions.not_found.ProductNotFoundException;
 import ru.tinkoff.storePrime.exceptions.not_found.SellerNotFoundException;
@@ -18,10 +22,15 @@ import ru.tinkoff.storePrime.models.user.Seller;
 import ru.tinkoff.storePrime.repository.CategoryRepository;
 import ru.tinkoff.storePrime.repository.ProductRepository;
 import ru.tinkoff.storePrime.repository.SellerRepository;
+import ru.tinkoff.storePrime.repository.impl.ProductCursor;
+import ru.tinkoff.storePrime.services.utils.ProductIdPool;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -39,6 +48,9 @@ class ProductServiceImplTest {
     @Mock
     private SellerRepository sellerRepository;
 
+    @Mock
+    private ProductIdPool productIdPool;
+
     @InjectMocks
     private ProductServiceImpl productService;
 
@@ -368,5 +380,144 @@ class ProductServiceImplTest {
 
     }
 
+    @Nested
+    @DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+    @DisplayName("getAllProductsByContentString() is working")
+    public class SearchProductsTest {
+
+        @Test
+        @DisplayName("Should search every word by prefix and page the results")
+        void search_products_builds_prefix_query() {
+            ReflectionTestUtils.setField(productService, "defaultPageSize", 10);
+            when(productRepository.searchByContent("red:* & dress:*", 10, 20)).thenReturn(new ArrayList<>());
+
+            List<ProductDto> result = productService.getAllProductsByContentString("Red  dress!", 2);
+
+            assertTrue(result.isEmpty());
+            verify(productRepository, times(1)).searchByContent("red:* & dress:*", 10, 20);
+        }
+
+        @Test
+        @DisplayName("Should not query the database when the search string has no words")
+        void search_products_when_content_has_no_words() {
+            List<ProductDto> result = productService.getAllProductsByContentString(" &|! ", 0);
+
+            assertTrue(result.isEmpty());
+            verifyNoInteractions(productRepository);
+        }
+
+    }
+
+    @Nested
+    @DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+    @DisplayName("getProductsAfter() is working")
+    public class GetProductsAfterTest {
+
+        private Product product(Long id, Double price) {
+            return Product.builder()
+                    .id(id)
+                    .price(price)
+                    .seller(Seller.builder().id(1L).location(Location.builder().country("Россия").city("Москва").build()).build())
+                    .categories(new ArrayList<>())
+                    .build();
+        }
+
+        @Test
+        @DisplayName("Should return a cursor pointing at the last product when there is a next page")
+        void get_products_after_returns_next_cursor() {
+            ReflectionTestUtils.setField(productService, "defaultPageSize", 2);
+            when(productRepository.findPageAfter(null, null, null, null, ProductSortOrder.PRICE_ASC, null, 3))
+                    .thenReturn(new ArrayList<>(List.of(product(5L, 10.0), product(3L, 20.0), product(4L, 20.0))));
+
+            ProductsCursorPage page = productService.getProductsAfter(null, ProductSortOrder.PRICE_ASC, null, null, null, null, false);
+
+            assertEquals(2, page.getProducts().size());
+            assertNull(page.getTotalCount());
+            ProductCursor cursor = ProductCursor.decode(page.getNextCursor(), ProductSortOrder.PRICE_ASC);
+            assertEquals(3L, cursor.getId());
+            assertEquals(20.0, cursor.getPrice());
+            verify(productRepository, never()).countByFilter(any(), any(), any(), any());
+        }
+
+        @Test
+        @DisplayName("Should not return a cursor on the last page")
+        void get_products_after_on_last_page() {
+            ReflectionTestUtils.setField(productService, "defaultPageSize", 2);
+            ProductCursor after = new ProductCursor(ProductSortOrder.NEWEST, null, 10L);
+            when(productRepository.findPageAfter(eq(1L), isNull(), isNull(), isNull(), eq(ProductSortOrder.NEWEST), any(ProductCursor.class), eq(3)))
+                    .thenReturn(new ArrayList<>(List.of(product(9L, 10.0))));
+            when(productRepository.countByFilter(1L, null, null, null)).thenReturn(3L);
+
+            ProductsCursorPage page = productService.getProductsAfter(after.encode(), ProductSortOrder.NEWEST, null, null, null, 1L, true);
+
+            assertEquals(1, page.getProducts().size());
+            assertNull(page.getNextCursor());
+            assertEquals(3L, page.getTotalCount());
+        }
+
+        @Test
+        @DisplayName("Should throw DisparateDataException when the cursor was issued for another sort order")
+        void get_products_after_with_foreign_cursor() {
+            String cursor = new ProductCursor(ProductSortOrder.NEWEST, null, 10L).encode();
+
+            assertThrows(DisparateDataException.class, () ->
+                    productService.getProductsAfter(cursor, ProductSortOrder.PRICE_DESC, null, null, null, null, false));
+            verifyNoInteractions(productRepository);
+        }
+
+        @Test
+        @DisplayName("Should throw DisparateDataException when the cursor is malformed")
+        void get_products_after_with_malformed_cursor() {
+            String withoutPrice = new ProductCursor(ProductSortOrder.PRICE_ASC, null, 10L).encode();
+            String garbage = Base64.getUrlEncoder().encodeToString("PRICE_ASC:abc".getBytes(StandardCharsets.UTF_8));
+
+            assertThrows(DisparateDataException.class, () ->
+                    productService.getProductsAfter(withoutPrice, ProductSortOrder.PRICE_ASC, null, null, null, null, false));
+            assertThrows(DisparateDataException.class, () ->
+                    productService.getProductsAfter(garbage, ProductSortOrder.PRICE_ASC, null, null, null, null, false));
+            assertThrows(DisparateDataException.class, () ->
+                    productService.getProductsAfter("%%%", ProductSortOrder.PRICE_ASC, null, null, null, null, false));
+            verifyNoInteractions(productRepository);
+        }
+
+    }
+
+    @Nested
+    @DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+    @DisplayName("getRandomProducts() is working")
+    public class GetRandomProductsTest {
+
+        private Product product(Long id) {
+            return Product.builder()
+                    .id(id)
+                    .seller(Seller.builder().id(1L).location(Location.builder().country("Россия").city("Москва").build()).build())
+                    .categories(new ArrayList<>())
+                    .build();
+        }
+
+        @Test
+        @DisplayName("Should drop deleted products from the pool and sample again")
+        void get_random_products_when_sampled_product_was_deleted() {
+            when(productIdPool.sample(2, Set.of())).thenReturn(Set.of(1L, 2L));
+            when(productRepository.findAllById(Set.of(1L, 2L))).thenReturn(new ArrayList<>(List.of(product(1L))));
+            when(productIdPool.sample(1, Set.of(1L, 2L))).thenReturn(Set.of(3L));
+            when(productRepository.findAllById(Set.of(3L))).thenReturn(new ArrayList<>(List.of(product(3L))));
+
+            List<ProductDto> result = productService.getRandomProducts(2);
+
+            assertEquals(2, result.size());
+            verify(productIdPool, times(1)).removeAll(Set.of(2L));
+        }
+
+        @Test
+        @DisplayName("Should throw ProductNotFoundException when the catalog is empty")
+        void get_one_product_when_catalog_is_empty() {
+            when(productIdPool.sample(1, Set.of())).thenReturn(Set.of());
+
+            assertThrows(ProductNotFoundException.class, () -> productService.getOneProduct());
+            verifyNoInteractions(productRepository);
+        }
+
+    }
 
-}
\ No newline at end of file
+}
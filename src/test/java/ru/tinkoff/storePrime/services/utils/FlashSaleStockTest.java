@@ -0,0 +1,260 @@
+package ru.tinkoff.storePrime.services.utils;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.invocation.InvocationOnMock;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.tinkoff.storePrime.models.FlashSaleReservation;
+import ru.tinkoff.storePrime.repository.FlashSaleReservationRepository;
+import ru.tinkoff.storePrime.repository.ProductRepository;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("FlashSaleStock is working when")
+class FlashSaleStockTest {
+
+    private static final Long PRODUCT_ID = 1L;
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private FlashSaleReservationRepository reservationRepository;
+
+    @Mock
+    private RedisTemplate<String, String> redisTemplate;
+
+    @InjectMocks
+    private FlashSaleStock flashSaleStock;
+
+    private final Map<String, Long> stock = new HashMap<>();
+
+    private final Map<String, Long> knownAmounts = new HashMap<>();
+
+    private String owner;
+
+    @BeforeEach
+    void setUp() {
+        lenient().doAnswer(this::executeScript).when(redisTemplate).execute(any(RedisScript.class), anyList(), any(), any());
+        lenient().doAnswer(this::executeScript).when(redisTemplate).execute(any(RedisScript.class), anyList(), any(), any(), any(), any());
+        configure(flashSaleStock);
+        when(reservationRepository.lockPending(anyInt())).thenReturn(List.of());
+        when(productRepository.findPriceAndStockByIdIn(Set.of(PRODUCT_ID))).thenReturn(List.of(stock(5)));
+        flashSaleStock.initialize();
+    }
+
+    @Nested
+    @DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+    @DisplayName("tryReserve() is working")
+    class TryReserveTest {
+
+        @Test
+        @DisplayName("Should not sell more than the stock across nodes")
+        void nodes_share_the_counter() {
+            FlashSaleStock otherNode = new FlashSaleStock(productRepository, reservationRepository, redisTemplate);
+            configure(otherNode);
+
+            assertTrue(reserve(flashSaleStock, 3));
+            assertFalse(reserve(otherNode, 3));
+            assertTrue(reserve(otherNode, 2));
+            assertFalse(reserve(flashSaleStock, 1));
+        }
+
+        @Test
+        @DisplayName("Should return the reservation when the transaction rolls back")
+        void rolled_back_reservation_is_released() {
+            TransactionSynchronizationManager.initSynchronization();
+            try {
+                assertTrue(flashSaleStock.tryReserve(PRODUCT_ID, 5));
+                TransactionSynchronizationManager.getSynchronizations()
+                        .forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+            } finally {
+                TransactionSynchronizationManager.clearSynchronization();
+            }
+
+            assertTrue(reserve(5));
+        }
+    }
+
+    @Nested
+    @DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+    @DisplayName("flush() is working")
+    class FlushTest {
+
+        @Test
+        @DisplayName("Should make restocked items available")
+        void restock_is_added_to_counter() {
+            when(productRepository.findPriceAndStockByIdIn(Set.of(PRODUCT_ID))).thenReturn(List.of(stock(8)));
+
+            flashSaleStock.flush();
+
+            assertTrue(reserve(8));
+        }
+
+        @Test
+        @DisplayName("Should not sell more than the lowered stock")
+        void lowered_stock_is_subtracted_from_counter() {
+            when(productRepository.findPriceAndStockByIdIn(Set.of(PRODUCT_ID))).thenReturn(List.of(stock(2)));
+
+            flashSaleStock.flush();
+
+            assertFalse(reserve(3));
+            assertTrue(reserve(2));
+        }
+
+        @Test
+        @DisplayName("Should not count flushed reservations twice")
+        void flushed_reservations_keep_counter() {
+            assertTrue(reserve(3));
+            when(reservationRepository.lockPending(anyInt())).thenReturn(List.of(reservation(3)));
+            when(productRepository.decrementAmount(PRODUCT_ID, 3)).thenReturn(1);
+            when(productRepository.findPriceAndStockByIdIn(Set.of(PRODUCT_ID))).thenReturn(List.of(stock(2)));
+
+            flashSaleStock.flush();
+
+            verify(productRepository, never()).clearAmount(PRODUCT_ID);
+            assertFalse(reserve(3));
+            assertTrue(reserve(2));
+        }
+
+        @Test
+        @DisplayName("Should clear the stock instead of making it negative")
+        void oversold_reservation_clears_amount() {
+            assertTrue(reserve(3));
+            when(reservationRepository.lockPending(anyInt())).thenReturn(List.of(reservation(3)));
+            when(productRepository.decrementAmount(PRODUCT_ID, 3)).thenReturn(0);
+            when(productRepository.findPriceAndStockByIdIn(Set.of(PRODUCT_ID))).thenReturn(List.of(stock(0)));
+
+            flashSaleStock.flush();
+
+            verify(productRepository).clearAmount(PRODUCT_ID);
+            assertFalse(reserve(1));
+        }
+
+        @Test
+        @DisplayName("Should leave the journal to the node holding the lease")
+        void other_node_does_not_flush() {
+            FlashSaleStock otherNode = new FlashSaleStock(productRepository, reservationRepository, redisTemplate);
+            configure(otherNode);
+            clearInvocations(reservationRepository, productRepository);
+
+            otherNode.flush();
+
+            verifyNoInteractions(reservationRepository, productRepository);
+        }
+    }
+
+    private void configure(FlashSaleStock node) {
+        ReflectionTestUtils.setField(node, "flashSaleProductIds", Set.of(PRODUCT_ID));
+        ReflectionTestUtils.setField(node, "flushBatchSize", 100);
+        ReflectionTestUtils.setField(node, "ownerLeaseMillis", 30_000L);
+    }
+
+    /**
+     * Повторяет скрипты {@link FlashSaleStock} на обычных коллекциях.
+     */
+    private Long executeScript(InvocationOnMock invocation) {
+        RedisScript<?> script = invocation.getArgument(0);
+        Object[] args = Arrays.copyOfRange(invocation.getArguments(), 2, invocation.getArguments().length);
+        if (script == script("RENEW_LEASE_SCRIPT")) {
+            if (owner == null) {
+                owner = (String) args[0];
+            }
+            return owner.equals(args[0]) ? 1L : 0L;
+        }
+        String productId = (String) args[0];
+        long value = Long.parseLong((String) args[1]);
+        if (script == script("RESERVE_SCRIPT")) {
+            Long available = stock.get(productId);
+            if (available == null || available < value) {
+                return 0L;
+            }
+            stock.put(productId, available - value);
+            return 1L;
+        }
+        if (script == script("RELEASE_SCRIPT")) {
+            stock.computeIfPresent(productId, (id, available) -> available + value);
+            return 1L;
+        }
+        long delta = 0;
+        if (!stock.containsKey(productId)) {
+            if (!"1".equals(args[3])) {
+                return 0L;
+            }
+            stock.put(productId, value);
+        } else if (knownAmounts.containsKey(productId)) {
+            delta = value - knownAmounts.get(productId) + Long.parseLong((String) args[2]);
+            stock.merge(productId, delta, Long::sum);
+        }
+        knownAmounts.put(productId, value);
+        return delta;
+    }
+
+    private static Object script(String name) {
+        return ReflectionTestUtils.getField(FlashSaleStock.class, name);
+    }
+
+    private boolean reserve(int quantity) {
+        return reserve(flashSaleStock, quantity);
+    }
+
+    private static boolean reserve(FlashSaleStock node, int quantity) {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            return node.tryReserve(PRODUCT_ID, quantity);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    private static FlashSaleReservation reservation(int quantity) {
+        return FlashSaleReservation.builder()
+                .productId(PRODUCT_ID)
+                .quantity(quantity)
+                .build();
+    }
+
+    private static ProductRepository.PriceAndStock stock(int amount) {
+        return new ProductRepository.PriceAndStock() {
+            @Override
+            public Long getId() {
+                return PRODUCT_ID;
+            }
+
+            @Override
+            public Long getSellerId() {
+                return 1L;
+            }
+
+            @Override
+            public Double getPrice() {
+                return 100.0;
+            }
+
+            @Override
+            public Integer getAmount() {
+                return amount;
+            }
+        };
+    }
+
+}